@@ -0,0 +1,78 @@
+package com.salem.backend.config;
+
+import com.salem.backend.monitoring.StatementCountingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+public class DataSourceConfig {
+
+    /**
+     * Wraps the connection pool so statements can be counted per request (see StatementCountFilter).
+     * Static: post-processors must exist before any other bean of this configuration is created.
+     */
+    @Bean
+    public static BeanPostProcessor statementCountingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof StatementCountingDataSource)) {
+                    return new StatementCountingDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * Primary plus read replicas (app.datasource.replicas.urls), replacing Spring Boot's single pool.
+     * Every pool gets the spring.datasource.* credentials and spring.datasource.hikari.* settings, its own name
+     * (primary, replica-1, ...) and its own hikaricp.* metrics; replica pools hand out read-only connections.
+     * Without replica URLs this bean does not exist and Boot configures the primary pool as before.
+     */
+    @Bean
+    @ConditionalOnExpression("!'${app.datasource.replicas.urls:}'.isBlank()")
+    public ReplicaRoutingDataSource dataSource(DataSourceProperties properties, Environment environment,
+                                               MeterRegistry meterRegistry,
+                                               @Value("${app.datasource.replicas.urls}") List<String> replicaUrls,
+                                               @Value("${app.datasource.replicas.connection-timeout}") Duration replicaConnectionTimeout,
+                                               @Value("${app.datasource.replicas.read-your-writes-window}") Duration readYourWritesWindow) {
+        Binder binder = Binder.get(environment);
+        HikariDataSource primary = pool("primary", properties.determineUrl(), properties, binder, meterRegistry);
+
+        List<DataSource> replicas = new ArrayList<>(replicaUrls.size());
+        for (String url : replicaUrls) {
+            HikariDataSource replica = pool("replica-" + (replicas.size() + 1), url.strip(), properties, binder, meterRegistry);
+            replica.setReadOnly(true);
+            // A replica that is down costs a read this long before it falls back to the primary
+            replica.setConnectionTimeout(replicaConnectionTimeout.toMillis());
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primary, replicas, readYourWritesWindow, meterRegistry);
+    }
+
+    // Same pool Boot would build from spring.datasource.*, with a name and metrics of its own
+    private static HikariDataSource pool(String name, String url, DataSourceProperties properties, Binder binder,
+                                         MeterRegistry meterRegistry) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).url(url).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+        pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return pool;
+    }
+}
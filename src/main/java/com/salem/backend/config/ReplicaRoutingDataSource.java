@@ -0,0 +1,200 @@
+package com.salem.backend.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends read-only transactions (@Transactional(readOnly = true), which includes the query methods of the Spring Data
+ * repositories) to a read replica, and everything else to the primary.
+ * Connections are lazy: the pool is only picked at the first statement, once the transaction has marked the
+ * connection read-only or not. Each user always reads from the same replica, so two reads of one request
+ * (notes version, then rows) never see the replicas at different points of their replication.
+ * Read-your-writes: for the read-your-writes window after a user's read-write transaction, that user's reads
+ * stay on the primary. The window is per instance and must be longer than the replication lag.
+ * Routed reads are counted as datasource.reads{route} (see docs/metrics.md).
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements AutoCloseable {
+
+    private static final String ROUTE_REPLICA = "replica";
+    private static final String ROUTE_STICKY = "primary.sticky";
+    private static final String ROUTE_FALLBACK = "primary.fallback";
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+
+    // Subjects (JWT sub) with a read-write transaction in the last read-your-writes window
+    private final Cache<String, Boolean> recentWriters;
+
+    // Reads without a user (background jobs) are spread round-robin
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    private final Counter replicaReads;
+    private final Counter stickyReads;
+    private final Counter fallbackReads;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, Duration readYourWritesWindow,
+                                    MeterRegistry meterRegistry) {
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("At least one replica is required");
+        }
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.recentWriters = Caffeine.newBuilder().expireAfterWrite(readYourWritesWindow).build();
+        this.replicaReads = reads(meterRegistry, ROUTE_REPLICA);
+        this.stickyReads = reads(meterRegistry, ROUTE_STICKY);
+        this.fallbackReads = reads(meterRegistry, ROUTE_FALLBACK);
+
+        setTargetDataSource(new PrimaryDataSource());
+        setReadOnlyDataSource(new ReplicaDataSource());
+        afterPropertiesSet();
+    }
+
+    /**
+     * Closes the primary and replica pools (called by the container on shutdown).
+     */
+    @Override
+    public void close() throws Exception {
+        List<DataSource> pools = new ArrayList<>(replicas);
+        pools.add(primary);
+        for (DataSource pool : pools) {
+            if (pool instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private static Counter reads(MeterRegistry meterRegistry, String route) {
+        return Counter.builder("datasource.reads")
+                .description("Connections of read-only transactions, by the database they were sent to")
+                .tag("route", route)
+                .register(meterRegistry);
+    }
+
+    // Subject of the authenticated request on this thread; null in background jobs
+    private static String currentSubject() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken || !authentication.isAuthenticated()) {
+            return null;
+        }
+        return authentication.getName();
+    }
+
+    /**
+     * Read-write connections. A connection that ran a transaction marks its user as a recent writer when it is closed,
+     * i.e. after the commit.
+     */
+    private class PrimaryDataSource extends AbstractDataSource {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            String subject = currentSubject();
+            Connection connection = primary.getConnection();
+            if (subject == null) {
+                return connection;
+            }
+            return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+                    new Class<?>[]{ConnectionProxy.class}, new WriteTrackingHandler(connection, subject));
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return primary.getConnection(username, password);
+        }
+    }
+
+    /**
+     * Read-only connections: the user's replica, or the primary right after the user wrote or when the replica fails.
+     */
+    private class ReplicaDataSource extends AbstractDataSource {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            String subject = currentSubject();
+            if (subject != null && recentWriters.getIfPresent(subject) != null) {
+                stickyReads.increment();
+                return primary.getConnection();
+            }
+
+            int index = subject != null
+                    ? Math.floorMod(subject.hashCode(), replicas.size())
+                    : Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+            try {
+                Connection connection = replicas.get(index).getConnection();
+                replicaReads.increment();
+                return connection;
+            } catch (SQLException e) {
+                log.warn("Replica {} unavailable, reading from the primary: {}", index + 1, e.getMessage());
+                fallbackReads.increment();
+                return primary.getConnection();
+            }
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return primary.getConnection(username, password);
+        }
+    }
+
+    private final class WriteTrackingHandler implements InvocationHandler {
+
+        private final Connection target;
+        private final String subject;
+        private boolean transactional;
+
+        private WriteTrackingHandler(Connection target, String subject) {
+            this.target = target;
+            this.subject = subject;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "getTargetConnection":
+                    return target;
+                case "setAutoCommit":
+                    if (!((Boolean) args[0])) {
+                        transactional = true;
+                    }
+                    break;
+                case "close":
+                    if (transactional) {
+                        recentWriters.put(subject, Boolean.TRUE);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
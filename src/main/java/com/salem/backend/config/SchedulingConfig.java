@@ -0,0 +1,10 @@
+package com.salem.backend.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Enables @Scheduled background jobs (e.g. the storage deletion worker)
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,19 +1,52 @@
 package com.salem.backend.config;
 
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.jwk.source.JWKSourceBuilder;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.util.DefaultResourceRetriever;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import com.salem.backend.util.CachingJwtDecoder;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.security.oauth2.resource.OAuth2ResourceServerProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimNames;
+import org.springframework.security.oauth2.jwt.JwtClaimValidator;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
+import org.springframework.util.StringUtils;
 import org.springframework.web.filter.CorsFilter;
 
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Configuration
 @EnableWebSecurity
+@Slf4j
 public class SecurityConfig {
 
     @Bean
@@ -32,6 +65,8 @@ public class SecurityConfig {
             .authorizeHttpRequests(auth -> auth
                 // نسمح ببعض الروابط العامة (مثل Swagger لو أضفته مستقبلاً)
                 .requestMatchers("/swagger-ui/**", "/v3/api-docs/**", "/actuator/**").permitAll()
+                // روابط الملفات الموقعة (التخزين المحلي): التوقيع في الرابط هو الصلاحية، مثل روابط S3 الموقعة
+                .requestMatchers(HttpMethod.GET, "/api/files/**").permitAll()
                 // أي طلب آخر يجب أن يكون معه توكن سليم
                 .anyRequest().authenticated()
             )
@@ -66,4 +101,91 @@ public class SecurityConfig {
         source.registerCorsConfiguration("/**", configuration);
         return source;
     }
-}
\ No newline at end of file
+
+    /**
+     * Keycloak's signing keys (spring.security.oauth2.resourceserver.jwt.jwk-set-uri), cached in memory.
+     * The set is re-fetched in the background refresh-ahead before its ttl runs out, so requests only wait
+     * for Keycloak when a token names a key id that is not in the cached set (a key rotation).
+     */
+    @Bean
+    public JWKSource<SecurityContext> jwkSource(OAuth2ResourceServerProperties properties,
+                                                @Value("${app.security.jwks.ttl}") Duration ttl,
+                                                @Value("${app.security.jwks.refresh-ahead}") Duration refreshAhead,
+                                                @Value("${app.security.jwks.timeout}") Duration timeout) throws MalformedURLException {
+        String jwkSetUri = properties.getJwt().getJwkSetUri();
+        if (!StringUtils.hasText(jwkSetUri)) {
+            throw new IllegalStateException("spring.security.oauth2.resourceserver.jwt.jwk-set-uri must be set");
+        }
+
+        int timeoutMillis = (int) timeout.toMillis();
+        return JWKSourceBuilder.create(new URL(jwkSetUri),
+                        new DefaultResourceRetriever(timeoutMillis, timeoutMillis, JWKSourceBuilder.DEFAULT_HTTP_SIZE_LIMIT))
+                .cache(ttl.toMillis(), timeoutMillis)
+                .refreshAheadCache(refreshAhead.toMillis(), true) // true = scheduled refresh, not on the next request
+                .build();
+    }
+
+    /**
+     * Loads the key set once at startup, so the first requests do not pay for the fetch.
+     * Keycloak being down here is not fatal: the set is fetched again on the first token.
+     */
+    @Bean
+    public ApplicationRunner jwkSetPrefetch(JWKSource<SecurityContext> jwkSource) {
+        return args -> {
+            try {
+                int keys = jwkSource.get(new JWKSelector(new JWKMatcher.Builder().build()), null).size();
+                log.info("Prefetched {} signing keys from the JWK set", keys);
+            } catch (KeySourceException e) {
+                log.warn("Could not prefetch the JWK set, it will be loaded on the first request: {}", e.getMessage());
+            }
+        };
+    }
+
+    /**
+     * Replaces Spring Boot's decoder (same validation: signature, exp/nbf, issuer and audiences from
+     * spring.security.oauth2.resourceserver.jwt.*) and puts the validated-JWT cache in front of it.
+     */
+    @Bean
+    public JwtDecoder jwtDecoder(JWKSource<SecurityContext> jwkSource,
+                                 OAuth2ResourceServerProperties properties,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.security.jwt-cache.enabled}") boolean cacheEnabled,
+                                 @Value("${app.security.jwt-cache.max-size}") long cacheMaxSize,
+                                 @Value("${app.security.jwt-cache.expiry-margin}") Duration expiryMargin) {
+        OAuth2ResourceServerProperties.Jwt jwtProperties = properties.getJwt();
+
+        // 1. Signature check against the cached key set
+        Set<JWSAlgorithm> algorithms = jwtProperties.getJwsAlgorithms().stream()
+                .map(JWSAlgorithm::parse)
+                .collect(Collectors.toSet());
+        DefaultJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
+        processor.setJWSKeySelector(new JWSVerificationKeySelector<>(algorithms, jwkSource));
+        processor.setJWTClaimsSetVerifier((claims, context) -> {
+            // Claims are checked by the Spring validators below
+        });
+
+        // 2. Claim validation
+        NimbusJwtDecoder decoder = new NimbusJwtDecoder(processor);
+        decoder.setJwtValidator(jwtValidator(jwtProperties));
+
+        if (!cacheEnabled) {
+            return decoder;
+        }
+        return new CachingJwtDecoder(decoder, cacheMaxSize, expiryMargin, meterRegistry);
+    }
+
+    private OAuth2TokenValidator<Jwt> jwtValidator(OAuth2ResourceServerProperties.Jwt jwtProperties) {
+        String issuerUri = jwtProperties.getIssuerUri();
+        OAuth2TokenValidator<Jwt> defaults = StringUtils.hasText(issuerUri)
+                ? JwtValidators.createDefaultWithIssuer(issuerUri)
+                : JwtValidators.createDefault();
+
+        List<String> audiences = jwtProperties.getAudiences();
+        if (audiences.isEmpty()) {
+            return defaults;
+        }
+        OAuth2TokenValidator<Jwt> audienceValidator = new JwtClaimValidator<Collection<String>>(JwtClaimNames.AUD,
+                aud -> aud != null && aud.stream().anyMatch(audiences::contains));
+        return new DelegatingOAuth2TokenValidator<>(defaults, audienceValidator);
+    }
+}
@@ -0,0 +1,88 @@
+package com.salem.backend.config;
+
+import com.salem.backend.util.BoundedSdkHttpClient;
+import io.awspring.cloud.autoconfigure.core.AwsClientCustomizer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class StorageConfig {
+
+    /**
+     * Threads that push the parts of streaming uploads to S3.
+     * How many parts one upload may have in flight is limited separately (app.s3.streaming.parts-in-flight).
+     * In virtual-thread mode every part gets its own virtual thread; the buffer pool and the per-upload
+     * permits still bound the work, so no fixed pool size is needed.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService s3UploadExecutor(@Value("${app.s3.streaming.upload-threads}") int threads,
+                                            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("s3-upload-", 0).factory());
+        }
+        return Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("s3-upload-"));
+    }
+
+    /**
+     * Workers that turn uploaded images into their smaller variants (ImageDerivativeService).
+     * Decoding and scaling is CPU work, so these are a few platform threads even in virtual-thread mode.
+     * The queue is bounded: when it is full the uploading request generates the variants itself
+     * (counted as images.derivatives.saturated), which slows uploads down instead of piling up work.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor imageDerivativeExecutor(@Value("${app.images.derivatives.threads}") int threads,
+                                                      @Value("${app.images.derivatives.queue-capacity}") int queueCapacity,
+                                                      MeterRegistry meterRegistry) {
+        Counter saturated = Counter.builder("images.derivatives.saturated")
+                .description("Variant jobs run on the uploading request's thread because the queue was full")
+                .register(meterRegistry);
+        ThreadPoolExecutor.CallerRunsPolicy callerRuns = new ThreadPoolExecutor.CallerRunsPolicy();
+
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("image-derivatives-"),
+                (job, executor) -> {
+                    saturated.increment();
+                    callerRuns.rejectedExecution(job, executor);
+                });
+    }
+
+    /**
+     * HTTP client of the S3Client: an Apache connection pool (the SDK default is 50 connections),
+     * fronted by a semaphore of the same size so callers queue outside the pool (see BoundedSdkHttpClient).
+     * With virtual threads the number of concurrent S3 calls is no longer capped by the Tomcat pool,
+     * so this is where S3 back-pressure happens.
+     */
+    @Bean(destroyMethod = "close")
+    public SdkHttpClient s3HttpClient(@Value("${app.s3.http.max-connections}") int maxConnections,
+                                      @Value("${app.s3.http.connection-acquisition-timeout}") Duration acquisitionTimeout) {
+        SdkHttpClient pooled = ApacheHttpClient.builder()
+                .maxConnections(maxConnections)
+                .connectionAcquisitionTimeout(acquisitionTimeout)
+                .build();
+        return new BoundedSdkHttpClient(pooled, maxConnections, acquisitionTimeout);
+    }
+
+    @Bean
+    public AwsClientCustomizer<S3ClientBuilder> s3HttpClientCustomizer(SdkHttpClient s3HttpClient) {
+        return new AwsClientCustomizer<>() {
+            @Override
+            public SdkHttpClient httpClient() {
+                return s3HttpClient;
+            }
+        };
+    }
+}
@@ -0,0 +1,95 @@
+package com.salem.backend.controller;
+
+import com.salem.backend.exception.BusinessException;
+import com.salem.backend.exception.enErrorCode;
+import com.salem.backend.service.LocalDiskStorageBackend;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the files of the local storage backend (app.storage.backend=local) behind the signed URLs it hands out.
+ * No bearer token: like an S3 pre-signed URL, the signature is the permission.
+ */
+@RestController
+@RequestMapping("/api/files")
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "local")
+@RequiredArgsConstructor
+public class FileController {
+
+    // Tomcat request attributes: with them the connector writes the file to the socket itself, using sendfile
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final LocalDiskStorageBackend storage;
+
+    /**
+     * Download a stored file.
+     * Answers 200 with the file, cacheable (private) for as long as the link stays valid.
+     */
+    @GetMapping("/{userId}/{fileName}")
+    public void getFile(@PathVariable String userId, @PathVariable String fileName,
+                        @RequestParam long expires, @RequestParam String signature,
+                        HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+        // 1. Check the signature before touching the disk
+        Path path = storage.verifiedPath(userId + "/" + fileName, expires, signature);
+
+        // 2. Headers from the open file. Keys are never rewritten (a new image gets a new UUID), so the size
+        //    still holds when Tomcat reopens the file by name for sendfile
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long maxAgeSeconds = Math.max(0, expires - Instant.now().getEpochSecond());
+
+            response.setContentType(MediaTypeFactory.getMediaType(fileName).orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+            response.setContentLengthLong(size);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS).cachePrivate().getHeaderValue());
+            // User uploads served from our origin: never sniffed into something executable, never run as a page
+            response.setHeader("X-Content-Type-Options", "nosniff");
+            response.setHeader("Content-Security-Policy", "sandbox");
+
+            // 3. Zero-copy: Tomcat sends the file after we return, page cache straight to the socket
+            if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+                request.setAttribute(SENDFILE_FILENAME, path.toString());
+                request.setAttribute(SENDFILE_START, 0L);
+                request.setAttribute(SENDFILE_END, size);
+                return;
+            }
+
+            // 4. Other containers (or sendfile disabled): still no user-space copy of our own on the read side
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < size) {
+                long sent = channel.transferTo(position, size - position, out);
+                if (sent <= 0) {
+                    break; // Truncated meanwhile
+                }
+                position += sent;
+            }
+        } catch (NoSuchFileException e) {
+            throw new BusinessException(enErrorCode.FILE_NOT_FOUND);
+        }
+    }
+}
@@ -1,24 +1,64 @@
 package com.salem.backend.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.salem.backend.dto.CursorPageResponse;
+import com.salem.backend.dto.NoteBatchCreateRequest;
+import com.salem.backend.dto.NoteBatchDeleteRequest;
+import com.salem.backend.dto.NoteBatchDeleteResponse;
 import com.salem.backend.dto.NoteRequest;
 import com.salem.backend.dto.NoteResponse;
+import com.salem.backend.dto.NoteSearchResponse;
+import com.salem.backend.dto.NoteSummaryResponse;
+import com.salem.backend.exception.ServiceBusyException;
+import com.salem.backend.exception.enErrorCode;
+import com.salem.backend.service.ContentProxyService;
+import com.salem.backend.service.NoteExportLimiter;
 import com.salem.backend.service.NoteService;
+import com.salem.backend.service.ObjectMetadata;
+import com.salem.backend.service.PresignedUrl;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/notes")
 @RequiredArgsConstructor
 public class NoteController {
 
+    // Clients may keep a copy but must revalidate it (If-None-Match) before every use
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
+    // Export: push what has been written so far to the client every this many notes
+    private static final int EXPORT_FLUSH_EVERY = 500;
+
     private final NoteService noteService;
+    private final ContentProxyService contentProxyService;
+    private final NoteExportLimiter noteExportLimiter;
+    private final ObjectMapper objectMapper;
 
     /**
      * Create a new note.
@@ -36,11 +76,240 @@ public class NoteController {
     }
 
     /**
-     * Get all notes for the authenticated user.
+     * Create many notes in one call (text only, JSON body: {"notes": [{"title": ..., "content": ...}, ...]}).
+     * Up to 500 notes; all or none are created. Returns the created notes in request order.
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<NoteResponse>> createNotes(@Valid @RequestBody NoteBatchCreateRequest request) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(noteService.createNotes(request.notes()));
+    }
+
+
+
+    /**
+     * Get the authenticated user's notes, one page at a time, as summaries (an excerpt instead of the content;
+     * GET /api/notes/{id} has the full note).
+     * 'cursor' -> the 'nextCursor' of the previous page (omit for the first page)
+     * 'size'   -> page size (capped by app.notes.page.max-size)
+     * Answers 304 when If-None-Match holds the current ETag; nothing is loaded in that case.
      */
     @GetMapping
-    public ResponseEntity<List<NoteResponse>> getMyNotes() {
-        return ResponseEntity.ok(noteService.getUserNotes());
+    public ResponseEntity<CursorPageResponse<NoteSummaryResponse>> getMyNotes(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            WebRequest webRequest
+    ) {
+        long version = noteService.getNotesVersion();
+        String eTag = noteService.notesETag(version, cursor, size);
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(REVALIDATE).build();
+        }
+
+        return ResponseEntity.ok().eTag(eTag).cacheControl(REVALIDATE).body(noteService.getUserNotes(cursor, size, version));
+    }
+
+
+    /**
+     * Get a single note of the authenticated user, with its full content.
+     * Same conditional GET as the list: 304 while none of the user's notes changed.
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<NoteResponse> getNote(@PathVariable Long id, WebRequest webRequest) {
+        String eTag = noteService.noteETag(noteService.getNotesVersion(), id);
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(REVALIDATE).build();
+        }
+
+        return ResponseEntity.ok().eTag(eTag).cacheControl(REVALIDATE).body(noteService.getNote(id));
+    }
+
+
+
+    /**
+     * Export all of the authenticated user's notes as NDJSON: one JSON note per line, newest first.
+     * Streamed from a database cursor while the client reads (gzip-compressed if it accepts gzip),
+     * so the heap use does not depend on the number of notes and the first lines go out right away.
+     * 503 with Retry-After while app.notes.export.max-concurrent exports are running.
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportNotes(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ) {
+        NoteExportLimiter.Slot slot = noteExportLimiter.tryAcquire();
+        if (slot == null) {
+            throw new ServiceBusyException(enErrorCode.EXPORTS_BUSY);
+        }
+
+        boolean gzip = acceptsGzip(acceptEncoding);
+        ObjectWriter writer = objectMapper.writerFor(NoteResponse.class);
+
+        // The slot is held until the stream ends, however it ends
+        StreamingResponseBody body = out -> {
+            try (slot) {
+                OutputStream target = gzip ? new GZIPOutputStream(out, 8192, true) : out; // sync flush: flush() pushes data out
+                int[] written = {0};
+                try {
+                    noteService.exportNotes(note -> {
+                        try {
+                            target.write(writer.writeValueAsBytes(note));
+                            target.write('\n');
+                            if (++written[0] % EXPORT_FLUSH_EVERY == 1) {
+                                target.flush();
+                            }
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause(); // Client went away: stop reading, the transaction ends with this call
+                }
+                if (target instanceof GZIPOutputStream compressed) {
+                    compressed.finish();
+                }
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+
+
+    /**
+     * Full-text search in the authenticated user's notes (title and content), best match first.
+     * 'q'      -> search text; supports "quoted phrases", OR and -excluded words
+     * 'cursor' -> the 'nextCursor' of the previous page (omit for the first page)
+     * 'size'   -> page size (capped by app.notes.page.max-size)
+     */
+    @GetMapping("/search")
+    public ResponseEntity<CursorPageResponse<NoteSearchResponse>> searchNotes(
+            @RequestParam String q,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size
+    ) {
+        return ResponseEntity.ok(noteService.searchNotes(q, cursor, size));
+    }
+
+
+
+    /**
+     * Redirect to the note's image, or to one of its generated variants (?variant=thumb).
+     * Answers 302 with a freshly signed URL; the redirect may be cached for as long as that URL stays valid.
+     */
+    @GetMapping("/{id}/image")
+    public ResponseEntity<Void> getNoteImage(@PathVariable Long id, @RequestParam(required = false) String variant) {
+        PresignedUrl signedUrl = noteService.getNoteImageUrl(id, variant);
+        long maxAgeSeconds = Math.max(0, Duration.between(Instant.now(), signedUrl.expiresAt()).getSeconds());
+
+        return ResponseEntity.status(HttpStatus.FOUND)
+                .location(URI.create(signedUrl.url()))
+                .cacheControl(CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS).cachePrivate())
+                .build();
+    }
+
+
+
+    /**
+     * Stream the note's image (or one of its variants, ?variant=thumb) through the backend, for clients that cannot
+     * reach the bucket behind the signed URLs.
+     * Answers 200 with the file, or 206 with one byte range (Range, honouring If-Range); 304 when the client's copy
+     * is still current (If-None-Match / If-Modified-Since); 503 with Retry-After when all proxied streams are busy.
+     */
+    @GetMapping("/{id}/content")
+    public void getNoteContent(@PathVariable Long id, @RequestParam(required = false) String variant,
+                               HttpServletRequest request, HttpServletResponse response) throws InterruptedException, IOException {
+
+        // 1. Ownership check, then the object's metadata only (no content read yet)
+        String key = noteService.getNoteImageKey(id, variant);
+        ObjectMetadata object = contentProxyService.stat(key);
+
+        // 2. Revalidation: a current copy costs the client no body at all
+        long lastModified = object.lastModified() != null ? object.lastModified().toEpochMilli() : -1;
+        response.setHeader(HttpHeaders.CACHE_CONTROL, REVALIDATE.getHeaderValue());
+        if (new ServletWebRequest(request, response).checkNotModified(object.eTag(), lastModified)) {
+            return;
+        }
+
+        // 3. The requested byte range, or the whole file
+        long size = object.size();
+        long start = 0;
+        long end = size - 1;
+        HttpRange range = requestedRange(request, object);
+        if (range != null) {
+            try {
+                start = range.getRangeStart(size);
+                end = range.getRangeEnd(size);
+            } catch (IllegalArgumentException e) {
+                start = size;
+            }
+            if (start >= size) { // Starts past the end (every range of an empty file does)
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return;
+            }
+        }
+
+        // 4. Copy through one of the capped, pooled streams
+        try (ContentProxyService.Slot slot = contentProxyService.tryAcquire()) {
+            if (slot == null) {
+                response.reset();
+                response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+                response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                return;
+            }
+
+            if (range != null) {
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            }
+            response.setContentType(object.contentType() != null ? object.contentType() : MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            response.setContentLengthLong(end - start + 1);
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            // User uploads served from our origin: never sniffed into something executable, never run as a page
+            response.setHeader("X-Content-Type-Options", "nosniff");
+            response.setHeader("Content-Security-Policy", "sandbox");
+
+            if (end >= start && !HttpMethod.HEAD.matches(request.getMethod())) {
+                slot.copy(key, start, end - start + 1, response.getOutputStream());
+            }
+        }
+    }
+
+    // One satisfiable-looking range, or null for the whole file: no Range header, an If-Range that no longer matches,
+    // a malformed header or several ranges (multipart/byteranges is not offered; RFC 9110 lets a server ignore Range)
+    private HttpRange requestedRange(HttpServletRequest request, ObjectMetadata object) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null || !ifRangeMatches(request, object)) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(header);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // If-Range holds a strong ETag or the Last-Modified date of the copy the client already has part of
+    private boolean ifRangeMatches(HttpServletRequest request, ObjectMetadata object) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(object.eTag());
+        }
+        try {
+            long date = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return object.lastModified() != null && date == object.lastModified().getEpochSecond() * 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
     }
 
 
@@ -60,6 +329,29 @@ public class NoteController {
     }
 
 
+    /**
+     * Replace the image of a note by streaming it as the raw request body.
+     * Send the file bytes as the body with its Content-Type (e.g. image/png), no multipart wrapping.
+     * Not bound by the multipart upload limits; the cap is app.s3.streaming.max-object-size.
+     */
+    @PutMapping("/{id}/image")
+    public ResponseEntity<NoteResponse> uploadNoteImage(@PathVariable Long id, HttpServletRequest request) throws IOException {
+        NoteResponse response = noteService.replaceNoteImage(
+                id, request.getInputStream(), request.getContentType(), request.getContentLengthLong());
+        return ResponseEntity.ok(response);
+    }
+
+
+    /**
+     * Delete many notes in one call (JSON body: {"ids": [1, 2, ...]}, up to 500 ids).
+     * Ids that don't exist or aren't the caller's are skipped and listed in 'notDeletedIds'.
+     */
+    @DeleteMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<NoteBatchDeleteResponse> deleteNotes(@Valid @RequestBody NoteBatchDeleteRequest request) {
+        return ResponseEntity.ok(noteService.deleteNotes(request.ids()));
+    }
+
+
    /** 
     * Delete a note by its ID
    */
@@ -74,6 +366,22 @@ public class NoteController {
 
 
 
+   // "gzip", "gzip;q=0.8", "deflate, gzip" -> true | "gzip;q=0" or no header -> false
+   private boolean acceptsGzip(String acceptEncoding) {
+       if (acceptEncoding == null) {
+           return false;
+       }
+       for (String coding : acceptEncoding.split(",")) {
+           String[] parts = coding.trim().split(";");
+           if (parts[0].trim().equalsIgnoreCase("gzip")) {
+               return parts.length < 2 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+           }
+       }
+       return false;
+   }
+
+
+
    @GetMapping("/api/crash")
 public String crashServer() {
     throw new RuntimeException("This is a deliberate crash for Grafana!");
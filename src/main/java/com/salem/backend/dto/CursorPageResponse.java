@@ -0,0 +1,9 @@
+package com.salem.backend.dto;
+
+import java.util.List;
+
+// One page of a keyset-paginated listing
+public record CursorPageResponse<T>(
+    List<T> items,
+    String nextCursor // Pass back as '?cursor=' to get the next page, null when this is the last page
+) {}
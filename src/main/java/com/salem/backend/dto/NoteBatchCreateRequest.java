@@ -0,0 +1,12 @@
+package com.salem.backend.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+
+// POST /api/notes/batch: every note is validated like a single NoteRequest (errors name the index, e.g. notes[3].title)
+public record NoteBatchCreateRequest(
+    @NotNull
+    List<@Valid @NotNull NoteRequest> notes
+) {}
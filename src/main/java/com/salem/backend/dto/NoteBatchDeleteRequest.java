@@ -0,0 +1,11 @@
+package com.salem.backend.dto;
+
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+
+// DELETE /api/notes/batch
+public record NoteBatchDeleteRequest(
+    @NotNull
+    List<@NotNull Long> ids
+) {}
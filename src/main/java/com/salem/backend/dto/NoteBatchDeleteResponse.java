@@ -0,0 +1,8 @@
+package com.salem.backend.dto;
+
+import java.util.List;
+
+public record NoteBatchDeleteResponse(
+    List<Long> deletedIds,
+    List<Long> notDeletedIds // Not found or not owned by the caller (deliberately not told apart)
+) {}
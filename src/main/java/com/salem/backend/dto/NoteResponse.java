@@ -1,12 +1,14 @@
 package com.salem.backend.dto;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 
 public record NoteResponse(
     Long id,
     String title,
     String content,
-    String imageUrl, // We send the Presigned URL, not the S3 Key
+    String imageUrl, // Presigned URL, or '/api/notes/{id}/image' in LAZY mode (never the S3 Key)
+    Map<String, String> imageVariants, // Smaller renditions by name ("thumb", "medium"), same URL kind; empty until generated
     LocalDateTime createdAt,
     LocalDateTime updatedAt
 ) {}
\ No newline at end of file
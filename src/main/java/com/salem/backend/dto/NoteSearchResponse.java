@@ -0,0 +1,14 @@
+package com.salem.backend.dto;
+
+import java.time.LocalDateTime;
+
+public record NoteSearchResponse(
+    Long id,
+    String title,
+    String titleHighlight, // HTML-escaped title, matched words wrapped in <mark></mark>
+    String snippet,        // HTML-escaped excerpt of the content around the matches, same <mark> markup
+    String imageUrl,
+    float rank,            // Relevance, higher is better (only comparable within one search)
+    LocalDateTime createdAt,
+    LocalDateTime updatedAt
+) {}
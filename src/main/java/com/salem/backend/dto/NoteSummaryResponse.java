@@ -0,0 +1,14 @@
+package com.salem.backend.dto;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+public record NoteSummaryResponse(
+    Long id,
+    String title,
+    String excerpt, // First characters of the content (app listing preview); the full body is GET /api/notes/{id}
+    String imageUrl,
+    Map<String, String> imageVariants,
+    LocalDateTime createdAt,
+    LocalDateTime updatedAt
+) {}
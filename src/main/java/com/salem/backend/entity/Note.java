@@ -17,7 +17,9 @@ import java.time.LocalDateTime;
 public class Note {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence (one nextval per 50 ids): unlike IDENTITY it lets Hibernate batch inserts (changeset salem:5)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "notes_id_seq")
+    @SequenceGenerator(name = "notes_id_seq", sequenceName = "notes_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -29,12 +31,16 @@ public class Note {
     @Column(name = "image_key")
     private String imageKey;
 
+    // Variants of the image that are ready, "thumb,medium" (set by the ImageDerivativeService, NULL until then)
+    @Column(name = "image_derivatives")
+    private String imageDerivatives;
+
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
 
     @UpdateTimestamp // Automatically updates the timestamp upon modification
-    @Column(name = "updated_at")
+    @Column(name = "updated_at", nullable = false)
     private LocalDateTime updatedAt;
 
     // Relationship: Many notes belong to one user.
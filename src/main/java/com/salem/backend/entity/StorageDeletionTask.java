@@ -0,0 +1,40 @@
+package com.salem.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+// One row of the storage deletion outbox: an S3 object that must be removed once nothing references it anymore
+@Entity
+@Table(name = "storage_deletion_outbox")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StorageDeletionTask {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "storage_deletion_outbox_id_seq")
+    @SequenceGenerator(name = "storage_deletion_outbox_id_seq", sequenceName = "storage_deletion_outbox_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "object_key", nullable = false)
+    private String objectKey;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    // Not picked up by the worker before this time (retry backoff, or the lease of a batch in flight)
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+}
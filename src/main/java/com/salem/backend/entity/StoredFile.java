@@ -0,0 +1,37 @@
+package com.salem.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+// One distinct file content of a user and the object that holds it, shared by every note that attached those bytes
+@Entity
+@Table(name = "stored_files", uniqueConstraints = @UniqueConstraint(name = "uq_stored_files_content", columnNames = {"user_id", "content_hash"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StoredFile {
+
+    @Id
+    @Column(name = "object_key")
+    private String objectKey;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // SHA-256 of the content, lowercase hex
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    // Notes pointing at the object; it is deleted when this drops to 0
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -18,7 +18,8 @@ import java.util.List;
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY) // Matches BIGSERIAL in PostgreSQL
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_id_seq")
+    @SequenceGenerator(name = "users_id_seq", sequenceName = "users_id_seq", allocationSize = 50) // The BIGSERIAL sequence, in steps of 50
     private Long id;
 
     @Column(name = "keycloak_id", nullable = false, unique = true)
@@ -1,10 +1,13 @@
 package com.salem.backend.exception;
 
 import com.salem.backend.dto.ErrorResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -21,6 +24,7 @@ import java.util.Map;
 public class GlobalExceptionHandler {
 
     private final MessageSource messageSource;
+    private final MeterRegistry meterRegistry;
 
     // 1. Validation Errors
     @ExceptionHandler(MethodArgumentNotValidException.class)
@@ -44,6 +48,8 @@ public class GlobalExceptionHandler {
             errors.put(error.getField(), msg);
         }
 
+        countError(enErrorCode.VALIDATION_ERROR);
+
         // Use the Enum to get the general message key "error.validation.general"
         String generalMessage = getMessage(enErrorCode.VALIDATION_ERROR.getMessageKey());
 
@@ -56,12 +62,32 @@ public class GlobalExceptionHandler {
         );
     }
 
-    // 2. Business Logic Errors
+    // 2. Busy (bounded resources): 503 with Retry-After, like the proxied content downloads
+    @ExceptionHandler(ServiceBusyException.class)
+    public ResponseEntity<ErrorResponse> handleBusy(ServiceBusyException ex) {
+
+        log.warn("Request turned away: {}", ex.getErrorCode());
+
+        countError(ex.getErrorCode());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(
+                        ErrorResponse.builder()
+                                .code(ex.getErrorCode().name())
+                                .message(getMessage(ex.getErrorCode().getMessageKey()))
+                                .build()
+                );
+    }
+
+    // 3. Business Logic Errors
     @ExceptionHandler(BusinessException.class)
     public ResponseEntity<ErrorResponse> handleBusiness(BusinessException ex) {
 
         log.error("Unhandled Exception: ", ex); // Log full trace internally
 
+        countError(ex.getErrorCode());
+
         // Read the key directly from the Enum: ex.getErrorCode().getMessageKey()
         String msg = getMessage(ex.getErrorCode().getMessageKey());
 
@@ -73,12 +99,14 @@ public class GlobalExceptionHandler {
         );
     }
 
-    // 3. General System Errors
+    // 4. General System Errors
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleGeneral(Exception ex) {
 
         log.error("Unhandled Exception: ", ex); // Log full trace internally
 
+        countError(enErrorCode.INTERNAL_ERROR);
+
         // Use the Enum for Internal Error key
         String msg = getMessage(enErrorCode.INTERNAL_ERROR.getMessageKey());
 
@@ -90,6 +118,15 @@ public class GlobalExceptionHandler {
         );
     }
 
+    // api.errors{code}: one count per error response, tagged with the enErrorCode name (a fixed set of values)
+    private void countError(enErrorCode code) {
+        Counter.builder("api.errors")
+                .description("Error responses by error code")
+                .tag("code", code.name())
+                .register(meterRegistry)
+                .increment();
+    }
+
     // Helper method to shorten code
     private String getMessage(String key) {
         return messageSource.getMessage(key, null, key, LocaleContextHolder.getLocale());
@@ -0,0 +1,13 @@
+package com.salem.backend.exception;
+
+
+/**
+ * A request turned away because a bounded resource (upload buffers, export slots) stayed busy.
+ * Answered with 503 and Retry-After instead of the 400 of other business errors.
+ */
+public class ServiceBusyException extends BusinessException {
+
+    public ServiceBusyException(enErrorCode errorCode) {
+        super(errorCode);
+    }
+}
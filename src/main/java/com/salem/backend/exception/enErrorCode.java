@@ -11,6 +11,21 @@ public enum enErrorCode {
     // Notes
     NOTE_NOT_FOUND("error.note.not.found"),
     NOTE_OWNERSHIP_ERROR("error.note.ownership"),
+    NOTE_IMAGE_NOT_FOUND("error.note.image.not.found"),
+    INVALID_BATCH_SIZE("error.note.batch.size"),
+    EXPORTS_BUSY("error.note.export.busy"),
+
+    // Files
+    FILE_TOO_LARGE("validation.file.size"),
+    FILE_NOT_FOUND("error.file.not.found"),
+    FILE_LINK_INVALID("error.file.link.invalid"),
+    UPLOADS_BUSY("error.file.uploads.busy"),
+
+    // Pagination
+    INVALID_CURSOR("error.pagination.cursor.invalid"),
+
+    // Search
+    INVALID_SEARCH_QUERY("error.search.query.invalid"),
     
     // System (General keys for global handler)
     INTERNAL_ERROR("error.system.internal"),
@@ -0,0 +1,26 @@
+package com.salem.backend.logging;
+
+/**
+ * One access log record, a reusable slot of the AccessLogRingBuffer.
+ * The request thread fills a free slot in place and the writer thread reads it, so recording a request allocates nothing.
+ */
+final class AccessLogEvent {
+
+    long timestamp; // Epoch millis at the start of the request
+    String ip;
+    String user;
+    String method;
+    String uri;
+    int status;
+    String agent;
+    long durationMillis;
+
+    // Drop the references once written, a slot must not keep request strings alive until it is reused
+    void clear() {
+        ip = null;
+        user = null;
+        method = null;
+        uri = null;
+        agent = null;
+    }
+}
@@ -0,0 +1,102 @@
+package com.salem.backend.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free queue of access log records: many request threads write, one writer thread reads.
+ * All slots are allocated up front. Each slot carries a sequence number telling whose turn it is
+ * (bounded MPMC queue after Dmitry Vyukov, reduced to a single consumer):
+ * sequence == index -> free for the producer of that index | index + 1 -> published, ready for the consumer.
+ * A full buffer never blocks: claim() just fails and the caller decides what to do.
+ */
+final class AccessLogRingBuffer {
+
+    private final AccessLogEvent[] events;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    // Next index a producer claims
+    private final AtomicLong tail = new AtomicLong();
+
+    // Next index the consumer reads; only the consumer writes it
+    private volatile long head;
+
+    AccessLogRingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring buffer capacity must be a power of two, got " + capacity);
+        }
+        events = new AccessLogEvent[capacity];
+        sequences = new AtomicLongArray(capacity);
+        mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            events[i] = new AccessLogEvent();
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Claims the next free slot; returns its index, or -1 when the buffer is full.
+     * The caller fills get(index) and must then publish(index).
+     */
+    long claim() {
+        long index = tail.get();
+        while (true) {
+            long difference = sequences.get((int) index & mask) - index;
+            if (difference == 0) {
+                if (tail.compareAndSet(index, index + 1)) {
+                    return index;
+                }
+                index = tail.get(); // Another producer took it
+            } else if (difference < 0) {
+                return -1; // The slot still holds a record from one lap ago
+            } else {
+                index = tail.get(); // Stale tail, someone moved on
+            }
+        }
+    }
+
+    AccessLogEvent get(long index) {
+        return events[(int) index & mask];
+    }
+
+    void publish(long index) {
+        sequences.set((int) index & mask, index + 1);
+    }
+
+    /**
+     * Hands up to 'max' published records to the handler, in claim order; returns how many.
+     * Stops early at a slot that is claimed but not yet published. Consumer thread only.
+     */
+    int drain(Consumer<AccessLogEvent> handler, int max) {
+        long index = head;
+        int drained = 0;
+        while (drained < max) {
+            int slot = (int) index & mask;
+            if (sequences.get(slot) != index + 1) {
+                break;
+            }
+            AccessLogEvent event = events[slot];
+            try {
+                handler.accept(event);
+            } finally {
+                event.clear();
+                sequences.set(slot, index + events.length); // Free for the producer one lap ahead
+                index++;
+                head = index;
+                drained++;
+            }
+        }
+        return drained;
+    }
+
+    // Claimed but not yet drained records (approximate while producers are active)
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    int capacity() {
+        return events.length;
+    }
+}
@@ -0,0 +1,203 @@
+package com.salem.backend.logging;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes the access log off the request path.
+ * Request threads only copy a few fields into a pre-allocated ring buffer slot (record); one background thread
+ * formats the [AUDIT] line and hands it to the logger, with the same fields as structured key-values.
+ * A full buffer never slows a request down unless app.access-log.overflow-policy=WAIT asks for back-pressure.
+ */
+@Component
+public class AccessLogWriter implements SmartLifecycle {
+
+    // Same logger as before, so log configuration and dashboards keyed on it keep working
+    private static final Logger log = LoggerFactory.getLogger(AccessLoggingFilter.class);
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // Records written per drain call before the writer checks for shutdown again
+    private static final int DRAIN_BATCH = 256;
+
+    // How long the writer sleeps when the buffer is empty
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    // Stops after the web server (phase DEFAULT_PHASE - 2048) has finished its last requests
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+
+    /**
+     * What a request does when the buffer is full.
+     * DROP: skip the record and count it | WAIT: wait up to app.access-log.max-wait for the writer, then drop.
+     */
+    public enum OverflowPolicy { DROP, WAIT }
+
+    private final AccessLogRingBuffer buffer;
+    private final OverflowPolicy overflowPolicy;
+    private final long maxWaitNanos;
+    private final Counter dropped;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    // Writer thread only
+    private final StringBuilder line = new StringBuilder(256);
+
+    private volatile boolean running;
+    private volatile Thread writerThread;
+
+    public AccessLogWriter(MeterRegistry meterRegistry,
+                           @Value("${app.access-log.buffer-size}") int bufferSize,
+                           @Value("${app.access-log.overflow-policy}") OverflowPolicy overflowPolicy,
+                           @Value("${app.access-log.max-wait}") Duration maxWait) {
+        this.buffer = new AccessLogRingBuffer(bufferSize);
+        this.overflowPolicy = overflowPolicy;
+        this.maxWaitNanos = maxWait.toNanos();
+
+        this.dropped = Counter.builder("access.log.dropped")
+                .description("Access log records dropped because the buffer was full")
+                .register(meterRegistry);
+        Gauge.builder("access.log.buffer.size", buffer, AccessLogRingBuffer::size)
+                .description("Access log records waiting for the writer thread")
+                .register(meterRegistry);
+        Gauge.builder("access.log.buffer.capacity", buffer, AccessLogRingBuffer::capacity)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues one access log record. Never blocks with the DROP policy; allocates nothing.
+     */
+    public void record(long timestamp, String ip, String user, String method, String uri,
+                       int status, String agent, long durationMillis) {
+        long index = buffer.claim();
+        if (index < 0 && overflowPolicy == OverflowPolicy.WAIT) {
+            index = awaitSlot();
+        }
+        if (index < 0) {
+            dropped.increment();
+            return;
+        }
+
+        AccessLogEvent event = buffer.get(index);
+        event.timestamp = timestamp;
+        event.ip = ip;
+        event.user = user;
+        event.method = method;
+        event.uri = uri;
+        event.status = status;
+        event.agent = agent;
+        event.durationMillis = durationMillis;
+        buffer.publish(index);
+    }
+
+    private long awaitSlot() {
+        long deadline = System.nanoTime() + maxWaitNanos;
+        Thread writer = writerThread;
+        long index;
+        do {
+            if (writer != null) {
+                LockSupport.unpark(writer); // Don't let it sleep through a full buffer
+            }
+            LockSupport.parkNanos(50_000);
+            index = buffer.claim();
+        } while (index < 0 && System.nanoTime() < deadline);
+        return index;
+    }
+
+    private void drainLoop() {
+        while (running) {
+            if (drain() == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        // Shutting down: whatever is still queued
+        while (drain() > 0) {
+            // keep draining
+        }
+    }
+
+    private int drain() {
+        try {
+            return buffer.drain(this::write, DRAIN_BATCH);
+        } catch (RuntimeException e) {
+            // The failing record's slot is freed already; one bad record must not stop the writer thread
+            log.warn("Access log writer failed to write a record", e);
+            return 1;
+        }
+    }
+
+    private void write(AccessLogEvent event) {
+        Level level = event.status >= 400 ? Level.ERROR : Level.INFO;
+        if (!log.isEnabledForLevel(level)) {
+            return;
+        }
+
+        line.setLength(0);
+        line.append("[AUDIT] Time: ");
+        TIMESTAMP.formatTo(LocalDateTime.ofInstant(Instant.ofEpochMilli(event.timestamp), zone), line);
+        line.append(" | IP: ").append(event.ip)
+                .append(" | User: ").append(event.user)
+                .append(" | Method: ").append(event.method)
+                .append(" | URL: ").append(event.uri)
+                .append(" | Status: ").append(event.status)
+                .append(" | Agent: ").append(event.agent)
+                .append(" | Duration: ").append(event.durationMillis).append("ms");
+
+        // Errors stand out (red) in the server log, like before
+        log.atLevel(level)
+                .addKeyValue("ip", event.ip)
+                .addKeyValue("user", event.user)
+                .addKeyValue("method", event.method)
+                .addKeyValue("uri", event.uri)
+                .addKeyValue("status", event.status)
+                .addKeyValue("userAgent", event.agent)
+                .addKeyValue("durationMs", event.durationMillis)
+                .log(line.toString());
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        Thread thread = new Thread(this::drainLoop, "access-log-writer");
+        thread.setDaemon(true);
+        writerThread = thread;
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = writerThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+}
@@ -1,5 +1,7 @@
 package com.salem.backend.logging;
 
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.Filter;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -8,22 +10,27 @@ import jakarta.servlet.ServletResponse;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
-import lombok.extern.slf4j.Slf4j;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
 import org.springframework.stereotype.Component;
-import com.nimbusds.jwt.SignedJWT;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 
 import java.io.IOException;
-import java.text.ParseException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 
-@Slf4j
 @Component
+@RequiredArgsConstructor
 @Order(Ordered.HIGHEST_PRECEDENCE + 10)  // to make it run after spring trace ID and before security filters
 public class AccessLoggingFilter implements Filter {
 
+    // Where the bearer token filter leaves the authenticated context (the SecurityContextHolder is cleared by then)
+    private static final String SECURITY_CONTEXT_ATTRIBUTE = RequestAttributeSecurityContextRepository.DEFAULT_REQUEST_ATTR_NAME;
+
+    private final AccessLogWriter accessLogWriter;
+
     @Override
     public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
             throws IOException, ServletException {
@@ -31,48 +38,44 @@ public class AccessLoggingFilter implements Filter {
         HttpServletRequest request = (HttpServletRequest) req;
         HttpServletResponse response = (HttpServletResponse) res;
 
-        // 1. وقت البداية
-        long startTime = System.currentTimeMillis();
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        // 1. وقت البداية (epoch millis for the log line, nanos for the duration; formatted later by the writer thread)
+        long timestamp = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
 
-        // 2. استخراج البيانات الأساسية
-        String method = request.getMethod();
-        String requestUri = request.getRequestURI();
-        String userAgent = request.getHeader("User-Agent");
-        
-        // [تعديل هام] جلب IP الحقيقي من خلف Nginx
-        String ipAddress = getClientIp(request);
-
-        // 3. استخراج هوية المستخدم (بدون تعطيل الطلب لو فشل)
-        String username = "Anonymous";
         try {
-            username = extractToken(request);
-        } catch (Exception e) {
-            log.warn("Could not extract token username: " + e.getMessage());
-        }
-
-        try {
-            // 4. تنفيذ الطلب (اترك السبرينج يكمل شغله)
+            // 2. تنفيذ الطلب (اترك السبرينج يكمل شغله)
             chain.doFilter(request, response);
         } finally {
-            // 5. التسجيل بعد الانتهاء (عشان نعرف الـ Status Code ومدة التنفيذ)
-            long duration = System.currentTimeMillis() - startTime;
-            int statusCode = response.getStatus();
-
-            String logMessage = String.format(
-                "[AUDIT] Time: %s | IP: %s | User: %s | Method: %s | URL: %s | Status: %d | Agent: %s | Duration: %dms",
-                timestamp, ipAddress, username, method, requestUri, statusCode, userAgent, duration
-            );
-
-            // سجل الأخطاء باللون الأحمر (Error) والنجاح بالأخضر (Info)
-            if (statusCode >= 400) {
-                log.error(logMessage); // يظهر بالأحمر في السيرفر
+            // 3. التسجيل بعد الانتهاء (عشان نعرف الـ Status Code ومدة التنفيذ)
+            // A streamed response (e.g. the export) is still running here: record it when it completes
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        record(request, response, timestamp, startNanos);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {}
+
+                    @Override
+                    public void onError(AsyncEvent event) {}
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {}
+                });
             } else {
-                log.info(logMessage);
+                record(request, response, timestamp, startNanos);
             }
         }
     }
 
+    private void record(HttpServletRequest request, HttpServletResponse response, long timestamp, long startNanos) {
+        accessLogWriter.record(timestamp, getClientIp(request), username(request), request.getMethod(),
+                request.getRequestURI(), response.getStatus(), request.getHeader("User-Agent"),
+                (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
     /**
      * دالة ذكية لجلب الـ IP الحقيقي حتى لو خلف Nginx أو Cloudflare
      */
@@ -85,28 +88,28 @@ public class AccessLoggingFilter implements Filter {
             ip = request.getRemoteAddr();
         }
         // أحياناً يكون الهيدر يحتوي عدة عناوين (Client, Proxy1, Proxy2) -> نأخذ الأول
-        if (ip != null && ip.contains(",")) {
-            ip = ip.split(",")[0].trim();
+        int comma = ip != null ? ip.indexOf(',') : -1;
+        if (comma >= 0) {
+            ip = ip.substring(0, comma).trim();
         }
         return ip;
     }
 
-    private String extractToken(HttpServletRequest request) {
+    // The user Spring Security authenticated for this request; the token is not parsed a second time
+    private String username(HttpServletRequest request) {
+        if (request.getAttribute(SECURITY_CONTEXT_ATTRIBUTE) instanceof SecurityContext context
+                && context.getAuthentication() instanceof JwtAuthenticationToken authentication) {
+            // Straight from the claims map: getClaimAsString goes through the conversion service on every call
+            Object preferredUsername = authentication.getToken().getClaims().get("preferred_username");
+            return preferredUsername instanceof String name ? name : "Unknown-User";
+        }
         String authHeader = request.getHeader("Authorization");
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            String token = authHeader.substring(7);
-            try {
-                // نستخدم مكتبة Nimbus الموجودة أصلاً مع Spring Security
-                SignedJWT signedJWT = SignedJWT.parse(token);
-                String preferredUsername = (String) signedJWT.getJWTClaimsSet().getClaim("preferred_username");
-                return preferredUsername != null ? preferredUsername : "Unknown-User";
-            } catch (ParseException e) {
-                return "Invalid-Token";
-            }
+            return "Invalid-Token"; // A token was sent but not accepted
         }
         return "Anonymous";
     }
 
     @Override
     public void destroy() {}
-}
\ No newline at end of file
+}
@@ -1,15 +1,31 @@
 package com.salem.backend.mapper;
 
 import com.salem.backend.dto.NoteResponse;
+import com.salem.backend.dto.NoteSummaryResponse;
 import com.salem.backend.entity.Note;
+import com.salem.backend.repository.projection.NoteListItem;
+import com.salem.backend.repository.projection.NoteSummaryItem;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 
+import java.util.Map;
+
 @Mapper(componentModel = "spring") // Makes it a Spring Bean (@Component)
 public interface NoteMapper {
 
     // We only need to map the image URL explicitly because the Entity has 'imageKey'
     // but the DTO expects 'imageUrl'.
     @Mapping(target = "imageUrl", expression = "java(imageUrl)")
-    NoteResponse toResponse(Note note, String imageUrl);
-}
\ No newline at end of file
+    @Mapping(target = "imageVariants", expression = "java(imageVariants)")
+    NoteResponse toResponse(Note note, String imageUrl, Map<String, String> imageVariants);
+
+    // Same mapping for full rows that come from a projection query
+    @Mapping(target = "imageUrl", expression = "java(imageUrl)")
+    @Mapping(target = "imageVariants", expression = "java(imageVariants)")
+    NoteResponse toResponse(NoteListItem item, String imageUrl, Map<String, String> imageVariants);
+
+    // Listing rows: excerpt instead of the content
+    @Mapping(target = "imageUrl", expression = "java(imageUrl)")
+    @Mapping(target = "imageVariants", expression = "java(imageVariants)")
+    NoteSummaryResponse toSummaryResponse(NoteSummaryItem item, String imageUrl, Map<String, String> imageVariants);
+}
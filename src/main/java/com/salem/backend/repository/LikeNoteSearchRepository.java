@@ -0,0 +1,159 @@
+package com.salem.backend.repository;
+
+import com.salem.backend.repository.projection.NoteSearchHit;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Portable search fallback (plain SQL + LIKE), for databases without PostgreSQL full-text search such as H2.
+ * Every word of the query must appear in the title or the content; a match in the title ranks higher.
+ * No index can serve '%word%', so this scans the user's notes: fine for tests, not meant for production data.
+ */
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.notes.search.engine", havingValue = "like")
+public class LikeNoteSearchRepository implements NoteSearchRepository {
+
+    private static final int MAX_TERMS = 8;
+    private static final int SNIPPET_CONTEXT = 60;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<NoteSearchHit> search(Long userId, String query, Float afterRank, Long afterId, int limit) {
+        List<String> terms = terms(query);
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("limit", limit);
+
+        // rank = 2 per word found in the title + 1 per word found in the content
+        StringBuilder rank = new StringBuilder();
+        StringBuilder match = new StringBuilder();
+        for (int i = 0; i < terms.size(); i++) {
+            String param = "term" + i;
+            params.addValue(param, "%" + escapeLike(terms.get(i)) + "%");
+            String inTitle = "LOWER(n.title) LIKE :" + param + " ESCAPE '\\'";
+            String inContent = "LOWER(n.content) LIKE :" + param + " ESCAPE '\\'";
+
+            rank.append(i > 0 ? " + " : "")
+                    .append("CASE WHEN ").append(inTitle).append(" THEN 2 ELSE 0 END + ")
+                    .append("CASE WHEN ").append(inContent).append(" THEN 1 ELSE 0 END");
+            match.append(" AND (").append(inTitle).append(" OR ").append(inContent).append(")");
+        }
+
+        String keyset = "";
+        if (afterRank != null) {
+            keyset = "WHERE hit.rank < :afterRank OR (hit.rank = :afterRank AND hit.id < :afterId)";
+            params.addValue("afterRank", afterRank).addValue("afterId", afterId);
+        }
+
+        String sql = """
+                SELECT hit.* FROM (
+                    SELECT n.id, n.title, n.content, n.image_key, n.created_at, n.updated_at,
+                           CAST(%s AS REAL) AS rank
+                    FROM notes n
+                    WHERE n.user_id = :userId%s
+                ) hit
+                %s
+                ORDER BY hit.rank DESC, hit.id DESC
+                LIMIT :limit
+                """.formatted(rank, match, keyset);
+
+        return jdbcTemplate.query(sql, params, (rs, rowNum) -> {
+            String title = rs.getString("title");
+            String content = rs.getString("content");
+            return new NoteSearchHit(
+                    rs.getLong("id"),
+                    title,
+                    highlight(title, terms),
+                    highlight(excerpt(content, terms), terms),
+                    rs.getString("image_key"),
+                    rs.getFloat("rank"),
+                    rs.getTimestamp("created_at") != null ? rs.getTimestamp("created_at").toLocalDateTime() : null,
+                    rs.getTimestamp("updated_at").toLocalDateTime());
+        });
+    }
+
+    // Lower-cased words of the query, without websearch operators (quotes, leading '-', OR)
+    private List<String> terms(String query) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String word : query.toLowerCase(Locale.ROOT).split("[\\s\"]+")) {
+            String term = word.startsWith("-") ? "" : word;
+            if (!term.isEmpty() && !term.equals("or")) {
+                terms.add(term);
+            }
+        }
+        return new ArrayList<>(terms).subList(0, Math.min(terms.size(), MAX_TERMS));
+    }
+
+    private String escapeLike(String term) {
+        return term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    // A window of the content around the first matched word
+    private String excerpt(String content, List<String> terms) {
+        if (content == null || content.isEmpty()) {
+            return "";
+        }
+        int first = -1;
+        for (String term : terms) {
+            Matcher matcher = termPattern(term).matcher(content);
+            if (matcher.find() && (first < 0 || matcher.start() < first)) {
+                first = matcher.start();
+            }
+        }
+        int from = Math.max(0, first - SNIPPET_CONTEXT);
+        int to = Math.min(content.length(), Math.max(first, 0) + SNIPPET_CONTEXT * 2);
+        return (from > 0 ? "… " : "") + content.substring(from, to) + (to < content.length() ? " …" : "");
+    }
+
+    // Wraps every occurrence of a term in MATCH_START / MATCH_END (case-insensitive)
+    private String highlight(String text, List<String> terms) {
+        if (text == null || text.isEmpty()) {
+            return text;
+        }
+        boolean[] marked = new boolean[text.length()];
+        for (String term : terms) {
+            Matcher matcher = termPattern(term).matcher(text);
+            while (matcher.find()) {
+                for (int i = matcher.start(); i < matcher.end(); i++) {
+                    marked[i] = true;
+                }
+            }
+        }
+        StringBuilder out = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < text.length(); i++) {
+            if (marked[i] && (i == 0 || !marked[i - 1])) {
+                out.append(MATCH_START);
+            }
+            out.append(text.charAt(i));
+            if (marked[i] && (i == text.length() - 1 || !marked[i + 1])) {
+                out.append(MATCH_END);
+            }
+        }
+        return out.toString();
+    }
+
+    // Matches the term in the original text, so match positions index that text. Not its toLowerCase():
+    // lower-casing can change the length ("İ" becomes two chars) and shift every position after it.
+    private static Pattern termPattern(String term) {
+        return Pattern.compile(Pattern.quote(term), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    }
+}
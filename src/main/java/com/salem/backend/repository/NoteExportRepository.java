@@ -0,0 +1,64 @@
+package com.salem.backend.repository;
+
+import com.salem.backend.repository.projection.NoteListItem;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+/**
+ * Reads all notes of a user as a stream of rows for the NDJSON export.
+ * The statement runs with a fetch size, so the driver pulls the result through a cursor, one fetch at a time,
+ * instead of materializing it (PostgreSQL only does this inside a transaction, i.e. with autocommit off).
+ */
+@Repository
+public class NoteExportRepository {
+
+    // Same order as the listing (served by idx_notes_user_updated_id)
+    private static final String ALL_NOTES = """
+            SELECT id, title, content, image_key, image_derivatives, created_at, updated_at
+            FROM notes
+            WHERE user_id = ?
+            ORDER BY updated_at DESC, id DESC
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public NoteExportRepository(JdbcTemplate jdbcTemplate, @Value("${app.notes.export.fetch-size}") int fetchSize) {
+        // Own template, the shared one must keep the driver's default fetch size
+        this.jdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    /**
+     * Hands every note of the user to 'action' while the rows are being read; returns the number of notes.
+     */
+    public int forEachNote(Long userId, Consumer<NoteListItem> action) {
+        int[] count = {0};
+        jdbcTemplate.query(ALL_NOTES, (ResultSet rs) -> {
+            action.accept(toItem(rs));
+            count[0]++;
+        }, userId);
+        return count[0];
+    }
+
+    private static NoteListItem toItem(ResultSet rs) throws SQLException {
+        return new NoteListItem(
+                rs.getLong("id"),
+                rs.getString("title"),
+                rs.getString("content"),
+                rs.getString("image_key"),
+                rs.getString("image_derivatives"),
+                toLocalDateTime(rs.getTimestamp("created_at")),
+                toLocalDateTime(rs.getTimestamp("updated_at")));
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
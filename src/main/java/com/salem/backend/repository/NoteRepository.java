@@ -1,14 +1,70 @@
 package com.salem.backend.repository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.salem.backend.entity.Note;
+import com.salem.backend.repository.projection.NoteImageRef;
+import com.salem.backend.repository.projection.NoteListItem;
+import com.salem.backend.repository.projection.NoteSummaryItem;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
+// Declared queries get no transaction from Spring Data: read-only here, so they can go to a read replica
 @Repository
+@Transactional(readOnly = true)
 public interface NoteRepository extends JpaRepository<Note, Long> {
 
-    List<Note> findByUserId(Long userId);
-}
\ No newline at end of file
+    // Characters of the content a listing row carries. Cut in the query: Postgres only reads (and decompresses)
+    // the start of a large, TOASTed body instead of all of it
+    int EXCERPT_LENGTH = 200;
+
+    // First page of a user's notes, newest first (served by idx_notes_user_updated_id)
+    @Query("""
+            select new com.salem.backend.repository.projection.NoteSummaryItem(
+                n.id, n.title, substring(n.content, 1, """ + EXCERPT_LENGTH + """
+            ), n.imageKey, n.imageDerivatives, n.createdAt, n.updatedAt)
+            from Note n
+            where n.user.id = :userId
+            order by n.updatedAt desc, n.id desc
+            """)
+    List<NoteSummaryItem> findFirstPage(@Param("userId") Long userId, Limit limit);
+
+    // Next page: everything strictly after the (updatedAt, id) position of the previous page's last row
+    @Query("""
+            select new com.salem.backend.repository.projection.NoteSummaryItem(
+                n.id, n.title, substring(n.content, 1, """ + EXCERPT_LENGTH + """
+            ), n.imageKey, n.imageDerivatives, n.createdAt, n.updatedAt)
+            from Note n
+            where n.user.id = :userId
+              and (n.updatedAt, n.id) < (:updatedAt, :id)
+            order by n.updatedAt desc, n.id desc
+            """)
+    List<NoteSummaryItem> findPageAfter(@Param("userId") Long userId,
+                                        @Param("updatedAt") LocalDateTime updatedAt,
+                                        @Param("id") Long id,
+                                        Limit limit);
+
+    // One note with its full content, only if it belongs to the user (GET /api/notes/{id})
+    @Query("""
+            select new com.salem.backend.repository.projection.NoteListItem(
+                n.id, n.title, n.content, n.imageKey, n.imageDerivatives, n.createdAt, n.updatedAt)
+            from Note n
+            where n.id = :id and n.user.id = :userId
+            """)
+    Optional<NoteListItem> findOwnedById(@Param("id") Long id, @Param("userId") Long userId);
+
+    // Owner, image key and ready image variants of a single note (for the image redirect endpoint)
+    @Query("select n.user.id as ownerId, n.imageKey as imageKey, n.imageDerivatives as imageDerivatives from Note n where n.id = :id")
+    Optional<NoteImageRef> findImageRefById(@Param("id") Long id);
+
+    // Variants already generated for an image that other notes show too (deduplicated uploads share one object)
+    @Query("select n.imageDerivatives from Note n where n.imageKey = :imageKey and n.imageDerivatives is not null")
+    List<String> findImageDerivatives(@Param("imageKey") String imageKey, Limit limit);
+}
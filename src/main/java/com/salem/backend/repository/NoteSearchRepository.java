@@ -0,0 +1,23 @@
+package com.salem.backend.repository;
+
+import com.salem.backend.repository.projection.NoteSearchHit;
+
+import java.util.List;
+
+/**
+ * Full-text search over a user's notes, best match first.
+ * Implementations: PostgresNoteSearchRepository (tsvector + GIN index) and LikeNoteSearchRepository
+ * (portable fallback, e.g. for H2), selected with app.notes.search.engine.
+ */
+public interface NoteSearchRepository {
+
+    // Highlight markers (Unicode private use characters, never part of real text); the service turns them into <mark>
+    String MATCH_START = "\uE000";
+    String MATCH_END = "\uE001";
+
+    /**
+     * Returns up to 'limit' notes of the user matching the query, ordered by (rank desc, id desc).
+     * Pass the (rank, id) of the previous page's last hit to continue after it, or nulls for the first page.
+     */
+    List<NoteSearchHit> search(Long userId, String query, Float afterRank, Long afterId, int limit);
+}
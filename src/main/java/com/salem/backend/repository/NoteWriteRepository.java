@@ -0,0 +1,177 @@
+package com.salem.backend.repository;
+
+import com.salem.backend.repository.projection.NoteBeforeWrite;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Owner-scoped writes on notes: existence check, ownership check and the write are one statement
+ * (WHERE id = :id AND user_id = :userId), which also hands back the row as it was before (old image key etc.).
+ * An empty result means no row matched; only then does the caller spend a query on finding out why.
+ * PostgreSQL returns the old row with RETURNING; H2 (local harness) has no RETURNING and uses its OLD TABLE instead.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class NoteWriteRepository {
+
+    private static final String OLD_COLUMNS = "id, title, content, image_key, image_derivatives, created_at";
+
+    // The sub-select locks the row first, so 'old' is the latest committed version even under concurrent writes
+    private static final String POSTGRES_UPDATE = """
+            UPDATE notes SET %s
+            FROM (SELECT %s FROM notes WHERE id = :id AND user_id = :userId FOR UPDATE) old
+            WHERE notes.id = old.id
+            RETURNING old.id, old.title, old.content, old.image_key, old.image_derivatives, old.created_at
+            """;
+    private static final String POSTGRES_DELETE =
+            "DELETE FROM notes WHERE id = :id AND user_id = :userId RETURNING " + OLD_COLUMNS;
+
+    private static final String H2_UPDATE =
+            "SELECT %2$s FROM OLD TABLE (UPDATE notes SET %1$s WHERE id = :id AND user_id = :userId)";
+    private static final String H2_DELETE =
+            "SELECT " + OLD_COLUMNS + " FROM OLD TABLE (DELETE FROM notes WHERE id = :id AND user_id = :userId)";
+
+    private static final String POSTGRES_DELETE_ALL =
+            "DELETE FROM notes WHERE id IN (:ids) AND user_id = :userId RETURNING " + OLD_COLUMNS;
+    private static final String H2_DELETE_ALL =
+            "SELECT " + OLD_COLUMNS + " FROM OLD TABLE (DELETE FROM notes WHERE id IN (:ids) AND user_id = :userId)";
+
+    // Per-user change counter behind the ETags of GET /api/notes and /api/notes/{id}
+    private static final String POSTGRES_BUMP_VERSION =
+            "UPDATE users SET notes_version = notes_version + 1 WHERE id = :userId RETURNING notes_version";
+    private static final String H2_BUMP_VERSION =
+            "SELECT notes_version FROM FINAL TABLE (UPDATE users SET notes_version = notes_version + 1 WHERE id = :userId)";
+
+    private static final String SET_CONTENT = "title = :title, content = :content, updated_at = :updatedAt";
+    // A new image comes with the variants that already exist for it (a deduplicated upload), usually none:
+    // they are generated afterwards (setImageDerivatives)
+    private static final String SET_CONTENT_AND_IMAGE =
+            SET_CONTENT + ", image_key = :imageKey, image_derivatives = :imageDerivatives";
+    private static final String SET_IMAGE =
+            "image_key = :imageKey, image_derivatives = :imageDerivatives, updated_at = :updatedAt";
+
+    // Every note that still shows the image the variants were made from (deduplicated uploads share one object);
+    // updated_at stays, the list order must not change
+    private static final String SET_DERIVATIVES =
+            "UPDATE notes SET image_derivatives = :derivatives WHERE image_key = :imageKey";
+
+    private static final RowMapper<NoteBeforeWrite> OLD_ROW = (rs, rowNum) -> new NoteBeforeWrite(
+            rs.getLong("id"),
+            rs.getString("title"),
+            rs.getString("content"),
+            rs.getString("image_key"),
+            rs.getString("image_derivatives"),
+            rs.getTimestamp("created_at") != null ? rs.getTimestamp("created_at").toLocalDateTime() : null);
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private String updateSql;
+    private String deleteSql;
+    private String deleteAllSql;
+    private String bumpVersionSql;
+
+    @PostConstruct
+    void detectDialect() {
+        String product = jdbcTemplate.getJdbcTemplate()
+                .execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+
+        if ("H2".equals(product)) {
+            updateSql = H2_UPDATE;
+            deleteSql = H2_DELETE;
+            deleteAllSql = H2_DELETE_ALL;
+            bumpVersionSql = H2_BUMP_VERSION;
+        } else {
+            updateSql = POSTGRES_UPDATE;
+            deleteSql = POSTGRES_DELETE;
+            deleteAllSql = POSTGRES_DELETE_ALL;
+            bumpVersionSql = POSTGRES_BUMP_VERSION;
+        }
+        log.info("Owner-scoped note writes use {} syntax", "H2".equals(product) ? "OLD TABLE" : "RETURNING");
+    }
+
+    /**
+     * Sets title and content, and the image key and its ready variants when a new one is given (null keeps the current image).
+     */
+    public Optional<NoteBeforeWrite> updateContent(Long id, Long userId, String title, String content,
+                                                   String imageKey, String imageDerivatives, LocalDateTime updatedAt) {
+        MapSqlParameterSource params = owned(id, userId)
+                .addValue("title", title)
+                .addValue("content", content)
+                .addValue("updatedAt", updatedAt);
+
+        if (imageKey == null) {
+            return update(SET_CONTENT, params);
+        }
+        return update(SET_CONTENT_AND_IMAGE, params
+                .addValue("imageKey", imageKey)
+                .addValue("imageDerivatives", imageDerivatives));
+    }
+
+    public Optional<NoteBeforeWrite> updateImage(Long id, Long userId, String imageKey, String imageDerivatives,
+                                                 LocalDateTime updatedAt) {
+        return update(SET_IMAGE, owned(id, userId)
+                .addValue("imageKey", imageKey)
+                .addValue("imageDerivatives", imageDerivatives)
+                .addValue("updatedAt", updatedAt));
+    }
+
+    public Optional<NoteBeforeWrite> delete(Long id, Long userId) {
+        return first(jdbcTemplate.query(deleteSql, owned(id, userId), OLD_ROW));
+    }
+
+    /**
+     * Deletes those of the given notes that belong to the user, in one statement; returns the deleted rows.
+     */
+    public List<NoteBeforeWrite> deleteAll(Collection<Long> ids, Long userId) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(deleteAllSql, new MapSqlParameterSource()
+                .addValue("ids", ids)
+                .addValue("userId", userId), OLD_ROW);
+    }
+
+    /**
+     * Records the generated variants of an image on the notes showing it; false if no note shows it anymore.
+     */
+    public boolean setImageDerivatives(String imageKey, String derivatives) {
+        return jdbcTemplate.update(SET_DERIVATIVES, new MapSqlParameterSource()
+                .addValue("imageKey", imageKey)
+                .addValue("derivatives", derivatives)) > 0;
+    }
+
+    /**
+     * Increments the user's notes_version and returns the new value.
+     * Call it inside the transaction of the note write: the row lock it takes orders concurrent writes of one user,
+     * so versions commit in the order they were handed out.
+     */
+    public long bumpNotesVersion(Long userId) {
+        return jdbcTemplate.queryForObject(bumpVersionSql, new MapSqlParameterSource("userId", userId), Long.class);
+    }
+
+    private Optional<NoteBeforeWrite> update(String setClause, MapSqlParameterSource params) {
+        return first(jdbcTemplate.query(updateSql.formatted(setClause, OLD_COLUMNS), params, OLD_ROW));
+    }
+
+    private MapSqlParameterSource owned(Long id, Long userId) {
+        return new MapSqlParameterSource()
+                .addValue("id", id)
+                .addValue("userId", userId);
+    }
+
+    private Optional<NoteBeforeWrite> first(List<NoteBeforeWrite> rows) {
+        return rows.isEmpty() ? Optional.empty() : Optional.of(rows.get(0));
+    }
+}
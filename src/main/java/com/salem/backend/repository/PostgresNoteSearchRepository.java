@@ -0,0 +1,82 @@
+package com.salem.backend.repository;
+
+import com.salem.backend.repository.projection.NoteSearchHit;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * PostgreSQL full-text search on notes.search_vector (generated column + GIN index, changeset salem:4).
+ * The query text is parsed with websearch_to_tsquery, so clients can use "quoted phrases", OR and -exclusions.
+ */
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.notes.search.engine", havingValue = "postgres", matchIfMissing = true)
+public class PostgresNoteSearchRepository implements NoteSearchRepository {
+
+    // Ranking: cover density, normalized by document length (1 = divide by 1 + log(length))
+    private static final String RANK = "ts_rank_cd(n.search_vector, q.query, 1)";
+
+    // The inner query sorts and cuts the page; ts_headline (expensive) only runs for the rows of that page
+    private static final String SEARCH = """
+            SELECT page.id, page.title, page.image_key, page.created_at, page.updated_at, page.rank,
+                   ts_headline('simple', page.title, page.query, :titleOptions) AS title_highlight,
+                   ts_headline('simple', coalesce(page.content, ''), page.query, :snippetOptions) AS snippet
+            FROM (
+                SELECT n.id, n.title, n.content, n.image_key, n.created_at, n.updated_at, q.query,
+                       %1$s AS rank
+                FROM notes n
+                CROSS JOIN websearch_to_tsquery('simple', :query) AS q(query)
+                WHERE n.user_id = :userId
+                  AND n.search_vector @@ q.query
+                  %2$s
+                ORDER BY rank DESC, n.id DESC
+                LIMIT :limit
+            ) page
+            ORDER BY page.rank DESC, page.id DESC
+            """;
+
+    private static final String FIRST_PAGE = SEARCH.formatted(RANK, "");
+    private static final String PAGE_AFTER = SEARCH.formatted(RANK,
+            "AND (" + RANK + ", n.id) < (CAST(:afterRank AS real), :afterId)");
+
+    private static final String TITLE_OPTIONS =
+            "StartSel=" + MATCH_START + ", StopSel=" + MATCH_END + ", HighlightAll=true";
+    private static final String SNIPPET_OPTIONS =
+            "StartSel=" + MATCH_START + ", StopSel=" + MATCH_END + ", MaxFragments=2, MaxWords=25, MinWords=8, FragmentDelimiter=\" … \"";
+
+    private static final RowMapper<NoteSearchHit> HIT = (rs, rowNum) -> new NoteSearchHit(
+            rs.getLong("id"),
+            rs.getString("title"),
+            rs.getString("title_highlight"),
+            rs.getString("snippet"),
+            rs.getString("image_key"),
+            rs.getFloat("rank"),
+            rs.getTimestamp("created_at") != null ? rs.getTimestamp("created_at").toLocalDateTime() : null,
+            rs.getTimestamp("updated_at").toLocalDateTime());
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<NoteSearchHit> search(Long userId, String query, Float afterRank, Long afterId, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("query", query)
+                .addValue("limit", limit)
+                .addValue("titleOptions", TITLE_OPTIONS)
+                .addValue("snippetOptions", SNIPPET_OPTIONS);
+
+        if (afterRank == null) {
+            return jdbcTemplate.query(FIRST_PAGE, params, HIT);
+        }
+        params.addValue("afterRank", afterRank).addValue("afterId", afterId);
+        return jdbcTemplate.query(PAGE_AFTER, params, HIT);
+    }
+}
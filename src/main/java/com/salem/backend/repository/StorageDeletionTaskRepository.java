@@ -0,0 +1,25 @@
+package com.salem.backend.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.salem.backend.entity.StorageDeletionTask;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface StorageDeletionTaskRepository extends JpaRepository<StorageDeletionTask, Long> {
+
+    // Locks a batch of due rows. SKIP LOCKED lets several instances drain the outbox without waiting on each other.
+    @Query(value = """
+            SELECT * FROM storage_deletion_outbox
+            WHERE next_attempt_at <= :now
+            ORDER BY next_attempt_at
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<StorageDeletionTask> lockDueBatch(@Param("now") LocalDateTime now, @Param("limit") int limit);
+}
@@ -0,0 +1,45 @@
+package com.salem.backend.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.salem.backend.entity.StoredFile;
+
+import java.util.Optional;
+
+/**
+ * Reference counts of the stored_files table. Every statement is a single-row UPDATE/INSERT/DELETE:
+ * the row lock it takes serializes a new reference against the release of the last one.
+ */
+@Repository
+public interface StoredFileRepository extends JpaRepository<StoredFile, String> {
+
+    // 0 if the user has no object with this content yet (or its last reference was just released)
+    @Modifying
+    @Query(value = "UPDATE stored_files SET ref_count = ref_count + 1 WHERE user_id = :userId AND content_hash = :hash",
+            nativeQuery = true)
+    int addReference(@Param("userId") Long userId, @Param("hash") String contentHash);
+
+    @Query(value = "SELECT object_key FROM stored_files WHERE user_id = :userId AND content_hash = :hash", nativeQuery = true)
+    Optional<String> findObjectKey(@Param("userId") Long userId, @Param("hash") String contentHash);
+
+    // Fails with a unique violation when the same content was registered concurrently
+    @Modifying
+    @Query(value = """
+            INSERT INTO stored_files (object_key, user_id, content_hash, ref_count, created_at)
+            VALUES (:key, :userId, :hash, 1, CURRENT_TIMESTAMP)
+            """, nativeQuery = true)
+    void insert(@Param("key") String objectKey, @Param("userId") Long userId, @Param("hash") String contentHash);
+
+    // 0 if the object is not tracked (stored before deduplication, or while it was disabled)
+    @Modifying
+    @Query(value = "UPDATE stored_files SET ref_count = ref_count - 1 WHERE object_key = :key", nativeQuery = true)
+    int removeReference(@Param("key") String objectKey);
+
+    @Modifying
+    @Query(value = "DELETE FROM stored_files WHERE object_key = :key AND ref_count <= 0", nativeQuery = true)
+    int deleteIfUnreferenced(@Param("key") String objectKey);
+}
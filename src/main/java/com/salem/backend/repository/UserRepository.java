@@ -2,13 +2,20 @@ package com.salem.backend.repository;
 
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.salem.backend.entity.User;
 
 import java.util.Optional;
 
+// Reads are read-only transactions (read replica when configured); insertIfAbsent overrides this with its own
 @Repository
+@Transactional(readOnly = true)
 public interface UserRepository extends JpaRepository<User, Long> {
     
     // Select * from users where keycloak_id = ?
@@ -16,4 +23,23 @@ public interface UserRepository extends JpaRepository<User, Long> {
     
     // للتحقق هل المستخدم موجود أم لا (أسرع من جلب البيانات كاملة)
     boolean existsByKeycloakId(String keycloakId);
-}
\ No newline at end of file
+
+    // Change counter of the user's notes (bumped by every note write), read by conditional GETs
+    @Query(value = "SELECT notes_version FROM users WHERE id = :id", nativeQuery = true)
+    long findNotesVersion(@Param("id") Long id);
+
+    // JIT provisioning: inserts the user unless a row with this keycloak_id already exists (no unique violation on races).
+    // Runs in its own transaction so the row is committed even if the caller's transaction rolls back later.
+    // No conflict target: keycloak_id is the only unique column an insert can collide on, and this form also runs on H2.
+    @Modifying
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query(value = """
+            INSERT INTO users (keycloak_id, email, first_name, last_name, created_at)
+            VALUES (:keycloakId, :email, :firstName, :lastName, CURRENT_TIMESTAMP)
+            ON CONFLICT DO NOTHING
+            """, nativeQuery = true)
+    int insertIfAbsent(@Param("keycloakId") String keycloakId,
+                       @Param("email") String email,
+                       @Param("firstName") String firstName,
+                       @Param("lastName") String lastName);
+}
@@ -0,0 +1,13 @@
+package com.salem.backend.repository.projection;
+
+import java.time.LocalDateTime;
+
+// A note row as it was right before an owner-scoped update/delete changed it (returned by that same statement)
+public record NoteBeforeWrite(
+    Long id,
+    String title,
+    String content,
+    String imageKey,
+    String imageDerivatives,
+    LocalDateTime createdAt
+) {}
@@ -0,0 +1,11 @@
+package com.salem.backend.repository.projection;
+
+// Just enough of a note to authorize and resolve its image, without loading the note itself
+public interface NoteImageRef {
+
+    Long getOwnerId();
+
+    String getImageKey();
+
+    String getImageDerivatives();
+}
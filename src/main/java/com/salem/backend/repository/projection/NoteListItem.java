@@ -0,0 +1,14 @@
+package com.salem.backend.repository.projection;
+
+import java.time.LocalDateTime;
+
+// Read-only full row (single note, export): filled straight from the query, never a managed Note entity
+public record NoteListItem(
+    Long id,
+    String title,
+    String content,
+    String imageKey,
+    String imageDerivatives,
+    LocalDateTime createdAt,
+    LocalDateTime updatedAt
+) {}
@@ -0,0 +1,15 @@
+package com.salem.backend.repository.projection;
+
+import java.time.LocalDateTime;
+
+// One search result row. titleHighlight / snippet mark matched words with NoteSearchRepository.MATCH_START / MATCH_END.
+public record NoteSearchHit(
+    Long id,
+    String title,
+    String titleHighlight,
+    String snippet,
+    String imageKey,
+    float rank,
+    LocalDateTime createdAt,
+    LocalDateTime updatedAt
+) {}
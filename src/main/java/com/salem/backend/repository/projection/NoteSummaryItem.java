@@ -0,0 +1,14 @@
+package com.salem.backend.repository.projection;
+
+import java.time.LocalDateTime;
+
+// Listing row without the note body: only the first NoteRepository.EXCERPT_LENGTH characters, cut in the query
+public record NoteSummaryItem(
+    Long id,
+    String title,
+    String excerpt,
+    String imageKey,
+    String imageDerivatives,
+    LocalDateTime createdAt,
+    LocalDateTime updatedAt
+) {}
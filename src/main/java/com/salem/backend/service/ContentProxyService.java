@@ -0,0 +1,148 @@
+package com.salem.backend.service;
+
+import com.salem.backend.util.BufferPool;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams stored files through the backend (GET /api/notes/{id}/content) for clients that cannot reach the bucket.
+ * At most app.notes.content.max-streams run at once, each copying through one pooled buffer of
+ * app.notes.content.buffer-size: the heap used by proxied downloads is capped at their product, whatever the file sizes.
+ * Active streams, rejected requests and bytes sent are metered (see docs/metrics.md).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ContentProxyService {
+
+    private final FileStorageService fileStorageService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.notes.content.max-streams}")
+    private int maxStreams;
+
+    @Value("${app.notes.content.buffer-size}")
+    private DataSize bufferSize;
+
+    // How long a request waits for a free stream before it is turned away with 503
+    @Value("${app.notes.content.acquire-timeout}")
+    private Duration acquireTimeout;
+
+    private Semaphore streams;
+    private BufferPool bufferPool;
+    private Counter rejected;
+    private Counter bytesSent;
+
+    @PostConstruct
+    void init() {
+        streams = new Semaphore(maxStreams);
+        // One buffer per stream: acquire() never blocks while a stream slot is held
+        bufferPool = new BufferPool((int) bufferSize.toBytes(), maxStreams);
+
+        Gauge.builder("notes.content.streams.active", streams, s -> maxStreams - s.availablePermits())
+                .description("Proxied downloads in progress")
+                .register(meterRegistry);
+        rejected = Counter.builder("notes.content.streams.rejected")
+                .description("Proxied downloads refused because all streams were busy")
+                .register(meterRegistry);
+        bytesSent = Counter.builder("notes.content.bytes")
+                .description("Bytes sent by proxied downloads")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Size, ETag and modification time of the file behind a note, read before any stream is reserved.
+     */
+    public ObjectMetadata stat(String key) {
+        return fileStorageService.statFile(key);
+    }
+
+    /**
+     * Reserves one of the proxied streams, waiting up to app.notes.content.acquire-timeout.
+     * Returns null when all are busy. Close the slot when done, also on failure.
+     */
+    public Slot tryAcquire() throws InterruptedException {
+        if (!streams.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            rejected.increment();
+            return null;
+        }
+        try {
+            return new Slot(bufferPool.acquire());
+        } catch (InterruptedException | RuntimeException e) {
+            streams.release();
+            throw e;
+        }
+    }
+
+    /**
+     * A reserved stream and its transfer buffer.
+     */
+    public final class Slot implements AutoCloseable {
+
+        private byte[] buffer;
+
+        private Slot(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Copies length bytes of the stored file, starting at offset, to out.
+         * A client that goes away mid-transfer ends the copy quietly; storage failures are thrown.
+         */
+        public void copy(String key, long offset, long length, OutputStream out) {
+            long sent = 0;
+            try (InputStream in = fileStorageService.openFile(key, offset, length)) {
+                while (sent < length) {
+                    int read = in.read(buffer, 0, (int) Math.min(buffer.length, length - sent));
+                    if (read < 0) {
+                        break; // Shorter than its metadata said: the client sees a truncated body
+                    }
+                    if (!write(out, read)) {
+                        log.debug("Client went away after {} of {} bytes of {}", sent, length, key);
+                        return;
+                    }
+                    sent += read;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read file " + key + " from storage", e);
+            } finally {
+                bytesSent.increment(sent);
+            }
+        }
+
+        // False if the client closed the connection
+        private boolean write(OutputStream out, int length) {
+            try {
+                out.write(buffer, 0, length);
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (buffer != null) {
+                bufferPool.release(buffer);
+                buffer = null;
+                streams.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.salem.backend.service;
+
+import com.salem.backend.entity.User;
+import com.salem.backend.repository.NoteRepository;
+import com.salem.backend.repository.StoredFileRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Content-addressed storage of note images: a user who attaches the same bytes to many notes gets one object.
+ * Content is identified by its SHA-256 per user (stored_files), and every note pointing at the object holds a reference.
+ * References are taken here before the note write, and released by NoteService in the transaction that stops using
+ * the object; only the release of the last one deletes it (original and variants, through the deletion outbox).
+ * Lookups are counted as storage.dedup{operation, result} (see docs/metrics.md).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FileDeduplicationService {
+
+    private static final String RESULT_HIT = "hit";
+    private static final String RESULT_MISS = "miss";
+
+    private final FileStorageService fileStorageService;
+    private final StoredFileRepository storedFileRepository;
+    private final NoteRepository noteRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    // Off: every upload is a new object again; references already taken are still released correctly
+    @Value("${app.storage.dedup.enabled}")
+    private boolean enabled;
+
+    /**
+     * A stored image a note can point at: its key and the variants that already exist for it (null if none yet).
+     */
+    public record StoredImage(String key, String derivatives) {}
+
+    /**
+     * Stores a multipart/form-data part, or takes a reference on the user's object with the same content.
+     * The part is already spooled by the servlet container, so it is hashed first and a duplicate is never uploaded.
+     * Returns null for a missing or empty file.
+     */
+    public StoredImage store(MultipartFile file, User user) {
+        if (file == null || file.isEmpty()) {
+            return null;
+        }
+        if (!enabled) {
+            return new StoredImage(fileStorageService.uploadFile(file, user.getKeycloakId()), null);
+        }
+
+        // 1. Hash the part
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read the uploaded file", e);
+        }
+        String hash = HexFormat.of().formatHex(digest.digest());
+
+        // 2. Known content: a new reference and no upload at all
+        StoredImage existing = addReference(user.getId(), hash);
+        if (existing != null) {
+            count("upload", RESULT_HIT);
+            log.info("Upload deduplicated to existing object: {}", existing.key());
+            return existing;
+        }
+
+        // 3. New content
+        return register(user.getId(), hash, fileStorageService.uploadFile(file, user.getKeycloakId()), "upload");
+    }
+
+    /**
+     * Streams a request body to storage while hashing it, then keeps that object or, if the user already had the
+     * same content, deletes the fresh copy again and takes a reference on the existing one.
+     * The body is never buffered, so unlike store() a duplicate is still transferred once.
+     */
+    public StoredImage storeStream(InputStream content, String contentType, long declaredLength, User user) {
+        if (!enabled) {
+            return new StoredImage(fileStorageService.uploadStream(content, contentType, declaredLength, user.getKeycloakId()), null);
+        }
+
+        MessageDigest digest = sha256();
+        String key = fileStorageService.uploadStream(new DigestInputStream(content, digest), contentType, declaredLength,
+                user.getKeycloakId());
+        String hash = HexFormat.of().formatHex(digest.digest());
+
+        StoredImage existing = addReference(user.getId(), hash);
+        if (existing != null) {
+            count("upload.stream", RESULT_HIT);
+            log.info("Streamed upload duplicates existing object {}, dropping {}", existing.key(), key);
+            fileStorageService.deleteFile(key);
+            return existing;
+        }
+        return register(user.getId(), hash, key, "upload.stream");
+    }
+
+    /**
+     * Releases one reference on an object. Must run inside the transaction that stops pointing a note at it.
+     * Returns true when that was the last one (or the object is not tracked): the caller deletes it.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean release(String key) {
+        if (storedFileRepository.removeReference(key) == 0) {
+            return true;
+        }
+        return storedFileRepository.deleteIfUnreferenced(key) > 0;
+    }
+
+    /**
+     * Compensation of a failed note write: gives back the reference store() took, and deletes the object right away
+     * if nothing else uses it.
+     */
+    public void releaseUnsaved(StoredImage image) {
+        if (image == null) {
+            return;
+        }
+        if (Boolean.TRUE.equals(transactionTemplate.execute(status -> release(image.key())))) {
+            log.warn("DB write failed, deleting the just uploaded object: {}", image.key());
+            List<String> keys = new ArrayList<>(ImageDerivativeService.keys(image.key(), image.derivatives()));
+            keys.add(image.key());
+            fileStorageService.deleteFiles(keys);
+        }
+    }
+
+    // The user's object with this content, with one more reference; null if there is none
+    private StoredImage addReference(Long userId, String hash) {
+        return transactionTemplate.execute(status -> {
+            if (storedFileRepository.addReference(userId, hash) == 0) {
+                return null;
+            }
+            String key = storedFileRepository.findObjectKey(userId, hash).orElseThrow();
+            List<String> derivatives = noteRepository.findImageDerivatives(key, Limit.of(1));
+            return new StoredImage(key, derivatives.isEmpty() ? null : derivatives.get(0));
+        });
+    }
+
+    // Records a freshly uploaded object with its first reference. Lost a race against the same content: keep the other copy.
+    private StoredImage register(Long userId, String hash, String key, String operation) {
+        try {
+            transactionTemplate.execute(status -> {
+                storedFileRepository.insert(key, userId, hash);
+                return null;
+            });
+            count(operation, RESULT_MISS);
+            return new StoredImage(key, null);
+        } catch (DataIntegrityViolationException e) {
+            StoredImage existing = addReference(userId, hash);
+            if (existing == null) {
+                return register(userId, hash, key, operation); // The other copy was released again in between
+            }
+            count(operation, RESULT_HIT);
+            fileStorageService.deleteFile(key);
+            return existing;
+        }
+    }
+
+    private void count(String operation, String result) {
+        Counter.builder("storage.dedup")
+                .description("Uploads checked against the user's stored content")
+                .tag("operation", operation)
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -1,29 +1,108 @@
 package com.salem.backend.service;
 
-import io.awspring.cloud.s3.S3Template;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.salem.backend.exception.BusinessException;
+import com.salem.backend.exception.enErrorCode;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
 import java.io.InputStream;
+import java.time.Clock;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.regex.Pattern;
 
+/**
+ * Storage of note images: key layout, signed-URL cache and metrics, in front of the configured StorageBackend
+ * (S3 by default, local disk with app.storage.backend=local).
+ * Calls are timed as storage.operation{operation, outcome} and upload sizes recorded as storage.upload.size
+ * (see docs/metrics.md), so a slow request can be attributed to storage or to the database.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class FileStorageService {
 
-    private final S3Template s3Template;
+    // Only letters and digits survive from the client's file name: keys are also file names with the local backend
+    private static final Pattern SAFE_EXTENSION = Pattern.compile("\\.[A-Za-z0-9]{1,10}");
 
-    @Value("${app.s3.bucket}")
-    private String bucketName;
+    private static final String OUTCOME_SUCCESS = "success";
+    private static final String OUTCOME_FAILURE = "failure";
+    // Batch delete that storage accepted but refused some keys of
+    private static final String OUTCOME_PARTIAL = "partial";
+
+    // SLO buckets of storage.upload.size: 100KB, 1MB, 5MB, 10MB, 100MB, 1GB
+    private static final double[] UPLOAD_SIZE_BUCKETS = {
+            DataSize.ofKilobytes(100).toBytes(), DataSize.ofMegabytes(1).toBytes(), DataSize.ofMegabytes(5).toBytes(),
+            DataSize.ofMegabytes(10).toBytes(), DataSize.ofMegabytes(100).toBytes(), DataSize.ofGigabytes(1).toBytes()
+    };
+
+    private final StorageBackend storageBackend;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.s3.streaming.max-object-size}")
+    private DataSize maxObjectSize;
+
+    // How long a freshly signed URL stays valid
+    @Value("${app.s3.presign.ttl}")
+    private Duration presignTtl;
+
+    // A cached URL is only handed out while it still has at least this much validity left
+    @Value("${app.s3.presign.cache.min-remaining}")
+    private Duration minRemainingValidity;
+
+    @Value("${app.s3.presign.cache.max-size}")
+    private long urlCacheMaxSize;
+
+    // Signed URLs by image key. Entries expire when their remaining validity drops below the minimum,
+    // so the next request re-signs instead of handing out a URL that is about to die.
+    private Cache<String, PresignedUrl> urlCache;
+
+    // Time sources of the URL cache: entries expire on the ticker, expiresAt is read from the clock.
+    // Only replaced in tests, before initUrlCache() runs.
+    private Ticker ticker = Ticker.systemTicker();
+    private Clock clock = Clock.systemUTC();
+
+    @PostConstruct
+    void initUrlCache() {
+        Duration reuseWindow = presignTtl.minus(minRemainingValidity);
+        if (reuseWindow.isNegative() || reuseWindow.isZero()) {
+            throw new IllegalStateException("app.s3.presign.cache.min-remaining must be shorter than app.s3.presign.ttl");
+        }
+
+        urlCache = Caffeine.newBuilder()
+                .maximumSize(urlCacheMaxSize) // Size-based eviction uses W-TinyLFU
+                .expireAfterWrite(reuseWindow)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+
+        // Exposes cache.gets{result=hit|miss}, cache.evictions, cache.size under cache=presignedUrls
+        CaffeineCacheMetrics.monitor(meterRegistry, urlCache, "presignedUrls");
+    }
 
     /**
-     * Uploads a file to S3/MinIO and returns the stored file key.
+     * Uploads a file to storage and returns the stored file key.
      * The key structure follows: userId/UUID.extension
      */
     public String uploadFile(MultipartFile file, String userId) {
@@ -41,43 +120,179 @@ public class FileStorageService {
             int dotIndex = originalFilename.lastIndexOf(".");
             extension = originalFilename.substring(dotIndex);
         }
+        if (!SAFE_EXTENSION.matcher(extension).matches()) {
+            extension = "";
+        }
 
         // 3. Generate a unique key to prevent collisions
-        String key = userId + "/" + UUID.randomUUID().toString() + extension;
+        String key = buildKey(userId, extension);
 
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = OUTCOME_FAILURE;
         try {
-            log.info("Uploading file to S3 bucket: {}, key: {}", bucketName, key);
-            
-            // 4. Upload stream to S3
-            InputStream inputStream = file.getInputStream();
-            s3Template.upload(bucketName, key, inputStream);
-            
+            // 4. Hand the part to the backend, its size is already known
+            storageBackend.put(key, file.getContentType(), file.getSize(), file);
+
+            uploadSize("upload").record(file.getSize());
+            outcome = OUTCOME_SUCCESS;
             return key;
-        } catch (IOException e) {
-            log.error("Failed to upload file", e);
-            // Throwing a RuntimeException that will be caught by GlobalExceptionHandler
-            throw new RuntimeException("Failed to upload file to S3", e);
+        } finally {
+            sample.stop(timer("upload", outcome));
+        }
+    }
+
+    /**
+     * Streams a request body straight to storage (S3 multipart upload part by part, or a file on disk) and returns
+     * the stored file key. Nothing is spooled to memory first, so the size is only limited by app.s3.streaming.max-object-size.
+     */
+    public String uploadStream(InputStream content, String contentType, long declaredLength, String userId) {
+
+        // Reject early when the client already told us the body is too large
+        if (declaredLength > maxObjectSize.toBytes()) {
+            throw new BusinessException(enErrorCode.FILE_TOO_LARGE);
+        }
+
+        String key = buildKey(userId, extensionOf(contentType));
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = OUTCOME_FAILURE;
+        try {
+            long bytes = storageBackend.putStream(key, contentType, content, maxObjectSize.toBytes());
+            uploadSize("upload.stream").record(bytes);
+            outcome = OUTCOME_SUCCESS;
+        } finally {
+            sample.stop(timer("upload.stream", outcome));
+        }
+
+        return key;
+    }
+
+    /**
+     * Stores a generated variant of an image (see ImageDerivativeService) under the given key.
+     */
+    public void uploadDerivative(String key, byte[] content, String contentType) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = OUTCOME_FAILURE;
+        try {
+            storageBackend.put(key, contentType, content.length, new ByteArrayResource(content));
+            uploadSize("upload.derivative").record(content.length);
+            outcome = OUTCOME_SUCCESS;
+        } finally {
+            sample.stop(timer("upload.derivative", outcome));
+        }
+    }
+
+    /**
+     * Reads a stored file back. The caller closes the stream.
+     */
+    public InputStream openFile(String key) {
+        return storageBackend.open(key);
+    }
+
+    /**
+     * Reads length bytes of a stored file from offset on (an HTTP byte range). The caller closes the stream.
+     * Timed up to the first byte being available, not while the caller drains the stream.
+     */
+    public InputStream openFile(String key, long offset, long length) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = OUTCOME_FAILURE;
+        try {
+            InputStream in = storageBackend.open(key, offset, length);
+            outcome = OUTCOME_SUCCESS;
+            return in;
+        } finally {
+            sample.stop(timer("open", outcome));
         }
     }
 
     /**
-     * Generates a pre-signed URL to access private files securely.
-     * The URL is valid for a specific duration (e.g., 1 hour).
+     * Size, ETag and modification time of a stored file; BusinessException(FILE_NOT_FOUND) if there is none.
+     */
+    public ObjectMetadata statFile(String key) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = OUTCOME_FAILURE;
+        try {
+            ObjectMetadata metadata = storageBackend.stat(key);
+            outcome = OUTCOME_SUCCESS;
+            return metadata;
+        } finally {
+            sample.stop(timer("stat", outcome));
+        }
+    }
+
+    /**
+     * Returns a pre-signed URL to access private files securely.
+     * The URL is valid for app.s3.presign.ttl; a cached one is reused while it still has enough validity left.
      */
     public String getFileUrl(String key) {
         if (key == null || key.isBlank()) return null;
-        
-        // Generate a URL valid for 1 hour
-        String url = s3Template.createSignedGetURL(bucketName, key, Duration.ofHours(1)).toString();
-        
-        log.debug("Generated signed URL for key {}", key); // Changed to debug to reduce noise
-        return url;
+
+        return getSignedUrl(key).url();
+    }
+
+    /**
+     * Same as getFileUrl, but also tells the caller until when the URL stays valid.
+     */
+    public PresignedUrl getSignedUrl(String key) {
+        return urlCache.get(key, this::presign);
+    }
+
+    /**
+     * Drops the cached signed URL of a key (the object was deleted or replaced).
+     */
+    public void evictFileUrl(String key) {
+        if (key == null || key.isBlank()) return;
+
+        urlCache.invalidate(key);
+    }
+
+    // Cache miss only: URLs served from the cache are counted by the cache metrics, not by this timer
+    private PresignedUrl presign(String key) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = OUTCOME_FAILURE;
+        try {
+            Instant expiresAt = clock.instant().plus(presignTtl);
+            String url = storageBackend.signGetUrl(key, presignTtl);
+
+            log.debug("Generated signed URL for key {}", key); // Changed to debug to reduce noise
+            outcome = OUTCOME_SUCCESS;
+            return new PresignedUrl(url, expiresAt);
+        } finally {
+            sample.stop(timer("presign", outcome));
+        }
     }
 
 
 
+    // Key layout shared by all uploads: userId/UUID.extension
+    private String buildKey(String userId, String extension) {
+        return userId + "/" + UUID.randomUUID().toString() + extension;
+    }
+
     /**
-     * Deletes a file from S3 bucket using its key.
+     * Key of a generated variant of an image: userId/UUID.png -> userId/UUID-thumb.jpg
+     */
+    public static String derivedKey(String imageKey, String variant, String extension) {
+        int dot = imageKey.lastIndexOf('.');
+        String base = dot > imageKey.lastIndexOf('/') ? imageKey.substring(0, dot) : imageKey;
+        return base + "-" + variant + extension;
+    }
+
+    // "image/png" -> ".png"; unknown or unusual types get no extension
+    private String extensionOf(String contentType) {
+        if (contentType == null || contentType.isBlank()) {
+            return "";
+        }
+        try {
+            String subtype = MediaType.parseMediaType(contentType).getSubtype();
+            return subtype.matches("[a-z0-9]+") ? "." + subtype : "";
+        } catch (InvalidMediaTypeException e) {
+            return "";
+        }
+    }
+
+    /**
+     * Deletes a file from storage using its key.
      */
     public void deleteFile(String key) {
         if (key == null || key.isBlank()) {
@@ -85,12 +300,77 @@ public class FileStorageService {
             return;
         }
         
+        evictFileUrl(key);
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = OUTCOME_FAILURE;
         try {
-            log.info("Deleting file from S3: {}", key);
-            s3Template.deleteObject(bucketName, key);
+            storageBackend.delete(key);
+            outcome = OUTCOME_SUCCESS;
         } catch (Exception e) {
             
-            log.error("Failed to delete file from S3: " + key, e);
+            log.error("Failed to delete file from storage: " + key, e);
+        } finally {
+            sample.stop(timer("delete", outcome));
+        }
+    }
+
+    /**
+     * Deletes many files in batches (S3 multi-object delete: up to 1000 keys per request).
+     * Never throws for storage failures: returns key -> error message for every key that could not be deleted.
+     */
+    public Map<String, String> deleteFiles(Collection<String> keys) {
+        Map<String, String> failures = new HashMap<>();
+        int batchSize = storageBackend.maxKeysPerDelete();
+        List<String> batch = new ArrayList<>();
+
+        for (String key : keys) {
+            evictFileUrl(key);
+            batch.add(key);
+            if (batch.size() == batchSize) {
+                deleteBatch(batch, failures);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            deleteBatch(batch, failures);
+        }
+        return failures;
+    }
+
+    // operation: upload | upload.stream | upload.derivative | presign | stat | open | delete | delete.batch; outcome: success | failure | partial.
+    // Both tags have a fixed set of values, keys never end up in tags.
+    private Timer timer(String operation, String outcome) {
+        return Timer.builder("storage.operation")
+                .description("Time spent in storage calls")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private DistributionSummary uploadSize(String operation) {
+        return DistributionSummary.builder("storage.upload.size")
+                .description("Size of the objects uploaded to storage")
+                .baseUnit("bytes")
+                .serviceLevelObjectives(UPLOAD_SIZE_BUCKETS)
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    private void deleteBatch(List<String> keys, Map<String, String> failures) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = OUTCOME_FAILURE;
+        try {
+            Map<String, String> refused = storageBackend.deleteAll(keys);
+            failures.putAll(refused);
+            outcome = refused.isEmpty() ? OUTCOME_SUCCESS : OUTCOME_PARTIAL;
+        } catch (Exception e) {
+            log.error("Multi-object delete of {} keys failed", keys.size(), e);
+            for (String key : keys) {
+                failures.put(key, e.getClass().getSimpleName() + ": " + e.getMessage());
+            }
+        } finally {
+            sample.stop(timer("delete.batch", outcome));
         }
     }
 
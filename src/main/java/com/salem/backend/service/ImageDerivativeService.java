@@ -0,0 +1,191 @@
+package com.salem.backend.service;
+
+import com.salem.backend.repository.NoteWriteRepository;
+import com.salem.backend.util.ImageScaler;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Generates the smaller variants of note images (app.images.derivatives.sizes, e.g. thumb and medium) after the upload,
+ * on the bounded imageDerivativeExecutor. The original is read back from storage and decoded once; each variant is
+ * scaled down from the previous, larger one and stored as JPEG next to the original (FileStorageService.derivedKey).
+ * The notes showing the image then record which variants are ready (notes.image_derivatives), so responses can link them.
+ * Jobs are timed as images.derivatives.processing{outcome}; queue depth and busy workers are gauges (see docs/metrics.md).
+ */
+@Service
+@Slf4j
+public class ImageDerivativeService {
+
+    public static final String EXTENSION = ".jpg";
+    private static final String CONTENT_TYPE = "image/jpeg";
+
+    private static final String OUTCOME_SUCCESS = "success";
+    private static final String OUTCOME_FAILURE = "failure";
+    // Not an image ImageIO can read, over the pixel limit, or no note shows this image anymore
+    private static final String OUTCOME_SKIPPED = "skipped";
+
+    private final FileStorageService fileStorageService;
+    private final NoteWriteRepository noteWriteRepository;
+    private final NoteListCache noteListCache;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor executor;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.images.derivatives.enabled}")
+    private boolean enabled;
+
+    // name:longest-edge-in-pixels, e.g. thumb:256,medium:1024
+    @Value("${app.images.derivatives.sizes}")
+    private List<String> sizes;
+
+    @Value("${app.images.derivatives.jpeg-quality}")
+    private float jpegQuality;
+
+    // Images with more pixels than this are not decoded at all (decompression bombs)
+    @Value("${app.images.derivatives.max-pixels}")
+    private long maxPixels;
+
+    // Largest first: each variant is scaled from the one before
+    private List<Variant> variants;
+
+    private record Variant(String name, int maxEdge) {}
+
+    public ImageDerivativeService(FileStorageService fileStorageService, NoteWriteRepository noteWriteRepository,
+                                  NoteListCache noteListCache, TransactionTemplate transactionTemplate,
+                                  @Qualifier("imageDerivativeExecutor") ThreadPoolExecutor executor,
+                                  MeterRegistry meterRegistry) {
+        this.fileStorageService = fileStorageService;
+        this.noteWriteRepository = noteWriteRepository;
+        this.noteListCache = noteListCache;
+        this.transactionTemplate = transactionTemplate;
+        this.executor = executor;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        List<Variant> parsed = new ArrayList<>();
+        for (String size : sizes) {
+            String[] parts = size.strip().split(":");
+            if (parts.length != 2 || !parts[0].matches("[a-z0-9]+")) {
+                throw new IllegalStateException("app.images.derivatives.sizes: expected name:pixels, got '" + size + "'");
+            }
+            parsed.add(new Variant(parts[0], Integer.parseInt(parts[1])));
+        }
+        parsed.sort(Comparator.comparingInt(Variant::maxEdge).reversed());
+        variants = List.copyOf(parsed);
+
+        Gauge.builder("images.derivatives.queue", executor, pool -> pool.getQueue().size())
+                .description("Variant jobs waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("images.derivatives.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Workers generating variants right now")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues the variants of a just stored image. Call after the note pointing at it has been committed.
+     * If the queue is full the job runs right here, on the caller's thread (back-pressure on uploads).
+     */
+    public void submit(Long userId, String imageKey) {
+        if (!enabled || imageKey == null || variants.isEmpty()) {
+            return;
+        }
+        executor.execute(() -> generate(userId, imageKey));
+    }
+
+    /**
+     * Names of the ready variants as recorded on the note ("thumb,medium"), in that order.
+     */
+    public static List<String> names(String imageDerivatives) {
+        if (imageDerivatives == null || imageDerivatives.isBlank()) {
+            return List.of();
+        }
+        return List.of(imageDerivatives.split(","));
+    }
+
+    /**
+     * Storage keys of the ready variants of an image (to delete them together with the original).
+     */
+    public static List<String> keys(String imageKey, String imageDerivatives) {
+        if (imageKey == null) {
+            return List.of();
+        }
+        return names(imageDerivatives).stream()
+                .map(name -> FileStorageService.derivedKey(imageKey, name, EXTENSION))
+                .toList();
+    }
+
+    private void generate(Long userId, String imageKey) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = OUTCOME_FAILURE;
+        List<String> stored = new ArrayList<>(variants.size());
+        try {
+            // 1. Decode the original, once
+            BufferedImage image;
+            try (InputStream in = fileStorageService.openFile(imageKey)) {
+                image = ImageScaler.decode(in, maxPixels);
+            }
+            if (image == null) {
+                log.info("No variants for {}: not a readable image", imageKey);
+                outcome = OUTCOME_SKIPPED;
+                return;
+            }
+
+            // 2. Scale down variant by variant and store each one
+            List<String> names = new ArrayList<>(variants.size());
+            for (Variant variant : variants) {
+                image = ImageScaler.fit(image, variant.maxEdge());
+                String key = FileStorageService.derivedKey(imageKey, variant.name(), EXTENSION);
+                fileStorageService.uploadDerivative(key, ImageScaler.encodeJpeg(image, jpegQuality), CONTENT_TYPE);
+                stored.add(key);
+                names.add(variant.name());
+            }
+
+            // 3. Record them on the notes that still show this image; the version bump makes clients refetch
+            boolean recorded = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                if (!noteWriteRepository.setImageDerivatives(imageKey, String.join(",", names))) {
+                    return false;
+                }
+                noteWriteRepository.bumpNotesVersion(userId);
+                noteListCache.notesChanged(userId);
+                return true;
+            }));
+
+            if (recorded) {
+                log.info("Stored {} variants of {}", names.size(), imageKey);
+                outcome = OUTCOME_SUCCESS;
+            } else {
+                // Notes deleted or image replaced meanwhile: nothing will ever point at these
+                fileStorageService.deleteFiles(stored);
+                outcome = OUTCOME_SKIPPED;
+            }
+        } catch (IllegalArgumentException e) {
+            log.warn("No variants for {}: {}", imageKey, e.getMessage());
+            fileStorageService.deleteFiles(stored);
+            outcome = OUTCOME_SKIPPED;
+        } catch (Exception e) {
+            log.error("Failed to generate variants of {}", imageKey, e);
+            fileStorageService.deleteFiles(stored);
+        } finally {
+            sample.stop(Timer.builder("images.derivatives.processing")
+                    .description("Time to generate and store all variants of one image")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.salem.backend.service;
+
+/**
+ * How NoteResponse.imageUrl is filled (app.notes.image-url-mode).
+ */
+public enum ImageUrlMode {
+
+    // A pre-signed S3 URL, signed while building the response
+    PRESIGNED,
+
+    // A stable backend path (/api/notes/{id}/image) that redirects to a signed URL only when the image is actually requested
+    LAZY
+}
@@ -0,0 +1,307 @@
+package com.salem.backend.service;
+
+import com.salem.backend.exception.BusinessException;
+import com.salem.backend.exception.enErrorCode;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Note images as files under app.storage.local.root, one directory per user (same userId/UUID.extension keys as S3).
+ * Uploads are written through a FileChannel into a temporary file that is renamed into place once complete,
+ * so a reader never sees half a file. Downloads go through FileController with an HMAC-signed, expiring URL
+ * that plays the role of an S3 pre-signed URL.
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "local")
+@Slf4j
+public class LocalDiskStorageBackend implements StorageBackend {
+
+    /**
+     * What an upload waits for before it is reported as stored.
+     */
+    public enum FsyncPolicy {
+        // Page cache only: fastest, the last seconds of uploads are lost if the machine (not just the JVM) dies
+        NONE,
+        // Content forced to disk before the rename (fdatasync)
+        DATA,
+        // Content and metadata forced, and the directory after the rename, so the new name survives a crash too
+        ALL
+    }
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    // userId/UUID.extension, nothing that could walk out of the root directory
+    private static final Pattern KEY_PATTERN = Pattern.compile("[A-Za-z0-9_-]+/[A-Za-z0-9_-]+(\\.[A-Za-z0-9]+)?");
+
+    // Bytes per transferFrom call when copying a stream, also how often the size limit is checked
+    private static final long TRANSFER_CHUNK = DataSize.ofMegabytes(8).toBytes();
+
+    @Value("${app.storage.local.root}")
+    private Path configuredRoot;
+
+    @Value("${app.storage.local.fsync}")
+    private FsyncPolicy fsyncPolicy;
+
+    // Scheme, host and port the signed URLs point at (the address clients reach this service on)
+    @Value("${app.storage.local.public-url}")
+    private String publicUrl;
+
+    @Value("${app.storage.local.url-secret}")
+    private String urlSecret;
+
+    private Path root;
+    private SecretKeySpec signingKey;
+
+    @PostConstruct
+    void init() throws IOException {
+        if (urlSecret == null || urlSecret.length() < 32) {
+            throw new IllegalStateException("app.storage.local.url-secret must be at least 32 characters when app.storage.backend=local");
+        }
+        signingKey = new SecretKeySpec(urlSecret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        root = Files.createDirectories(configuredRoot).toRealPath();
+        log.info("Storing files under {} (fsync: {})", root, fsyncPolicy);
+    }
+
+    @Override
+    public void put(String key, String contentType, long size, InputStreamSource source) {
+        try (InputStream in = source.getInputStream()) {
+            write(key, in, Long.MAX_VALUE);
+        } catch (IOException e) {
+            log.error("Failed to store file {}", key, e);
+            throw new UncheckedIOException("Failed to store file " + key, e);
+        }
+    }
+
+    @Override
+    public long putStream(String key, String contentType, InputStream content, long maxObjectSize) {
+        try {
+            return write(key, content, maxObjectSize);
+        } catch (IOException e) {
+            log.error("Failed to store file {}", key, e);
+            throw new UncheckedIOException("Failed to store file " + key, e);
+        }
+    }
+
+    private long write(String key, InputStream in, long maxObjectSize) throws IOException {
+        Path target = resolve(key);
+        Path directory = Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(directory, ".upload-", ".part");
+
+        log.info("Writing file {}", target);
+        try {
+            long written = 0;
+            // Only a FileInputStream source is copied file to file inside the kernel (Channels.newChannel hands back
+            // its FileChannel). Multipart parts are not: Tomcat opens a part spooled to disk with Files.newInputStream,
+            // so transferFrom reads it through an 8 KB buffer in user space, like any other stream
+            try (ReadableByteChannel src = Channels.newChannel(in);
+                 FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                long transferred;
+                while ((transferred = out.transferFrom(src, written, TRANSFER_CHUNK)) > 0) {
+                    written += transferred;
+                    if (written > maxObjectSize) {
+                        throw new BusinessException(enErrorCode.FILE_TOO_LARGE);
+                    }
+                }
+                if (fsyncPolicy != FsyncPolicy.NONE) {
+                    out.force(fsyncPolicy == FsyncPolicy.ALL);
+                }
+            }
+
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            if (fsyncPolicy == FsyncPolicy.ALL) {
+                forceDirectory(directory);
+            }
+            return written;
+        } finally {
+            Files.deleteIfExists(temp); // Already moved on success
+        }
+    }
+
+    // Makes the rename durable. Not every platform can open a directory (Windows), there it is skipped.
+    private void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Could not fsync directory {}", directory, e);
+        }
+    }
+
+    @Override
+    public InputStream open(String key) {
+        try {
+            return Files.newInputStream(resolve(key));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read file " + key, e);
+        }
+    }
+
+    @Override
+    public InputStream open(String key, long offset, long length) {
+        try {
+            FileChannel channel = FileChannel.open(resolve(key), StandardOpenOption.READ).position(offset);
+            return new RangeInputStream(Channels.newInputStream(channel), length);
+        } catch (NoSuchFileException e) {
+            throw new BusinessException(enErrorCode.FILE_NOT_FOUND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read file " + key, e);
+        }
+    }
+
+    @Override
+    public ObjectMetadata stat(String key) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(resolve(key), BasicFileAttributes.class);
+            Instant lastModified = attributes.lastModifiedTime().toInstant();
+            // Same shape as nginx: files are only ever replaced as a whole, so size and mtime identify the content
+            String eTag = "\"" + Long.toHexString(attributes.size()) + "-" + Long.toHexString(lastModified.toEpochMilli()) + "\"";
+            String contentType = MediaTypeFactory.getMediaType(key).map(MediaType::toString).orElse(null);
+            return new ObjectMetadata(attributes.size(), eTag, lastModified, contentType);
+        } catch (NoSuchFileException e) {
+            throw new BusinessException(enErrorCode.FILE_NOT_FOUND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read file " + key, e);
+        }
+    }
+
+    @Override
+    public String signGetUrl(String key, Duration ttl) {
+        long expires = Instant.now().plus(ttl).getEpochSecond();
+        return UriComponentsBuilder.fromUriString(publicUrl)
+                .path("/api/files/{key}")
+                .queryParam("expires", expires)
+                .queryParam("signature", sign(key, expires))
+                .buildAndExpand(key) // The path component keeps the "/" of the key as a separator
+                .encode()
+                .toUriString();
+    }
+
+    /**
+     * The file behind a signed URL, or BusinessException(FILE_LINK_INVALID) if the signature does not match or has expired.
+     */
+    public Path verifiedPath(String key, long expires, String signature) {
+        if (!KEY_PATTERN.matcher(key).matches() || Instant.now().getEpochSecond() > expires) {
+            throw new BusinessException(enErrorCode.FILE_LINK_INVALID);
+        }
+        byte[] expected = sign(key, expires).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, signature.getBytes(StandardCharsets.US_ASCII))) { // Constant time
+            throw new BusinessException(enErrorCode.FILE_LINK_INVALID);
+        }
+        return resolve(key);
+    }
+
+    // HMAC-SHA256 over "key\nexpires", URL-safe Base64. A Mac is not thread-safe, each call gets its own.
+    private String sign(String key, long expires) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(signingKey);
+            byte[] digest = mac.doFinal((key + "\n" + expires).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(HMAC_ALGORITHM + " is not available", e);
+        }
+    }
+
+    @Override
+    public void delete(String key) {
+        log.info("Deleting file: {}", key);
+        try {
+            Files.deleteIfExists(resolve(key));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete file " + key, e);
+        }
+    }
+
+    @Override
+    public Map<String, String> deleteAll(List<String> keys) {
+        Map<String, String> failures = new HashMap<>();
+        for (String key : keys) {
+            try {
+                Files.deleteIfExists(resolve(key));
+            } catch (IOException | IllegalArgumentException e) {
+                failures.put(key, e.getClass().getSimpleName() + ": " + e.getMessage());
+            }
+        }
+        return failures;
+    }
+
+    @Override
+    public int maxKeysPerDelete() {
+        return Integer.MAX_VALUE;
+    }
+
+    // Ends after 'remaining' bytes, like a ranged GET on S3
+    private static final class RangeInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        RangeInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+
+    private Path resolve(String key) {
+        if (!KEY_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException("Not a storage key: " + key);
+        }
+        return root.resolve(key);
+    }
+}
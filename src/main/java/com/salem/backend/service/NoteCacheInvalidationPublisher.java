@@ -0,0 +1,12 @@
+package com.salem.backend.service;
+
+/**
+ * Cross-instance hook of the NoteListCache: called after a user's notes changed on this instance.
+ * Without an implementation every instance only sees its own writes (others catch up after app.notes.cache.ttl).
+ * A multi-instance deployment provides a bean that publishes the user id on its message bus
+ * (Redis pub/sub, Postgres NOTIFY, ...) and calls NoteListCache.evict(userId) for every message it receives.
+ */
+public interface NoteCacheInvalidationPublisher {
+
+    void publish(Long userId);
+}
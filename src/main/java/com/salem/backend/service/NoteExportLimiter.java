@@ -0,0 +1,72 @@
+package com.salem.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Caps the NDJSON exports (GET /api/notes/export) running at once. Each one holds a read-only transaction, and with it
+ * a pooled connection, until the client has read the last note; without a cap a few slow clients could take the
+ * whole pool. Past app.notes.export.max-concurrent an export is refused right away (503), it does not queue.
+ * Active and rejected exports are metered (see docs/metrics.md).
+ */
+@Service
+@RequiredArgsConstructor
+public class NoteExportLimiter {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.notes.export.max-concurrent}")
+    private int maxConcurrent;
+
+    private Semaphore exports;
+    private Counter rejected;
+
+    @PostConstruct
+    void init() {
+        exports = new Semaphore(maxConcurrent);
+
+        Gauge.builder("notes.export.active", exports, s -> maxConcurrent - s.availablePermits())
+                .description("Note exports streaming right now")
+                .register(meterRegistry);
+        rejected = Counter.builder("notes.export.rejected")
+                .description("Note exports refused because max-concurrent exports were running")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Reserves an export slot, or returns null when all are taken. Close the slot when the export ends, also on failure.
+     */
+    public Slot tryAcquire() {
+        if (!exports.tryAcquire()) {
+            rejected.increment();
+            return null;
+        }
+        return new Slot();
+    }
+
+    /**
+     * A reserved export; closing it more than once releases it once.
+     */
+    public final class Slot implements AutoCloseable {
+
+        private boolean open = true;
+
+        private Slot() {
+        }
+
+        @Override
+        public synchronized void close() {
+            if (open) {
+                open = false;
+                exports.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.salem.backend.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.salem.backend.entity.Note;
+import com.salem.backend.repository.NoteRepository;
+import com.salem.backend.repository.UserRepository;
+import com.salem.backend.repository.projection.NoteSummaryItem;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.UnaryOperator;
+
+/**
+ * Per-user cache of the note listing (GET /api/notes).
+ * An entry holds the head of one user's list, newest first, capped at app.notes.cache.max-notes-per-user rows.
+ * Pages inside that window are cut from memory; pages past it go to the database as before.
+ * Writes patch the entry once their transaction has committed, then tell the other instances to drop theirs.
+ * Every entry carries the user's notes_version it reflects; callers pass the version they have already seen,
+ * so an entry that missed a write (another instance, a reordered patch) is never served as current.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NoteListCache {
+
+    // Rough per-row overhead on top of the text: record, two timestamps, boxed id, list slot
+    private static final int ROW_OVERHEAD_BYTES = 128;
+
+    private final NoteRepository noteRepository;
+    private final UserRepository userRepository;
+    private final List<NoteCacheInvalidationPublisher> invalidationPublishers;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.notes.cache.max-notes-per-user}")
+    private int maxNotesPerUser;
+
+    @Value("${app.notes.cache.max-size}")
+    private DataSize maxSize;
+
+    // Upper bound for how long another instance's write can go unnoticed here
+    @Value("${app.notes.cache.ttl}")
+    private Duration ttl;
+
+    // User id -> newest notes. Async for the same reason as the user cache: loads never run inside the map's lock.
+    private AsyncCache<Long, UserNotes> cache;
+
+    private Counter databaseFallbacks;
+
+    @PostConstruct
+    void initCache() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes()) // Weighed by the estimated size of the cached text (titles and excerpts)
+                .weigher((Long userId, UserNotes notes) -> notes.weight())
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userNotes");
+
+        databaseFallbacks = Counter.builder("notes.list.cache.fallbacks")
+                .description("Listing pages beyond the cached window of a user, read from the database")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns up to 'limit' rows strictly after the (updatedAt, id) position, or from the start when it is null.
+     * The rows reflect at least 'minVersion' of the user's notes.
+     */
+    public List<NoteSummaryItem> findPage(Long userId, long minVersion, LocalDateTime afterUpdatedAt, Long afterId, int limit) {
+        UserNotes notes = get(userId, minVersion);
+        List<NoteSummaryItem> page = notes.version() >= minVersion ? notes.page(afterUpdatedAt, afterId, limit) : null;
+        if (page != null) {
+            return page;
+        }
+
+        databaseFallbacks.increment();
+        if (afterUpdatedAt == null) {
+            return noteRepository.findFirstPage(userId, Limit.of(limit));
+        }
+        return noteRepository.findPageAfter(userId, afterUpdatedAt, afterId, Limit.of(limit));
+    }
+
+    /**
+     * A note was created or changed by the write that bumped the notes version to 'version':
+     * moves it to its new place in the cached list.
+     * Inside a transaction this waits for the commit; a rolled back write never touches the cache.
+     */
+    public void noteSaved(Long userId, Note note, long version) {
+        // The row is read from the note when the patch is applied: a just persisted note only gets its timestamps on flush
+        afterCommit(userId, version, notes -> notes.with(new NoteSummaryItem(note.getId(), note.getTitle(), excerpt(note.getContent()),
+                note.getImageKey(), note.getImageDerivatives(), note.getCreatedAt(), note.getUpdatedAt()), maxNotesPerUser));
+    }
+
+    /**
+     * A note was deleted: removes it from the cached list (after the commit, like noteSaved).
+     */
+    public void noteDeleted(Long userId, Long noteId, long version) {
+        afterCommit(userId, version, notes -> notes.without(noteId));
+    }
+
+    /**
+     * Many notes of a user changed at once (batch endpoints): drops the entry after the commit instead of
+     * patching it row by row, and tells the other instances like a single change does.
+     */
+    public void notesChanged(Long userId) {
+        afterCommit(userId, 0, null);
+    }
+
+    /**
+     * Drops the cached list of a user on this instance only.
+     * Entry point for invalidation messages from other instances.
+     */
+    public void evict(Long userId) {
+        cache.synchronous().invalidate(userId);
+    }
+
+    // Same cut as the listing queries (SQL substring counts characters, i.e. code points)
+    private static String excerpt(String content) {
+        if (content == null || content.codePointCount(0, content.length()) <= NoteRepository.EXCERPT_LENGTH) {
+            return content;
+        }
+        return content.substring(0, content.offsetByCodePoints(0, NoteRepository.EXCERPT_LENGTH));
+    }
+
+    private UserNotes get(Long userId, long minVersion) {
+
+        // 1. Cached (or being loaded by another request): wait for that result, unless it turns out to be older
+        //    than what the caller has already seen (a write on another instance whose invalidation is still on its way)
+        CompletableFuture<UserNotes> cached = cache.getIfPresent(userId);
+        if (cached != null) {
+            UserNotes notes = await(cached);
+            if (notes.version() >= minVersion) {
+                return notes;
+            }
+            cache.asMap().remove(userId, cached);
+        }
+
+        // 2. Register our own pending load; if another request beat us to it, share theirs
+        CompletableFuture<UserNotes> load = new CompletableFuture<>();
+        CompletableFuture<UserNotes> inFlight = cache.asMap().putIfAbsent(userId, load);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+
+        // 3. Load the window on this thread; one extra row tells whether it holds all of the user's notes.
+        //    The version is read first, so the rows are at least as new as the version the entry claims.
+        try {
+            long version = userRepository.findNotesVersion(userId);
+            List<NoteSummaryItem> rows = noteRepository.findFirstPage(userId, Limit.of(maxNotesPerUser + 1));
+            UserNotes notes = rows.size() > maxNotesPerUser
+                    ? UserNotes.of(rows.subList(0, maxNotesPerUser), false, version)
+                    : UserNotes.of(rows, true, version);
+            load.complete(notes);
+            return notes;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private void afterCommit(Long userId, long version, UnaryOperator<UserNotes> change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(userId, version, change);
+                }
+            });
+        } else {
+            apply(userId, version, change);
+        }
+    }
+
+    private void apply(Long userId, long version, UnaryOperator<UserNotes> change) {
+        CompletableFuture<UserNotes> current = cache.asMap().get(userId);
+
+        // No patch (bulk change), a load still running that may have read the old state, a write in between
+        // that this instance never saw, or a failed replace because someone else changed the entry meanwhile:
+        // drop it, the next read loads a fresh window
+        if (current != null && !patch(userId, current, version, change)) {
+            evict(userId);
+        }
+
+        for (NoteCacheInvalidationPublisher publisher : invalidationPublishers) {
+            try {
+                publisher.publish(userId);
+            } catch (RuntimeException e) {
+                // The write itself succeeded; other instances catch up after the ttl at the latest
+                log.warn("Failed to publish note cache invalidation for user {}", userId, e);
+            }
+        }
+    }
+
+    // True when the entry holds the write afterwards: patched in place, or loaded after the write had committed
+    private boolean patch(Long userId, CompletableFuture<UserNotes> current, long version, UnaryOperator<UserNotes> change) {
+        if (change == null || !current.isDone() || current.isCompletedExceptionally()) {
+            return false;
+        }
+        UserNotes notes = current.join();
+        if (notes.version() >= version) {
+            return true;
+        }
+        // Only the write right after the cached version may patch it
+        return notes.version() == version - 1
+                && cache.asMap().replace(userId, current, CompletableFuture.completedFuture(change.apply(notes).at(version)));
+    }
+
+    private UserNotes await(CompletableFuture<UserNotes> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The newest notes of one user in listing order (updatedAt desc, id desc), as of notes_version 'version'.
+     * 'complete' means there are no further notes beyond these in the database.
+     */
+    record UserNotes(List<NoteSummaryItem> items, boolean complete, int weight, long version) {
+
+        static UserNotes of(List<NoteSummaryItem> items, boolean complete, long version) {
+            long weight = 0;
+            for (NoteSummaryItem item : items) {
+                weight += weigh(item);
+            }
+            return new UserNotes(List.copyOf(items), complete, (int) Math.min(weight, Integer.MAX_VALUE), version);
+        }
+
+        UserNotes at(long newVersion) {
+            return new UserNotes(items, complete, weight, newVersion);
+        }
+
+        // null when the requested rows run past the cached window
+        List<NoteSummaryItem> page(LocalDateTime afterUpdatedAt, Long afterId, int limit) {
+            int start = afterUpdatedAt == null ? 0 : firstAfter(afterUpdatedAt, afterId);
+            if (start + limit <= items.size()) {
+                return items.subList(start, start + limit);
+            }
+            return complete ? items.subList(start, items.size()) : null;
+        }
+
+        UserNotes with(NoteSummaryItem item, int maxItems) {
+            List<NoteSummaryItem> updated = new ArrayList<>(without(item.id()).items);
+            int position = firstAfter(updated, item.updatedAt(), item.id());
+
+            // Older than everything cached while more rows exist in the database: not part of the window
+            if (position == updated.size() && !complete) {
+                return of(updated, false, version);
+            }
+            updated.add(position, item);
+            if (updated.size() > maxItems) {
+                updated.remove(updated.size() - 1);
+                return of(updated, false, version);
+            }
+            return of(updated, complete, version);
+        }
+
+        UserNotes without(Long noteId) {
+            List<NoteSummaryItem> updated = new ArrayList<>(items.size());
+            for (NoteSummaryItem item : items) {
+                if (!item.id().equals(noteId)) {
+                    updated.add(item);
+                }
+            }
+            return of(updated, complete, version);
+        }
+
+        private int firstAfter(LocalDateTime updatedAt, Long id) {
+            return firstAfter(items, updatedAt, id);
+        }
+
+        // Binary search for the first row that sorts strictly after (updatedAt, id)
+        private static int firstAfter(List<NoteSummaryItem> items, LocalDateTime updatedAt, Long id) {
+            int low = 0;
+            int high = items.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                NoteSummaryItem item = items.get(mid);
+                int byTime = item.updatedAt().compareTo(updatedAt);
+                boolean after = byTime < 0 || (byTime == 0 && item.id() < id);
+                if (after) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+
+        private static long weigh(NoteSummaryItem item) {
+            return ROW_OVERHEAD_BYTES + 2L * (length(item.title()) + length(item.excerpt()) + length(item.imageKey())
+                    + length(item.imageDerivatives()));
+        }
+
+        private static int length(String value) {
+            return value == null ? 0 : value.length();
+        }
+    }
+}
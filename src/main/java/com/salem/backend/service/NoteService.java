@@ -1,166 +1,674 @@
 package com.salem.backend.service;
 
+import com.salem.backend.dto.CursorPageResponse;
+import com.salem.backend.dto.NoteBatchDeleteResponse;
 import com.salem.backend.dto.NoteRequest;
 import com.salem.backend.dto.NoteResponse;
+import com.salem.backend.dto.NoteSearchResponse;
+import com.salem.backend.dto.NoteSummaryResponse;
 import com.salem.backend.entity.Note;
 import com.salem.backend.entity.User;
 import com.salem.backend.exception.BusinessException;
 import com.salem.backend.exception.enErrorCode;
 import com.salem.backend.mapper.NoteMapper;
+import com.salem.backend.repository.NoteExportRepository;
 import com.salem.backend.repository.NoteRepository;
+import com.salem.backend.repository.NoteSearchRepository;
+import com.salem.backend.repository.NoteWriteRepository;
+import com.salem.backend.repository.UserRepository;
+import com.salem.backend.repository.projection.NoteBeforeWrite;
+import com.salem.backend.repository.projection.NoteImageRef;
+import com.salem.backend.repository.projection.NoteListItem;
+import com.salem.backend.repository.projection.NoteSearchHit;
+import com.salem.backend.repository.projection.NoteSummaryItem;
+import com.salem.backend.service.FileDeduplicationService.StoredImage;
+import com.salem.backend.util.CursorCodec;
 import com.salem.backend.util.SecurityUtils;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.multipart.MultipartFile;
-
+import org.springframework.web.util.HtmlUtils;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Note operations of the current user.
+ * Every public operation is timed as notes.operation{method, exception} (see docs/metrics.md).
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class NoteService {
 
+    private static final int MAX_SEARCH_QUERY_LENGTH = 200;
+    private static final int MAX_BATCH_SIZE = 500;
+
     private final NoteRepository noteRepository;
+    private final NoteWriteRepository noteWriteRepository;
+    private final NoteSearchRepository noteSearchRepository;
     private final FileStorageService fileStorageService;
     private final NoteMapper noteMapper;
     private final SecurityUtils securityUtils;
+    private final TransactionTemplate transactionTemplate;
+    private final StorageDeletionOutbox storageDeletionOutbox;
+    private final NoteListCache noteListCache;
+    private final UserRepository userRepository;
+    private final NoteExportRepository noteExportRepository;
+    private final ImageDerivativeService imageDerivativeService;
+    private final FileDeduplicationService fileDeduplicationService;
+
+    @Value("${app.notes.page.default-size}")
+    private int defaultPageSize;
+
+    @Value("${app.notes.page.max-size}")
+    private int maxPageSize;
+
+    @Value("${app.notes.image-url-mode}")
+    private ImageUrlMode imageUrlMode;
+
+    // Every signed URL handed out stays valid at least this long (see FileStorageService)
+    @Value("${app.s3.presign.cache.min-remaining}")
+    private Duration presignMinRemaining;
 
     /**
      * Creates a new note for the authenticated user.
      * Handles image upload if a file is provided.
+     * Two phases: the upload runs first without a transaction, then the insert runs in a short one.
      */
-    @Transactional
+    @Timed("notes.operation")
     public NoteResponse createNote(NoteRequest request, MultipartFile file) {
         
         // 1. Get the currently authenticated user
         User user = securityUtils.getCurrentUser();
 
-        // 2. Upload Image if exists
-        String imageKey = null;
-        if (file != null && !file.isEmpty()) {
-            imageKey = fileStorageService.uploadFile(file, user.getKeycloakId());
-        }
+        // 2. Upload Image if exists (outside any transaction: no DB connection is held during S3 I/O).
+        //    Content the user already stored is not uploaded again, the note shares that object.
+        StoredImage image = fileDeduplicationService.store(file, user);
 
         // 3. Build the Note entity
         Note note = Note.builder()
                 .title(request.title())
                 .content(request.content())
-                .imageKey(imageKey)
+                .imageKey(image != null ? image.key() : null)
+                .imageDerivatives(image != null ? image.derivatives() : null)
                 .user(user)
                 .build();
 
-        // 4. Save to database
-        Note savedNote = noteRepository.save(note);
+        // 4. Save to database (short transaction, the image reference is given back if it fails)
+        Note savedNote = saveOrCompensate(image, () -> {
+            Note saved = noteRepository.save(note);
+            noteListCache.noteSaved(user.getId(), saved, noteWriteRepository.bumpNotesVersion(user.getId())); // Applied once this transaction commits
+            return saved;
+        });
         log.info("Note created successfully with ID: {}", savedNote.getId());
 
-        // 5. Map to Response DTO
+        // 5. Thumbnails etc. are generated in the background, the response links the original meanwhile
+        submitDerivatives(user.getId(), image);
+
+        // 6. Map to Response DTO
         return mapToResponse(savedNote);
     }
 
     /**
-     * Retrieves all notes belonging to the current user.
+     * Creates many text-only notes for the authenticated user in one short transaction.
+     * Ids come from a pooled sequence, so the inserts reach the database as JDBC batches (hibernate.jdbc.batch_size)
+     * instead of one round trip per note.
      */
-    // @Transactional(readOnly = true) 
-    public List<NoteResponse> getUserNotes() {
+    @Timed("notes.operation")
+    public List<NoteResponse> createNotes(List<NoteRequest> requests) {
+        requireBatchSize(requests.size());
 
         User user = securityUtils.getCurrentUser();
 
+        List<Note> notes = new ArrayList<>(requests.size());
+        for (NoteRequest request : requests) {
+            notes.add(Note.builder()
+                    .title(request.title())
+                    .content(request.content())
+                    .user(user)
+                    .build());
+        }
 
-        List<Note> notes = noteRepository.findByUserId(user.getId());
+        List<Note> savedNotes = transactionTemplate.execute(status -> {
+            noteWriteRepository.bumpNotesVersion(user.getId());
+            return noteRepository.saveAll(notes);
+        });
+        noteListCache.notesChanged(user.getId());
+        log.info("{} notes created in one batch for user with ID: {}", savedNotes.size(), user.getId());
+
+        List<NoteResponse> responses = new ArrayList<>(savedNotes.size());
+        for (Note note : savedNotes) {
+            responses.add(mapToResponse(note));
+        }
+        return responses;
+    }
+
+    /**
+     * Current change version of the user's notes: one primary-key lookup, bumped by every note write.
+     * Read it before the notes themselves, so the ETag built from it never claims more than the body holds.
+     */
+    public long getNotesVersion() {
+        return userRepository.findNotesVersion(securityUtils.getCurrentUser().getId());
+    }
+
+    /**
+     * ETag of one page of GET /api/notes at the given notes version.
+     */
+    public String notesETag(long version, String cursor, Integer size) {
+        return eTag(version, "summary", resolvePageSize(size), cursor);
+    }
 
-        if (notes.isEmpty()) {
-            // throw new BusinessException(enErrorCode.NOTE_NOT_FOUND); // Optional: Decide if you want to throw an exception or return an empty list when it is new user or no notes are found
+    /**
+     * ETag of GET /api/notes/{id} at the given notes version.
+     */
+    public String noteETag(long version, Long noteId) {
+        return eTag(version, "note", noteId);
+    }
+
+    /**
+     * Retrieves one page of the current user's notes, most recently updated first, as summaries: the first
+     * NoteRepository.EXCERPT_LENGTH characters of each content instead of the full body (that is getNote).
+     * Uses keyset pagination on (updated_at, id): pass the previous page's nextCursor to continue.
+     * Pages within the user's newest notes are served from the NoteListCache.
+     * 'version' is the notes version the caller read before (getNotesVersion): the page reflects at least that one.
+     */
+    // No outer transaction: the version and page queries run in the repositories' own read-only transactions
+    // (read replica when configured), and a new user's first request can still provision them on the primary
+    @Timed("notes.operation")
+    public CursorPageResponse<NoteSummaryResponse> getUserNotes(String cursor, Integer size, long version) {
+
+        User user = securityUtils.getCurrentUser();
+
+        int pageSize = resolvePageSize(size);
+
+        // Fetch one extra row to know whether another page exists without a COUNT query
+        LocalDateTime afterUpdatedAt = null;
+        Long afterId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] position = CursorCodec.decode(cursor, 2);
+            afterUpdatedAt = parseCursorTime(position[0]);
+            afterId = parseCursorId(position[1]);
+        }
+        List<NoteSummaryItem> rows = noteListCache.findPage(user.getId(), version, afterUpdatedAt, afterId, pageSize + 1);
+
+        if (rows.isEmpty()) {
             log.info("No notes found for user with ID: {}", user.getId());
+            return new CursorPageResponse<>(List.of(), null);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<NoteSummaryItem> page = hasMore ? rows.subList(0, pageSize) : rows;
 
-            return new ArrayList<>(); // Return empty list if no notes are found
+        List<NoteSummaryResponse> responseList = new ArrayList<>(page.size());
+        for (NoteSummaryItem row : page) {
+            responseList.add(mapToSummaryResponse(row));
         }
 
+        String nextCursor = null;
+        if (hasMore) {
+            NoteSummaryItem last = page.get(page.size() - 1);
+            nextCursor = CursorCodec.encode(last.updatedAt(), last.id());
+        }
 
-        
-        List<NoteResponse> responseList = new ArrayList<>();
+        log.info("Fetching notes for user with ID: {}", user.getId());
+
+        return new CursorPageResponse<>(responseList, nextCursor);
+    }
+
+    /**
+     * Hands all notes of the current user to 'sink', newest first, while they are read from a database cursor
+     * (app.notes.export.fetch-size rows per round trip): memory use does not grow with the number of notes.
+     * The read-only transaction, and with it a pooled connection, stays open until the last note has been handed over.
+     */
+    @Transactional(readOnly = true)
+    @Timed("notes.operation")
+    public void exportNotes(Consumer<NoteResponse> sink) {
+        User user = securityUtils.getCurrentUser();
 
-    
-        for (Note note : notes) {
-            
-            NoteResponse response = mapToResponse(note);
-            responseList.add(response);
+        int exported = noteExportRepository.forEachNote(user.getId(), row -> sink.accept(mapToResponse(row)));
+
+        log.info("Exported {} notes for user with ID: {}", exported, user.getId());
+    }
+
+    /**
+     * Retrieves a single note of the current user with its full content (one owner-scoped query).
+     */
+    @Timed("notes.operation")
+    public NoteResponse getNote(Long noteId) {
+        User currentUser = securityUtils.getCurrentUser();
+
+        NoteListItem note = noteRepository.findOwnedById(noteId, currentUser.getId())
+                .orElseThrow(() -> notFoundOrNotOwned(noteId));
+
+        return mapToResponse(note);
+    }
+
+    /**
+     * Full-text search over the current user's notes, best match first.
+     * Same cursor contract as getUserNotes; the cursor holds the (rank, id) of the previous page's last hit.
+     */
+    @Timed("notes.operation")
+    public CursorPageResponse<NoteSearchResponse> searchNotes(String query, String cursor, Integer size) {
+
+        String text = query == null ? "" : query.strip();
+        if (text.isEmpty() || text.length() > MAX_SEARCH_QUERY_LENGTH) {
+            throw new BusinessException(enErrorCode.INVALID_SEARCH_QUERY);
+        }
+
+        User user = securityUtils.getCurrentUser();
+        int pageSize = resolvePageSize(size);
+
+        Float afterRank = null;
+        Long afterId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] position = CursorCodec.decode(cursor, 2);
+            afterRank = parseCursorRank(position[0]);
+            afterId = parseCursorId(position[1]);
         }
 
-                log.info("Fetching notes for user with ID: {}", user.getId());
+        // One extra row tells whether another page exists
+        List<NoteSearchHit> rows = noteSearchRepository.search(user.getId(), text, afterRank, afterId, pageSize + 1);
 
+        boolean hasMore = rows.size() > pageSize;
+        List<NoteSearchHit> page = hasMore ? rows.subList(0, pageSize) : rows;
 
-        return responseList;
+        List<NoteSearchResponse> results = new ArrayList<>(page.size());
+        for (NoteSearchHit hit : page) {
+            results.add(toSearchResponse(hit));
+        }
+
+        String nextCursor = null;
+        if (hasMore) {
+            NoteSearchHit last = page.get(page.size() - 1);
+            nextCursor = CursorCodec.encode(last.rank(), last.id());
+        }
+
+        log.info("Search for user with ID: {} returned {} notes", user.getId(), results.size());
+        return new CursorPageResponse<>(results, nextCursor);
     }
 
     /**
      * Updates an existing note.
-     * Validates ownership before updating.
+     * The ownership check and the write are a single owner-scoped UPDATE.
+     * With a new image the ownership is checked before the upload too, so nobody can upload into a foreign note.
+     * Like createNote, a new image is uploaded before (and outside) the short write transaction.
      */
-    @Transactional
+    @Timed("notes.operation")
     public NoteResponse updateNote(Long noteId, NoteRequest request, MultipartFile file) {
         User currentUser = securityUtils.getCurrentUser();
 
-        // 1. Find the note or throw BusinessException 
-        Note note = noteRepository.findById(noteId)
+        // 1. Upload the new Image (Only if a new file is uploaded, and only into an own note)
+        StoredImage newImage = null;
+        if (file != null && !file.isEmpty()) {
+            requireOwnedNote(noteId, currentUser);
+            newImage = fileDeduplicationService.store(file, currentUser);
+        }
+
+        // 2. Update the row where id and owner match (and release the replaced image in the same transaction)
+        StoredImage image = newImage;
+        LocalDateTime now = now();
+        NoteWrite write = saveOrCompensate(newImage, () -> {
+            NoteBeforeWrite old = noteWriteRepository
+                    .updateContent(noteId, currentUser.getId(), request.title(), request.content(),
+                            image != null ? image.key() : null, image != null ? image.derivatives() : null, now)
+                    .orElseThrow(() -> notFoundOrNotOwned(noteId));
+            if (image != null) {
+                releaseImage(old);
+            }
+            return new NoteWrite(old, noteWriteRepository.bumpNotesVersion(currentUser.getId()));
+        });
+        NoteBeforeWrite before = write.before();
+        log.info("Note with ID: {} updated successfully", noteId);
+
+        if (newImage != null) {
+            // The old image is no longer served, don't keep its signed URLs around
+            imageKeys(before).forEach(fileStorageService::evictFileUrl);
+            submitDerivatives(currentUser.getId(), newImage);
+        }
+
+        Note updatedNote = Note.builder()
+                .id(noteId)
+                .title(request.title())
+                .content(request.content())
+                .imageKey(newImage != null ? newImage.key() : before.imageKey())
+                .imageDerivatives(newImage != null ? newImage.derivatives() : before.imageDerivatives())
+                .createdAt(before.createdAt())
+                .updatedAt(now)
+                .user(currentUser)
+                .build();
+        noteListCache.noteSaved(currentUser.getId(), updatedNote, write.version());
+
+        return mapToResponse(updatedNote);
+    }
+
+    /**
+     * Replaces the image of a note with a raw request body streamed straight to S3.
+     * Deliberately not @Transactional: an upload can take minutes and must not pin a DB connection meanwhile.
+     * Same two-phase flow as createNote/updateNote.
+     */
+    @Timed("notes.operation")
+    public NoteResponse replaceNoteImage(Long noteId, InputStream content, String contentType, long contentLength) {
+        User currentUser = securityUtils.getCurrentUser();
+
+        // 1. Check ownership before accepting a single byte
+        requireOwnedNote(noteId, currentUser);
+
+        // 2. Stream the body to S3 (a copy of content the user already stored is dropped again afterwards)
+        StoredImage newImage = fileDeduplicationService.storeStream(content, contentType, contentLength, currentUser);
+
+        // 3. Point the note at the new object (owner-scoped, the note may have been deleted meanwhile)
+        LocalDateTime now = now();
+        NoteWrite write = saveOrCompensate(newImage, () -> {
+            NoteBeforeWrite old = noteWriteRepository
+                    .updateImage(noteId, currentUser.getId(), newImage.key(), newImage.derivatives(), now)
+                    .orElseThrow(() -> notFoundOrNotOwned(noteId));
+            releaseImage(old);
+            return new NoteWrite(old, noteWriteRepository.bumpNotesVersion(currentUser.getId()));
+        });
+        NoteBeforeWrite before = write.before();
+        imageKeys(before).forEach(fileStorageService::evictFileUrl);
+        submitDerivatives(currentUser.getId(), newImage);
+        log.info("Image of note with ID: {} replaced by streaming upload", noteId);
+
+        Note updatedNote = Note.builder()
+                .id(noteId)
+                .title(before.title())
+                .content(before.content())
+                .imageKey(newImage.key())
+                .imageDerivatives(newImage.derivatives())
+                .createdAt(before.createdAt())
+                .updatedAt(now)
+                .user(currentUser)
+                .build();
+        noteListCache.noteSaved(currentUser.getId(), updatedNote, write.version());
+
+        return mapToResponse(updatedNote);
+    }
+
+    /**
+     * Resolves a signed URL for a note's image (or one of its ready variants), after checking that the note
+     * belongs to the current user.
+     * Backs the LAZY image mode: the URL is only signed when the client actually asks for the image.
+     */
+    @Timed("notes.operation")
+    public PresignedUrl getNoteImageUrl(Long noteId, String variant) {
+        return fileStorageService.getSignedUrl(resolveNoteImageKey(noteId, variant));
+    }
+
+    /**
+     * Storage key of a note's image (or of one of its ready variants), after checking that the note belongs to
+     * the current user. Backs GET /api/notes/{id}/content, which streams the file itself.
+     */
+    @Timed("notes.operation")
+    public String getNoteImageKey(Long noteId, String variant) {
+        return resolveNoteImageKey(noteId, variant);
+    }
+
+    private String resolveNoteImageKey(Long noteId, String variant) {
+        User currentUser = securityUtils.getCurrentUser();
+
+        NoteImageRef ref = requireOwnedNote(noteId, currentUser);
+
+        if (ref.getImageKey() == null) {
+            throw new BusinessException(enErrorCode.NOTE_IMAGE_NOT_FOUND);
+        }
+        if (variant == null) {
+            return ref.getImageKey();
+        }
+        if (!ImageDerivativeService.names(ref.getImageDerivatives()).contains(variant)) {
+            throw new BusinessException(enErrorCode.NOTE_IMAGE_NOT_FOUND);
+        }
+        return FileStorageService.derivedKey(ref.getImageKey(), variant, ImageDerivativeService.EXTENSION);
+    }
+
+    // Existence and ownership check without loading the note (one small projection query)
+    private NoteImageRef requireOwnedNote(Long noteId, User currentUser) {
+        NoteImageRef ref = noteRepository.findImageRefById(noteId)
                 .orElseThrow(() -> new BusinessException(enErrorCode.NOTE_NOT_FOUND));
 
-        // 2. Security Check: Ownership validation
-        if (!note.getUser().getId().equals(currentUser.getId())) {
+        // Security Check: Ownership validation
+        if (!ref.getOwnerId().equals(currentUser.getId())) {
             throw new BusinessException(enErrorCode.NOTE_OWNERSHIP_ERROR);
         }
+        return ref;
+    }
 
-        // 3. Update fields
-        note.setTitle(request.title());
-        note.setContent(request.content());
+    // An owner-scoped write matched no row: only now find out whether the note is missing or someone else's
+    private BusinessException notFoundOrNotOwned(Long noteId) {
+        return noteRepository.existsById(noteId)
+                ? new BusinessException(enErrorCode.NOTE_OWNERSHIP_ERROR)
+                : new BusinessException(enErrorCode.NOTE_NOT_FOUND);
+    }
 
-        // 4. Update Image (Only if a new file is uploaded)
-        if (file != null && !file.isEmpty()) {
-            String newImageKey = fileStorageService.uploadFile(file, currentUser.getKeycloakId());
-            note.setImageKey(newImageKey);
-            // Future improvement: Delete old image from S3 to save space
+    // "<hash>" over everything a response body depends on. In LAZY mode equal versions give byte-equal bodies: strong tag.
+    // PRESIGNED bodies embed signed URLs that get re-signed now and then, so their tag is weak and also rolls over every
+    // app.s3.presign.cache.min-remaining: a 304 never keeps a client on URLs that expire before the tag changes.
+    private String eTag(long version, Object... parts) {
+        StringBuilder key = new StringBuilder().append(securityUtils.getCurrentUser().getId()).append(':').append(version);
+        for (Object part : parts) {
+            key.append(':').append(part);
+        }
+        if (imageUrlMode != ImageUrlMode.PRESIGNED) {
+            return "\"" + DigestUtils.md5DigestAsHex(key.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
         }
+        key.append(':').append(System.currentTimeMillis() / presignMinRemaining.toMillis());
+        return "W/\"" + DigestUtils.md5DigestAsHex(key.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
 
-        // 5. Save changes
-        Note updatedNote = noteRepository.save(note);
-        log.info("Note with ID: {} updated successfully", noteId);
-        
-        return mapToResponse(updatedNote);
+    // Same precision as the timestamp columns, so cursors built from it match what the database stored
+    private LocalDateTime now() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    /**
+     * Runs a DB write in its own short transaction.
+     * If the write fails, the image reference taken just before it is released again (compensation): an object
+     * uploaded for this request is deleted, so a failed request never leaves an unreferenced object in the bucket.
+     */
+    private <T> T saveOrCompensate(StoredImage image, Supplier<T> write) {
+        try {
+            return transactionTemplate.execute(status -> write.get());
+        } catch (RuntimeException e) {
+            fileDeduplicationService.releaseUnsaved(image);
+            throw e;
+        }
+    }
+
+    // Drops the note's reference on its old image; the object and its variants only go when no other note shows them
+    private void releaseImage(NoteBeforeWrite old) {
+        if (old.imageKey() != null && fileDeduplicationService.release(old.imageKey())) {
+            storageDeletionOutbox.enqueueAll(imageKeys(old));
+        }
+    }
+
+    // A deduplicated image may come with its variants already; otherwise they are generated in the background
+    private void submitDerivatives(Long userId, StoredImage image) {
+        if (image != null && image.derivatives() == null) {
+            imageDerivativeService.submit(userId, image.key());
+        }
     }
 
     // Helper method to convert Entity to DTO and generate S3 URL
     private NoteResponse mapToResponse(Note note) {
-        String imageUrl = null;
-        if (note.getImageKey() != null) {
-            imageUrl = fileStorageService.getFileUrl(note.getImageKey());
+        return noteMapper.toResponse(note, resolveImageUrl(note.getId(), note.getImageKey()),
+                resolveImageVariants(note.getId(), note.getImageKey(), note.getImageDerivatives()));
+    }
+
+    private NoteResponse mapToResponse(NoteListItem item) {
+        return noteMapper.toResponse(item, resolveImageUrl(item.id(), item.imageKey()),
+                resolveImageVariants(item.id(), item.imageKey(), item.imageDerivatives()));
+    }
+
+    private NoteSummaryResponse mapToSummaryResponse(NoteSummaryItem item) {
+        return noteMapper.toSummaryResponse(item, resolveImageUrl(item.id(), item.imageKey()),
+                resolveImageVariants(item.id(), item.imageKey(), item.imageDerivatives()));
+    }
+
+    private NoteSearchResponse toSearchResponse(NoteSearchHit hit) {
+        return new NoteSearchResponse(hit.id(), hit.title(), markMatches(hit.titleHighlight()), markMatches(hit.snippet()),
+                resolveImageUrl(hit.id(), hit.imageKey()), hit.rank(), hit.createdAt(), hit.updatedAt());
+    }
+
+    // Note text is user input: escape it first, then turn the match markers into <mark> tags
+    private String markMatches(String highlighted) {
+        if (highlighted == null) {
+            return null;
         }
-        return noteMapper.toResponse(note, imageUrl);
+        return HtmlUtils.htmlEscape(highlighted)
+                .replace(NoteSearchRepository.MATCH_START, "<mark>")
+                .replace(NoteSearchRepository.MATCH_END, "</mark>");
     }
 
+    // PRESIGNED -> signed S3 URL now | LAZY -> stable backend link, signed when requested
+    private String resolveImageUrl(Long noteId, String imageKey) {
+        if (imageKey == null) {
+            return null;
+        }
+        if (imageUrlMode == ImageUrlMode.LAZY) {
+            return "/api/notes/" + noteId + "/image";
+        }
+        return fileStorageService.getFileUrl(imageKey);
+    }
+
+    // Same URL kind as the image itself, one entry per ready variant
+    private Map<String, String> resolveImageVariants(Long noteId, String imageKey, String imageDerivatives) {
+        List<String> names = ImageDerivativeService.names(imageDerivatives);
+        if (imageKey == null || names.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, String> urls = new LinkedHashMap<>();
+        for (String name : names) {
+            urls.put(name, imageUrlMode == ImageUrlMode.LAZY
+                    ? "/api/notes/" + noteId + "/image?variant=" + name
+                    : fileStorageService.getFileUrl(FileStorageService.derivedKey(imageKey, name, ImageDerivativeService.EXTENSION)));
+        }
+        return urls;
+    }
+
+    // Falls back to the default page size and never lets a client ask for more than the maximum
+    private int resolvePageSize(Integer size) {
+        if (size == null || size <= 0) {
+            return defaultPageSize;
+        }
+        return Math.min(size, maxPageSize);
+    }
+
+    private LocalDateTime parseCursorTime(String value) {
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new BusinessException(enErrorCode.INVALID_CURSOR);
+        }
+    }
+
+    private Float parseCursorRank(String value) {
+        try {
+            return Float.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new BusinessException(enErrorCode.INVALID_CURSOR);
+        }
+    }
 
+    private Long parseCursorId(String value) {
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new BusinessException(enErrorCode.INVALID_CURSOR);
+        }
+    }
 
-    // Delete a note by its ID
+
+
+    /**
+     * Deletes many notes of the authenticated user: one owner-scoped DELETE for all ids,
+     * plus one batched insert of their no longer referenced images into the deletion outbox.
+     * Ids that are missing or belong to someone else are skipped and reported back.
+     */
     @Transactional
-    public void deleteNote(Long noteId){
+    @Timed("notes.operation")
+    public NoteBatchDeleteResponse deleteNotes(List<Long> ids) {
+        requireBatchSize(ids.size());
 
-    User currentUser = securityUtils.getCurrentUser();
+        User currentUser = securityUtils.getCurrentUser();
+        List<Long> requestedIds = ids.stream().distinct().toList();
 
-    
-        Note note = noteRepository.findById(noteId)
-                .orElseThrow(() -> new BusinessException(enErrorCode.NOTE_NOT_FOUND));
+        List<NoteBeforeWrite> deleted = noteWriteRepository.deleteAll(requestedIds, currentUser.getId());
+        if (!deleted.isEmpty()) {
+            noteWriteRepository.bumpNotesVersion(currentUser.getId());
+        }
 
-        // Security Check: Ownership validation
-        if (!note.getUser().getId().equals(currentUser.getId())) {
-            throw new BusinessException(enErrorCode.NOTE_OWNERSHIP_ERROR);
+        storageDeletionOutbox.enqueueAll(deleted.stream()
+                .filter(note -> note.imageKey() != null && fileDeduplicationService.release(note.imageKey()))
+                .flatMap(note -> imageKeys(note).stream())
+                .toList());
+        noteListCache.notesChanged(currentUser.getId());
+
+        Set<Long> deletedIds = new HashSet<>();
+        for (NoteBeforeWrite note : deleted) {
+            deletedIds.add(note.id());
         }
-        
-        if (note.getImageKey() != null) {
-            fileStorageService.deleteFile(note.getImageKey());
+        // Both lists keep the order of the request
+        List<Long> deletedInOrder = requestedIds.stream().filter(deletedIds::contains).toList();
+        List<Long> notDeletedIds = requestedIds.stream().filter(id -> !deletedIds.contains(id)).toList();
+
+        log.info("{} notes deleted in one batch for user with ID: {} ({} skipped)",
+                deletedInOrder.size(), currentUser.getId(), notDeletedIds.size());
+        return new NoteBatchDeleteResponse(deletedInOrder, notDeletedIds);
+    }
+
+    private void requireBatchSize(int size) {
+        if (size == 0 || size > MAX_BATCH_SIZE) {
+            throw new BusinessException(enErrorCode.INVALID_BATCH_SIZE);
+        }
+    }
+
+    // The image of a note as it was before a write, and its variants: what has to go when the image goes
+    private List<String> imageKeys(NoteBeforeWrite note) {
+        if (note.imageKey() == null) {
+            return List.of();
         }
+        List<String> keys = new ArrayList<>(ImageDerivativeService.keys(note.imageKey(), note.imageDerivatives()));
+        keys.add(note.imageKey());
+        return keys;
+    }
+
+    // A single-note write: the row as it was before, and the notes version it bumped to
+    private record NoteWrite(NoteBeforeWrite before, long version) {}
+
+    // Delete a note by its ID (one owner-scoped DELETE that also returns the image key)
+    @Transactional
+    @Timed("notes.operation")
+    public void deleteNote(Long noteId){
+
+        User currentUser = securityUtils.getCurrentUser();
+
+        NoteBeforeWrite deleted = noteWriteRepository.delete(noteId, currentUser.getId())
+                .orElseThrow(() -> notFoundOrNotOwned(noteId));
+
+        // The object itself is removed by the StorageDeletionWorker once this transaction has committed
+        releaseImage(deleted);
 
-        noteRepository.delete(note);
+        long version = noteWriteRepository.bumpNotesVersion(currentUser.getId());
+        noteListCache.noteDeleted(currentUser.getId(), noteId, version); // Applied once this transaction commits
         log.info("Note with ID: {} deleted successfully", noteId);
     }
 
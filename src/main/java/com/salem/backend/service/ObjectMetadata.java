@@ -0,0 +1,7 @@
+package com.salem.backend.service;
+
+import java.time.Instant;
+
+// What storage knows about a stored object without reading it: enough for Content-Length, ETag and Last-Modified.
+// eTag is quoted ("..."), as in an HTTP header; it changes whenever the content does.
+public record ObjectMetadata(long size, String eTag, Instant lastModified, String contentType) {}
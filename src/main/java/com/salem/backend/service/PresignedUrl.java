@@ -0,0 +1,6 @@
+package com.salem.backend.service;
+
+import java.time.Instant;
+
+// A pre-signed object URL together with the moment its signature stops being accepted
+public record PresignedUrl(String url, Instant expiresAt) {}
@@ -0,0 +1,273 @@
+package com.salem.backend.service;
+
+import com.salem.backend.exception.BusinessException;
+import com.salem.backend.exception.ServiceBusyException;
+import com.salem.backend.exception.enErrorCode;
+import com.salem.backend.util.BufferPool;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streams an InputStream of unknown length to S3 without buffering the whole object.
+ * The stream is cut into parts that are read into pooled buffers and uploaded in parallel
+ * as an S3 multipart upload; anything that fits in a single part goes up as one plain PUT.
+ */
+@Component
+@Slf4j
+public class S3MultipartUploader {
+
+    // S3 rejects multipart parts smaller than 5MB (except the last one)
+    private static final long MIN_PART_SIZE = DataSize.ofMegabytes(5).toBytes();
+
+    private final S3Client s3Client;
+    private final ExecutorService uploadExecutor;
+
+    @Value("${app.s3.streaming.part-size}")
+    private DataSize partSize;
+
+    // Shared by all uploads: caps streaming-upload heap at buffer-count x part-size
+    @Value("${app.s3.streaming.buffer-count}")
+    private int bufferCount;
+
+    // How long an upload waits for a free buffer before it is turned away with 503
+    @Value("${app.s3.streaming.buffer-wait}")
+    private Duration bufferWait;
+
+    // Per upload: how many parts may be read ahead / uploading at the same time
+    @Value("${app.s3.streaming.parts-in-flight}")
+    private int partsInFlight;
+
+    @Value("${app.s3.streaming.max-object-size}")
+    private DataSize maxObjectSize;
+
+    private BufferPool bufferPool;
+
+    public S3MultipartUploader(S3Client s3Client, @Qualifier("s3UploadExecutor") ExecutorService uploadExecutor) {
+        this.s3Client = s3Client;
+        this.uploadExecutor = uploadExecutor;
+    }
+
+    @PostConstruct
+    void initBufferPool() {
+        if (partSize.toBytes() < MIN_PART_SIZE || partSize.toBytes() > Integer.MAX_VALUE) {
+            throw new IllegalStateException("app.s3.streaming.part-size must be between 5MB and 2GB");
+        }
+        bufferPool = new BufferPool((int) partSize.toBytes(), bufferCount);
+    }
+
+    public long getMaxObjectSize() {
+        return maxObjectSize.toBytes();
+    }
+
+    /**
+     * Uploads the stream under the given key and returns the number of bytes written.
+     * On any failure the multipart upload is aborted, so no orphaned parts are left in the bucket.
+     * Throws ServiceBusyException (503) when no part buffer is freed within app.s3.streaming.buffer-wait.
+     */
+    public long upload(String bucket, String key, String contentType, InputStream in) {
+        try {
+            byte[] first = acquireBuffer();
+            int firstLength;
+            try {
+                firstLength = readFully(in, first);
+            } catch (IOException | RuntimeException e) {
+                bufferPool.release(first);
+                throw e;
+            }
+
+            // Small object: a single PUT is cheaper than create/upload/complete
+            if (firstLength < first.length) {
+                try {
+                    s3Client.putObject(b -> b.bucket(bucket).key(key).contentType(contentType),
+                            bodyOf(first, firstLength, contentType));
+                    return firstLength;
+                } finally {
+                    bufferPool.release(first);
+                }
+            }
+
+            return uploadMultipart(bucket, key, contentType, in, first);
+
+        } catch (IOException e) {
+            log.error("Failed to read upload stream for key {}", key, e);
+            throw new RuntimeException("Failed to upload file to S3", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Upload to S3 was interrupted", e);
+        }
+    }
+
+    private long uploadMultipart(String bucket, String key, String contentType, InputStream in, byte[] first)
+            throws IOException, InterruptedException {
+
+        String uploadId;
+        try {
+            uploadId = s3Client.createMultipartUpload(b -> b.bucket(bucket).key(key).contentType(contentType)).uploadId();
+        } catch (RuntimeException e) {
+            bufferPool.release(first);
+            throw e;
+        }
+        log.info("Started multipart upload {} for key {}", uploadId, key);
+
+        Semaphore inFlight = new Semaphore(partsInFlight);
+        AtomicBoolean failed = new AtomicBoolean(false);
+        List<Future<CompletedPart>> parts = new ArrayList<>();
+        long total = 0;
+
+        try {
+            inFlight.acquire();
+            byte[] buffer = first;
+            int length = buffer.length;
+            int partNumber = 1;
+
+            while (true) {
+                total += length;
+                if (total > maxObjectSize.toBytes()) {
+                    inFlight.release();
+                    bufferPool.release(buffer);
+                    throw new BusinessException(enErrorCode.FILE_TOO_LARGE);
+                }
+
+                parts.add(submitPart(bucket, key, uploadId, partNumber++, buffer, length, inFlight, failed));
+
+                if (length < bufferPool.getBufferSize()) {
+                    break; // Short read: that was the last part
+                }
+
+                // Blocks while this upload already has parts-in-flight parts pending
+                inFlight.acquire();
+                try {
+                    buffer = acquireBuffer();
+                } catch (ServiceBusyException e) {
+                    inFlight.release();
+                    throw e;
+                }
+                try {
+                    length = readFully(in, buffer);
+                } catch (IOException | RuntimeException e) {
+                    inFlight.release();
+                    bufferPool.release(buffer);
+                    throw e;
+                }
+                if (length == 0) {
+                    inFlight.release();
+                    bufferPool.release(buffer);
+                    break;
+                }
+            }
+
+            List<CompletedPart> completedParts = new ArrayList<>(parts.size());
+            for (Future<CompletedPart> part : parts) {
+                completedParts.add(part.get());
+            }
+
+            s3Client.completeMultipartUpload(b -> b.bucket(bucket).key(key).uploadId(uploadId)
+                    .multipartUpload(m -> m.parts(completedParts)));
+            log.info("Completed multipart upload {} for key {} ({} parts, {} bytes)", uploadId, key, completedParts.size(), total);
+            return total;
+
+        } catch (ExecutionException e) {
+            failed.set(true);
+            awaitParts(parts);
+            abort(bucket, key, uploadId);
+            throw new RuntimeException("Failed to upload file to S3", e.getCause());
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            failed.set(true);
+            awaitParts(parts);
+            abort(bucket, key, uploadId);
+            throw e;
+        }
+    }
+
+    private byte[] acquireBuffer() throws InterruptedException {
+        byte[] buffer = bufferPool.tryAcquire(bufferWait);
+        if (buffer == null) {
+            log.warn("No upload buffer free within {}, turning the upload away", bufferWait);
+            throw new ServiceBusyException(enErrorCode.UPLOADS_BUSY);
+        }
+        return buffer;
+    }
+
+    // A part still uploading when the abort runs may be left behind in the bucket, so let every submitted part
+    // finish first (queued ones fail fast on the failed flag). Not cancelled: a part cancelled before it starts
+    // would never run its finally and leak its buffer and permit.
+    private void awaitParts(List<Future<CompletedPart>> parts) {
+        for (Future<CompletedPart> part : parts) {
+            try {
+                part.get();
+            } catch (ExecutionException | CancellationException e) {
+                // Already failing; the first failure is the one reported
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private Future<CompletedPart> submitPart(String bucket, String key, String uploadId, int partNumber,
+                                             byte[] buffer, int length, Semaphore inFlight, AtomicBoolean failed) {
+        return uploadExecutor.submit(() -> {
+            try {
+                if (failed.get()) {
+                    throw new IllegalStateException("Multipart upload " + uploadId + " already failed");
+                }
+                String eTag = s3Client.uploadPart(b -> b.bucket(bucket).key(key).uploadId(uploadId).partNumber(partNumber),
+                        bodyOf(buffer, length, null)).eTag();
+                return CompletedPart.builder().partNumber(partNumber).eTag(eTag).build();
+            } finally {
+                // Runs even if the part failed, so buffers and permits are never leaked
+                bufferPool.release(buffer);
+                inFlight.release();
+            }
+        });
+    }
+
+    private void abort(String bucket, String key, String uploadId) {
+        try {
+            s3Client.abortMultipartUpload(b -> b.bucket(bucket).key(key).uploadId(uploadId));
+            log.warn("Aborted multipart upload {} for key {}", uploadId, key);
+        } catch (Exception e) {
+            // The bucket lifecycle rule for incomplete multipart uploads is the last line of defense here
+            log.error("Failed to abort multipart upload {} for key {}", uploadId, key, e);
+        }
+    }
+
+    // Streams straight from the pooled buffer (no copy); the provider is re-invoked if the SDK retries
+    private RequestBody bodyOf(byte[] buffer, int length, String contentType) {
+        return RequestBody.fromContentProvider(() -> new ByteArrayInputStream(buffer, 0, length), length,
+                contentType != null ? contentType : "application/octet-stream");
+    }
+
+    // Fills the buffer as far as the stream allows; returns less than buffer.length only at end of stream
+    private int readFully(InputStream in, byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            int read = in.read(buffer, total, buffer.length - total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,162 @@
+package com.salem.backend.service;
+
+import com.salem.backend.exception.BusinessException;
+import com.salem.backend.exception.enErrorCode;
+import io.awspring.cloud.s3.S3Template;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Error;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Note images in an S3 (or MinIO) bucket: the default backend.
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "s3", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class S3StorageBackend implements StorageBackend {
+
+    // S3 accepts at most 1000 keys in one DeleteObjects request
+    private static final int MAX_KEYS_PER_DELETE = 1000;
+
+    private final S3Template s3Template;
+    private final S3Client s3Client;
+    private final S3MultipartUploader multipartUploader;
+
+    @Value("${app.s3.bucket}")
+    private String bucketName;
+
+    @Override
+    public void put(String key, String contentType, long size, InputStreamSource source) {
+        log.info("Uploading file to S3 bucket: {}, key: {}", bucketName, key);
+        try {
+            // One PUT straight from the multipart part, its size is already known.
+            // (Not s3Template.upload: its output stream holds a monitor during the PUT, which pins virtual threads.)
+            s3Client.putObject(b -> b.bucket(bucketName).key(key).contentType(contentType),
+                    RequestBody.fromContentProvider(() -> openStream(source), size,
+                            contentType != null ? contentType : "application/octet-stream"));
+        } catch (UncheckedIOException e) {
+            log.error("Failed to upload file", e);
+            // Throwing a RuntimeException that will be caught by GlobalExceptionHandler
+            throw new RuntimeException("Failed to upload file to S3", e.getCause());
+        }
+    }
+
+    // The SDK may open the content more than once (retries), every call gets a fresh stream
+    private InputStream openStream(InputStreamSource source) {
+        try {
+            return source.getInputStream();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public long putStream(String key, String contentType, InputStream content, long maxObjectSize) {
+        log.info("Streaming file to S3 bucket: {}, key: {}", bucketName, key);
+        // The uploader enforces app.s3.streaming.max-object-size itself
+        return multipartUploader.upload(bucketName, key, contentType, content);
+    }
+
+    @Override
+    public InputStream open(String key) {
+        return s3Client.getObject(b -> b.bucket(bucketName).key(key));
+    }
+
+    @Override
+    public InputStream open(String key, long offset, long length) {
+        // Only the requested bytes leave the bucket
+        String range = "bytes=" + offset + "-" + (offset + length - 1);
+        ResponseInputStream<GetObjectResponse> body = s3Client.getObject(b -> b.bucket(bucketName).key(key).range(range));
+        return new FilterInputStream(body) {
+            private long remaining = length;
+
+            @Override
+            public int read() throws IOException {
+                int read = super.read();
+                remaining -= read >= 0 ? 1 : 0;
+                return read;
+            }
+
+            @Override
+            public int read(byte[] buffer, int off, int len) throws IOException {
+                int read = super.read(buffer, off, len);
+                remaining -= Math.max(read, 0);
+                return read;
+            }
+
+            // Closing a half-read body would drain the rest of the range first (to reuse the connection): drop it instead
+            @Override
+            public void close() throws IOException {
+                if (remaining > 0) {
+                    body.abort();
+                }
+                super.close();
+            }
+        };
+    }
+
+    @Override
+    public ObjectMetadata stat(String key) {
+        try {
+            HeadObjectResponse head = s3Client.headObject(b -> b.bucket(bucketName).key(key));
+            return new ObjectMetadata(head.contentLength(), head.eTag(), head.lastModified(), head.contentType());
+        } catch (NoSuchKeyException e) {
+            throw new BusinessException(enErrorCode.FILE_NOT_FOUND);
+        }
+    }
+
+    @Override
+    public String signGetUrl(String key, Duration ttl) {
+        return s3Template.createSignedGetURL(bucketName, key, ttl).toString();
+    }
+
+    @Override
+    public void delete(String key) {
+        log.info("Deleting file from S3: {}", key);
+        s3Template.deleteObject(bucketName, key);
+    }
+
+    @Override
+    public Map<String, String> deleteAll(List<String> keys) {
+        List<ObjectIdentifier> objects = keys.stream()
+                .map(key -> ObjectIdentifier.builder().key(key).build())
+                .toList();
+
+        // Quiet mode: S3 only reports the keys it failed to delete
+        DeleteObjectsResponse response = s3Client.deleteObjects(b -> b.bucket(bucketName)
+                .delete(d -> d.objects(objects).quiet(true)));
+
+        Map<String, String> failures = new HashMap<>();
+        for (S3Error error : response.errors()) {
+            failures.put(error.key(), error.code() + ": " + error.message());
+        }
+        return failures;
+    }
+
+    @Override
+    public int maxKeysPerDelete() {
+        return MAX_KEYS_PER_DELETE;
+    }
+}
@@ -0,0 +1,59 @@
+package com.salem.backend.service;
+
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Where note images are kept, selected with app.storage.backend (s3 | local).
+ * Keys are built by FileStorageService (userId/UUID.extension) and are the same for every backend;
+ * caching of signed URLs, metrics and the size limits also stay there.
+ */
+public interface StorageBackend {
+
+    /**
+     * Stores content whose size is already known (a multipart/form-data part).
+     * The source may be opened more than once, every call must return a fresh stream.
+     */
+    void put(String key, String contentType, long size, InputStreamSource source);
+
+    /**
+     * Stores a stream of unknown length and returns the number of bytes written.
+     * Throws BusinessException(FILE_TOO_LARGE) once the stream goes past maxObjectSize; nothing is left behind.
+     */
+    long putStream(String key, String contentType, InputStream content, long maxObjectSize);
+
+    /**
+     * Reads a stored object. The caller closes the stream.
+     */
+    InputStream open(String key);
+
+    /**
+     * Reads length bytes of a stored object, starting at offset (an HTTP byte range). The caller closes the stream.
+     */
+    InputStream open(String key, long offset, long length);
+
+    /**
+     * Size, ETag and modification time of a stored object, without reading it.
+     * Throws BusinessException(FILE_NOT_FOUND) if there is no such object.
+     */
+    ObjectMetadata stat(String key);
+
+    /**
+     * A URL that lets anyone holding it read the object until it expires, without a bearer token.
+     */
+    String signGetUrl(String key, Duration ttl);
+
+    void delete(String key);
+
+    /**
+     * Deletes up to maxKeysPerDelete() keys at once.
+     * Returns key -> error message for the keys that could not be deleted; throws if the whole call failed.
+     */
+    Map<String, String> deleteAll(List<String> keys);
+
+    int maxKeysPerDelete();
+}
@@ -0,0 +1,53 @@
+package com.salem.backend.service;
+
+import com.salem.backend.entity.StorageDeletionTask;
+import com.salem.backend.repository.StorageDeletionTaskRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Records S3 objects to delete in the storage_deletion_outbox table.
+ * Must be called inside the transaction that stops referencing the object: if that transaction rolls back,
+ * the deletion is rolled back with it, and once it commits the StorageDeletionWorker removes the object.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StorageDeletionOutbox {
+
+    private final StorageDeletionTaskRepository taskRepository;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(String objectKey) {
+        if (objectKey == null || objectKey.isBlank()) {
+            return;
+        }
+
+        taskRepository.save(StorageDeletionTask.builder()
+                .objectKey(objectKey)
+                .nextAttemptAt(LocalDateTime.now())
+                .build());
+
+        log.debug("Queued S3 object for deletion: {}", objectKey);
+    }
+
+    // Same as enqueue for many keys; the rows are inserted as one JDBC batch when the transaction flushes
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueAll(Collection<String> objectKeys) {
+        LocalDateTime now = LocalDateTime.now();
+        List<StorageDeletionTask> tasks = objectKeys.stream()
+                .filter(key -> key != null && !key.isBlank())
+                .map(key -> StorageDeletionTask.builder().objectKey(key).nextAttemptAt(now).build())
+                .toList();
+
+        taskRepository.saveAll(tasks);
+        log.debug("Queued {} S3 objects for deletion", tasks.size());
+    }
+}
@@ -0,0 +1,115 @@
+package com.salem.backend.service;
+
+import com.salem.backend.entity.StorageDeletionTask;
+import com.salem.backend.repository.StorageDeletionTaskRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Drains the storage deletion outbox in the background.
+ * Each batch: claim due rows (short transaction) -> one S3 multi-object delete per 1000 keys (no transaction open)
+ * -> remove the done rows and reschedule the failed ones with exponential backoff (short transaction).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "app.storage.deletion.worker-enabled", havingValue = "true", matchIfMissing = true)
+public class StorageDeletionWorker {
+
+    private final StorageDeletionTaskRepository taskRepository;
+    private final FileStorageService fileStorageService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.storage.deletion.batch-size}")
+    private int batchSize;
+
+    // A claimed batch is invisible to other workers for this long (covers a crash between claim and completion)
+    @Value("${app.storage.deletion.lease}")
+    private Duration lease;
+
+    @Value("${app.storage.deletion.backoff.initial}")
+    private Duration initialBackoff;
+
+    @Value("${app.storage.deletion.backoff.max}")
+    private Duration maxBackoff;
+
+    @Scheduled(fixedDelayString = "${app.storage.deletion.poll-interval}")
+    public void drain() {
+        try {
+            // Keep going while full batches come back, so a backlog is cleared without waiting for the next tick
+            while (processBatch() == batchSize) {
+                log.debug("Storage deletion outbox has more due rows, processing next batch");
+            }
+        } catch (Exception e) {
+            log.error("Storage deletion worker failed, will retry on the next run", e);
+        }
+    }
+
+    private int processBatch() {
+
+        // 1. Claim due rows: lock them and push next_attempt_at out by the lease
+        List<StorageDeletionTask> batch = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<StorageDeletionTask> due = taskRepository.lockDueBatch(now, batchSize);
+            for (StorageDeletionTask task : due) {
+                task.setNextAttemptAt(now.plus(lease));
+            }
+            return due;
+        });
+
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+
+        // 2. Delete the objects, key -> error for the ones S3 refused
+        List<String> keys = batch.stream().map(StorageDeletionTask::getObjectKey).toList();
+        Map<String, String> failures = fileStorageService.deleteFiles(keys);
+
+        // 3. Record the outcome
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Long> doneIds = new ArrayList<>();
+            List<StorageDeletionTask> retries = new ArrayList<>();
+            LocalDateTime now = LocalDateTime.now();
+
+            for (StorageDeletionTask task : batch) {
+                String error = failures.get(task.getObjectKey());
+                if (error == null) {
+                    doneIds.add(task.getId());
+                } else {
+                    task.setAttempts(task.getAttempts() + 1);
+                    task.setNextAttemptAt(now.plus(backoff(task.getAttempts())));
+                    task.setLastError(error.length() > 1000 ? error.substring(0, 1000) : error);
+                    retries.add(task);
+                }
+            }
+
+            taskRepository.deleteAllByIdInBatch(doneIds);
+            taskRepository.saveAll(retries);
+        });
+
+        if (failures.isEmpty()) {
+            log.info("Deleted {} objects from storage", batch.size());
+        } else {
+            log.warn("Deleted {} objects from storage, {} failed and will be retried", batch.size() - failures.size(), failures.size());
+        }
+        return batch.size();
+    }
+
+    // initial, 2x initial, 4x initial, ... capped at max
+    private Duration backoff(int attempts) {
+        int exponent = Math.min(attempts - 1, 20);
+        Duration delay = initialBackoff.multipliedBy(1L << exponent);
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+}
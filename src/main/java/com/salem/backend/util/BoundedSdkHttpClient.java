@@ -0,0 +1,119 @@
+package com.salem.backend.util;
+
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.http.ExecutableHttpRequest;
+import software.amazon.awssdk.http.HttpExecuteRequest;
+import software.amazon.awssdk.http.HttpExecuteResponse;
+import software.amazon.awssdk.http.SdkHttpClient;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lets at most N requests use the wrapped SDK HTTP client at a time; the rest wait (fairly) on a semaphore.
+ * With N equal to the connection pool size, no caller ever waits inside the pool. That matters for virtual threads:
+ * the Apache client (httpclient 4.5) waits for a free connection inside a synchronized block, which pins the carrier,
+ * and enough pinned waiters starve the threads that would give their connections back.
+ * A permit is held until the response body is closed or aborted, just like the connection behind it.
+ */
+public class BoundedSdkHttpClient implements SdkHttpClient {
+
+    private final SdkHttpClient delegate;
+    private final Semaphore permits;
+    private final Duration acquisitionTimeout;
+
+    public BoundedSdkHttpClient(SdkHttpClient delegate, int maxConcurrentRequests, Duration acquisitionTimeout) {
+        this.delegate = delegate;
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        this.acquisitionTimeout = acquisitionTimeout;
+    }
+
+    @Override
+    public ExecutableHttpRequest prepareRequest(HttpExecuteRequest request) {
+        ExecutableHttpRequest call = delegate.prepareRequest(request);
+
+        return new ExecutableHttpRequest() {
+            @Override
+            public HttpExecuteResponse call() throws IOException {
+                Permit permit = acquire();
+                try {
+                    HttpExecuteResponse response = call.call();
+                    if (response.responseBody().isEmpty()) {
+                        permit.release();
+                        return response;
+                    }
+                    return withPermit(response, response.responseBody().get(), permit);
+                } catch (IOException | RuntimeException e) {
+                    permit.release();
+                    throw e;
+                }
+            }
+
+            @Override
+            public void abort() {
+                call.abort();
+            }
+        };
+    }
+
+    @Override
+    public String clientName() {
+        return delegate.clientName();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private Permit acquire() throws IOException {
+        try {
+            if (!permits.tryAcquire(acquisitionTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                // Same kind of failure as a connection pool timeout, so the SDK retry policy treats it alike
+                throw new IOException("Timed out after " + acquisitionTimeout + " waiting for a free S3 connection");
+            }
+            return new Permit();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a free S3 connection");
+        }
+    }
+
+    // The permit goes back when the caller is done with the body (closed, or aborted)
+    private HttpExecuteResponse withPermit(HttpExecuteResponse response, AbortableInputStream body, Permit permit) {
+        FilterInputStream releasingBody = new FilterInputStream(body) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    permit.release();
+                }
+            }
+        };
+        return HttpExecuteResponse.builder()
+                .response(response.httpResponse())
+                .responseBody(AbortableInputStream.create(releasingBody, () -> {
+                    body.abort();
+                    permit.release();
+                }))
+                .build();
+    }
+
+    // Releases at most once, whichever of close / abort / failure comes first
+    private final class Permit {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+}
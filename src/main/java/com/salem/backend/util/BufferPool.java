@@ -0,0 +1,74 @@
+package com.salem.backend.util;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed-size pool of reusable byte arrays.
+ * Buffers are allocated lazily up to maxBuffers; once all are in use, acquire() blocks until one is released
+ * (tryAcquire(timeout) gives up after the timeout instead).
+ * This puts a hard cap on the heap used for I/O buffering (bufferSize x maxBuffers), whatever the load.
+ */
+public class BufferPool {
+
+    private final int bufferSize;
+    private final int maxBuffers;
+    private final BlockingQueue<byte[]> free;
+    private final AtomicInteger allocated = new AtomicInteger();
+
+    public BufferPool(int bufferSize, int maxBuffers) {
+        if (bufferSize <= 0 || maxBuffers <= 0) {
+            throw new IllegalArgumentException("bufferSize and maxBuffers must be positive");
+        }
+        this.bufferSize = bufferSize;
+        this.maxBuffers = maxBuffers;
+        this.free = new ArrayBlockingQueue<>(maxBuffers);
+    }
+
+    public byte[] acquire() throws InterruptedException {
+        byte[] buffer = poll();
+        return buffer != null ? buffer : free.take();
+    }
+
+    /**
+     * Like acquire(), but returns null if no buffer was released within the timeout.
+     */
+    public byte[] tryAcquire(Duration timeout) throws InterruptedException {
+        byte[] buffer = poll();
+        return buffer != null ? buffer : free.poll(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    // A free buffer, or a new one while we are below the cap; null if all are in use
+    private byte[] poll() {
+        byte[] buffer = free.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+
+        int current;
+        while ((current = allocated.get()) < maxBuffers) {
+            if (allocated.compareAndSet(current, current + 1)) {
+                return new byte[bufferSize];
+            }
+        }
+        return null;
+    }
+
+    public void release(byte[] buffer) {
+        if (buffer != null && buffer.length == bufferSize) {
+            free.offer(buffer);
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    // Buffers currently handed out
+    public int inUse() {
+        return allocated.get() - free.size();
+    }
+}
@@ -0,0 +1,101 @@
+package com.salem.backend.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * JwtDecoder that remembers the tokens its delegate has already accepted, so a client sending the same
+ * access token again skips the RSA signature check and the claim parsing.
+ * Entries are keyed by the SHA-256 of the token and dropped expiry-margin before the token's exp;
+ * tokens without exp, or that are about to expire anyway, are never cached. Rejected tokens are not cached either.
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+
+    private final JwtDecoder delegate;
+    private final Duration expiryMargin;
+    private final Cache<String, Jwt> validated;
+
+    public CachingJwtDecoder(JwtDecoder delegate, long maxSize, Duration expiryMargin, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.expiryMargin = expiryMargin;
+        this.validated = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new UntilTokenExpiry())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, validated, "validatedJwts");
+
+        // Every cache hit is a signature verification that did not happen
+        FunctionCounter.builder("security.jwt.verifications.avoided", validated, cache -> cache.stats().hitCount())
+                .description("Bearer tokens accepted from the validated-JWT cache instead of being verified again")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        String key = digest(token);
+
+        // The digest only locates the entry; the token itself must match too
+        Jwt cached = validated.getIfPresent(key);
+        if (cached != null && cached.getTokenValue().equals(token)) {
+            return cached;
+        }
+
+        Jwt jwt = delegate.decode(token);
+        if (remainingLifetime(jwt).isPositive()) {
+            validated.put(key, jwt);
+        }
+        return jwt;
+    }
+
+    // Time until the entry must be gone: exp minus the margin (zero when the token has no exp)
+    private Duration remainingLifetime(Jwt jwt) {
+        Instant expiresAt = jwt.getExpiresAt();
+        if (expiresAt == null) {
+            return Duration.ZERO;
+        }
+        return Duration.between(Instant.now(), expiresAt.minus(expiryMargin));
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private class UntilTokenExpiry implements Expiry<String, Jwt> {
+
+        @Override
+        public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+            return Math.max(0, remainingLifetime(jwt).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, jwt, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
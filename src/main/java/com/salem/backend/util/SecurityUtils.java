@@ -1,31 +1,129 @@
 package com.salem.backend.util;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.salem.backend.entity.User;
+import com.salem.backend.exception.BusinessException;
+import com.salem.backend.exception.enErrorCode;
 import com.salem.backend.repository.UserRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class SecurityUtils {
 
     private final UserRepository userRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.security.user-cache.max-size}")
+    private long userCacheMaxSize;
+
+    // Bounds how long profile changes (email, names) in Keycloak take to show up locally
+    @Value("${app.security.user-cache.ttl}")
+    private Duration userCacheTtl;
+
+    // Keycloak subject -> detached copy of the local user row.
+    // Async cache: a lookup in progress is a future in the map, so the DB call never runs inside the map's lock
+    // (a synchronous Cache.get loader would, and would pin a virtual thread to its carrier for the whole query).
+    private AsyncCache<String, User> userCache;
+
+    // Resolutions that did not run their own users-table lookup: cache hits and joins of a lookup in progress
+    private final LongAdder lookupsAvoided = new LongAdder();
+
+    @PostConstruct
+    void initUserCache() {
+        userCache = Caffeine.newBuilder()
+                .maximumSize(userCacheMaxSize)
+                .expireAfterWrite(userCacheTtl)
+                .recordStats()
+                .buildAsync();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, userCache, "currentUsers");
+
+        // Every resolution served by the cache or by another request's lookup is a users-table lookup that did not
+        // happen; rate() of this gives lookups avoided per second
+        FunctionCounter.builder("security.user.lookups.avoided", lookupsAvoided, LongAdder::sum)
+                .description("Current-user resolutions served from the in-process cache instead of the database")
+                .register(meterRegistry);
+    }
 
     /**
      * Retrieves the currently authenticated user from the database.
      * If the user exists in the Token (Keycloak) but not in DB, it creates them (JIT Provisioning).
+     * Results are cached per subject; concurrent first requests of the same subject share a single lookup.
      */
     public User getCurrentUser() {
         Jwt jwt = getPrincipal();
         String keycloakId = jwt.getSubject();
 
-        return userRepository.findByKeycloakId(keycloakId)
-                .orElseGet(() -> syncUserFromToken(jwt));
+        // 1. Cached (or being loaded by another request): wait for that result
+        CompletableFuture<User> cached = userCache.getIfPresent(keycloakId);
+        if (cached != null) {
+            lookupsAvoided.increment();
+            return await(cached);
+        }
+
+        // 2. Register our own pending lookup; if another request beat us to it, share theirs
+        CompletableFuture<User> lookup = new CompletableFuture<>();
+        CompletableFuture<User> inFlight = userCache.asMap().putIfAbsent(keycloakId, lookup);
+        if (inFlight != null) {
+            lookupsAvoided.increment();
+            return await(inFlight);
+        }
+
+        // 3. Load on this thread (security context and transactions stay as they are).
+        // A failed future is dropped from the cache by Caffeine, so the next request retries.
+        // Errors too: a future left pending would park every later request of this user for good.
+        try {
+            User user = loadOrProvision(jwt);
+            lookup.complete(user);
+            return user;
+        } catch (Throwable e) {
+            lookup.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Drops the cached row of a user, e.g. after their profile was changed or the user was removed.
+     */
+    public void evictUser(String keycloakId) {
+        userCache.synchronous().invalidate(keycloakId);
+    }
+
+    public void evictAllUsers() {
+        userCache.synchronous().invalidateAll();
+    }
+
+    // Parks the caller until the shared lookup is done, rethrowing its original exception
+    private User await(CompletableFuture<User> lookup) {
+        try {
+            return lookup.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
     }
 
     /**
@@ -39,8 +137,15 @@ public class SecurityUtils {
         return (Jwt) authentication.getPrincipal();
     }
 
+    private User loadOrProvision(Jwt jwt) {
+        User user = userRepository.findByKeycloakId(jwt.getSubject())
+                .orElseGet(() -> syncUserFromToken(jwt));
+        return detachedCopy(user);
+    }
+
     /**
-     * Creates a new user record in local DB based on Keycloak Token claims.
+     * Creates the user record in local DB based on Keycloak Token claims.
+     * Uses an insert-if-absent upsert, so a racing first request (e.g. on another instance) can't hit the unique constraint.
      */
     private User syncUserFromToken(Jwt jwt) {
         String keycloakId = jwt.getSubject();
@@ -50,13 +155,22 @@ public class SecurityUtils {
 
         log.info("Synchronizing new user from Keycloak: {}", email);
 
-        User newUser = User.builder()
-                .keycloakId(keycloakId)
-                .email(email)
-                .firstName(firstName)
-                .lastName(lastName)
-                .build();
+        userRepository.insertIfAbsent(keycloakId, email, firstName, lastName);
 
-        return userRepository.save(newUser);
+        // Whoever won the insert, the row exists now
+        return userRepository.findByKeycloakId(keycloakId)
+                .orElseThrow(() -> new BusinessException(enErrorCode.USER_NOT_FOUND));
+    }
+
+    // The cached instance is shared between requests, so it must not be attached to any persistence context
+    private User detachedCopy(User user) {
+        return User.builder()
+                .id(user.getId())
+                .keycloakId(user.getKeycloakId())
+                .email(user.getEmail())
+                .firstName(user.getFirstName())
+                .lastName(user.getLastName())
+                .createdAt(user.getCreatedAt())
+                .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,13 @@
+--liquibase formatted sql
+
+--changeset salem:2
+-- Keyset pagination orders notes by (updated_at, id), so every row needs an updated_at.
+UPDATE notes SET updated_at = COALESCE(created_at, CURRENT_TIMESTAMP) WHERE updated_at IS NULL;
+ALTER TABLE notes ALTER COLUMN updated_at SET DEFAULT CURRENT_TIMESTAMP;
+ALTER TABLE notes ALTER COLUMN updated_at SET NOT NULL;
+
+-- Matches the listing query: WHERE user_id = ? AND (updated_at, id) < (?, ?) ORDER BY updated_at DESC, id DESC
+CREATE INDEX idx_notes_user_updated_id ON notes(user_id, updated_at DESC, id DESC);
+
+-- The composite index starts with user_id, so the single-column index is redundant
+DROP INDEX idx_notes_user_id;
@@ -0,0 +1,22 @@
+--liquibase formatted sql
+
+--changeset salem:3
+-- Transactional outbox of S3 objects to delete.
+-- Rows are written in the same transaction that stops referencing the object (note deleted, image replaced),
+-- and a background worker removes the objects in batches after commit.
+CREATE TABLE storage_deletion_outbox (
+    id BIGSERIAL PRIMARY KEY,
+
+    -- The S3/MinIO object key to remove
+    object_key VARCHAR(255) NOT NULL,
+
+    -- Retry bookkeeping: failed deletions are retried with exponential backoff
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    last_error VARCHAR(1000),
+
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- The worker polls for due rows: WHERE next_attempt_at <= now ORDER BY next_attempt_at
+CREATE INDEX idx_storage_deletion_outbox_due ON storage_deletion_outbox(next_attempt_at);
@@ -0,0 +1,14 @@
+--liquibase formatted sql
+
+--changeset salem:4 dbms:postgresql
+-- Full-text search over a note's title and content (GET /api/notes/search).
+-- Generated column: PostgreSQL keeps it in sync on every insert/update, the application never writes it.
+-- 'simple' configuration: no language-specific stemming or stop words, notes are written in Arabic and English.
+-- Title words weigh more (A) than content words (B) in the ranking.
+ALTER TABLE notes ADD COLUMN search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('simple', coalesce(title, '')), 'A') ||
+    setweight(to_tsvector('simple', coalesce(content, '')), 'B')
+) STORED;
+
+-- Serves the match (search_vector @@ query); the user_id filter is combined with it by the planner
+CREATE INDEX idx_notes_search_vector ON notes USING GIN (search_vector);
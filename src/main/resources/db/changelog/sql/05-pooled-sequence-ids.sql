@@ -0,0 +1,24 @@
+--liquibase formatted sql
+
+--changeset salem:5 dbms:postgresql
+-- Sequence ids with a pooled optimizer (allocationSize = 50) instead of IDENTITY, so Hibernate can batch inserts.
+-- The BIGSERIAL sequences stay the source of ids, they just hand out blocks of 50: Hibernate reserves
+-- (value - 49 .. value) per nextval, and plain SQL inserts that use the column default take a value Hibernate never will.
+ALTER SEQUENCE notes_id_seq INCREMENT BY 50;
+ALTER SEQUENCE users_id_seq INCREMENT BY 50;
+ALTER SEQUENCE storage_deletion_outbox_id_seq INCREMENT BY 50;
+
+--changeset salem:5-h2 dbms:h2
+-- Same shape on H2 (local harness): its BIGSERIAL is an identity column without a named sequence,
+-- so create the sequences and make them the column defaults. The in-memory database is empty at this point.
+CREATE SEQUENCE notes_id_seq START WITH 1 INCREMENT BY 50;
+ALTER TABLE notes ALTER COLUMN id DROP IDENTITY;
+ALTER TABLE notes ALTER COLUMN id SET DEFAULT nextval('notes_id_seq');
+
+CREATE SEQUENCE users_id_seq START WITH 1 INCREMENT BY 50;
+ALTER TABLE users ALTER COLUMN id DROP IDENTITY;
+ALTER TABLE users ALTER COLUMN id SET DEFAULT nextval('users_id_seq');
+
+CREATE SEQUENCE storage_deletion_outbox_id_seq START WITH 1 INCREMENT BY 50;
+ALTER TABLE storage_deletion_outbox ALTER COLUMN id DROP IDENTITY;
+ALTER TABLE storage_deletion_outbox ALTER COLUMN id SET DEFAULT nextval('storage_deletion_outbox_id_seq');
@@ -0,0 +1,6 @@
+--liquibase formatted sql
+
+--changeset salem:6
+-- Per-user change counter of the notes, incremented in the same transaction as every note write.
+-- GET /api/notes and /api/notes/{id} derive their ETags from it, so an unchanged poll is one primary-key lookup.
+ALTER TABLE users ADD COLUMN notes_version BIGINT NOT NULL DEFAULT 0;
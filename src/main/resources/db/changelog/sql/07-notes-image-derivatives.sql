@@ -0,0 +1,7 @@
+--liquibase formatted sql
+
+--changeset salem:7
+-- Generated variants of the note image (thumbnails etc.) that are ready, as "name,name" (e.g. "thumb,medium").
+-- Written by the ImageDerivativeService after the upload; NULL until then and again whenever the image is replaced.
+-- The objects live next to the original: userId/UUID-{name}.jpg
+ALTER TABLE notes ADD COLUMN image_derivatives VARCHAR(255);
@@ -0,0 +1,22 @@
+--liquibase formatted sql
+
+--changeset salem:8
+-- Content-addressed index of stored images: one row per distinct file content of a user.
+-- Notes that attach the same bytes share one object; ref_count is the number of notes pointing at it,
+-- maintained in the same transactions as the notes. The object goes to the deletion outbox when it drops to 0.
+-- Objects stored before this table existed have no row and keep being deleted with their (only) note.
+CREATE TABLE stored_files (
+    object_key VARCHAR(255) PRIMARY KEY,
+    user_id BIGINT NOT NULL REFERENCES users(id),
+
+    -- SHA-256 of the content, lowercase hex
+    content_hash CHAR(64) NOT NULL,
+    ref_count INT NOT NULL,
+
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+
+    CONSTRAINT uq_stored_files_content UNIQUE (user_id, content_hash)
+);
+
+-- Variants are recorded on every note that shows a shared image, and a new note picks them up from the others
+CREATE INDEX idx_notes_image_key ON notes(image_key);
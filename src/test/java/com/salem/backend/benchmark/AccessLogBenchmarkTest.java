@@ -0,0 +1,243 @@
+package com.salem.backend.benchmark;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.salem.backend.logging.AccessLogWriter;
+import com.salem.backend.logging.AccessLoggingFilter;
+import com.salem.backend.support.JmhRunner;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPrivateKey;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * JMH: per-request cost of the access log filter, the previous synchronous version against the ring buffer one.
+ * Both run the same authenticated GET through a no-op chain and log into a Logback appender that discards the bytes.
+ * The ring buffer runs with the WAIT policy, so no record is dropped and the writer thread formats every one of them:
+ * time and bytes per request (all threads) are the whole cost of a log line, not just the request thread's part.
+ * Run with: ./mvnw test -Pbenchmark -Dtest=AccessLogBenchmarkTest (results: target/jmh/AccessLogBenchmarkTest.json)
+ */
+@Tag("benchmark")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccessLogBenchmarkTest {
+
+    private Filter legacyFilter;
+    private Filter ringBufferFilter;
+    private AccessLogWriter writer;
+    private SimpleMeterRegistry meterRegistry;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    // Stands in for the rest of the chain: Spring Security leaves the authenticated context on the request
+    private FilterChain chain;
+
+    @Test
+    void compareFilters() throws Exception {
+        Collection<RunResult> results = JmhRunner.run(AccessLogBenchmarkTest.class);
+
+        double legacyNanos = 0, ringBufferNanos = 0, legacyBytes = 0, ringBufferBytes = 0;
+        for (RunResult result : results) {
+            String name = result.getParams().getBenchmark();
+            double nanos = result.getPrimaryResult().getScore();
+            double bytes = JmhRunner.bytesPerOp(result);
+            if (name.endsWith("legacyFilter")) {
+                legacyNanos = nanos;
+                legacyBytes = bytes;
+            } else {
+                ringBufferNanos = nanos;
+                ringBufferBytes = bytes;
+            }
+        }
+
+        System.out.printf("%n%-12s %12s %16s%n", "filter", "ns/request", "bytes/request");
+        System.out.printf("%-12s %12.0f %16.0f%n", "legacy", legacyNanos, legacyBytes);
+        System.out.printf("%-12s %12.0f %16.0f%n", "ring buffer", ringBufferNanos, ringBufferBytes);
+
+        assertThat(ringBufferNanos).isLessThan(legacyNanos);
+        assertThat(ringBufferBytes).isLessThan(legacyBytes);
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        JmhRunner.discardLogOutput();
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keys = generator.generateKeyPair();
+        SignedJWT token = new SignedJWT(new JWSHeader(JWSAlgorithm.RS256), new JWTClaimsSet.Builder()
+                .subject("user-1")
+                .claim("preferred_username", "salem")
+                .expirationTime(Date.from(Instant.now().plus(Duration.ofHours(1))))
+                .build());
+        token.sign(new RSASSASigner((RSAPrivateKey) keys.getPrivate()));
+        String bearer = token.serialize();
+
+        Jwt jwt = Jwt.withTokenValue(bearer)
+                .header("alg", "RS256")
+                .subject("user-1")
+                .claim("preferred_username", "salem")
+                .build();
+        SecurityContextImpl securityContext = new SecurityContextImpl(new JwtAuthenticationToken(jwt));
+
+        request = new MockHttpServletRequest("GET", "/api/notes");
+        request.addHeader("Authorization", "Bearer " + bearer);
+        request.addHeader("User-Agent", "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/124.0");
+        request.addHeader("X-Forwarded-For", "203.0.113.7, 10.0.0.2");
+        response = new MockHttpServletResponse();
+        chain = (ServletRequest req, ServletResponse res) -> {
+            req.setAttribute(RequestAttributeSecurityContextRepository.DEFAULT_REQUEST_ATTR_NAME, securityContext);
+            ((HttpServletResponse) res).setStatus(200);
+        };
+
+        meterRegistry = new SimpleMeterRegistry();
+        writer = new AccessLogWriter(meterRegistry, 8192, AccessLogWriter.OverflowPolicy.WAIT, Duration.ofSeconds(1));
+        writer.start();
+        ringBufferFilter = new AccessLoggingFilter(writer);
+        legacyFilter = new LegacyAccessLoggingFilter();
+    }
+
+    @TearDown
+    public void tearDown() {
+        writer.stop();
+        double dropped = meterRegistry.get("access.log.dropped").counter().count();
+        if (dropped > 0) {
+            throw new IllegalStateException(dropped + " records dropped, the ring buffer result would be too optimistic");
+        }
+    }
+
+    @Benchmark
+    public MockHttpServletResponse legacyFilter() throws Exception {
+        legacyFilter.doFilter(request, response, chain);
+        return response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse ringBufferFilter() throws Exception {
+        ringBufferFilter.doFilter(request, response, chain);
+        return response;
+    }
+
+    /**
+     * The filter as it was before the ring buffer: formatter built per request, token parsed again,
+     * String.format and a synchronous log call on the request thread.
+     */
+    static class LegacyAccessLoggingFilter implements Filter {
+
+        private static final org.slf4j.Logger log = LoggerFactory.getLogger(AccessLoggingFilter.class);
+
+        @Override
+        public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain) throws java.io.IOException, jakarta.servlet.ServletException {
+            HttpServletRequest request = (HttpServletRequest) req;
+            HttpServletResponse response = (HttpServletResponse) res;
+
+            long startTime = System.currentTimeMillis();
+            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+
+            String method = request.getMethod();
+            String requestUri = request.getRequestURI();
+            String userAgent = request.getHeader("User-Agent");
+            String ipAddress = getClientIp(request);
+
+            String username = "Anonymous";
+            try {
+                username = extractToken(request);
+            } catch (Exception e) {
+                log.warn("Could not extract token username: " + e.getMessage());
+            }
+
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                long duration = System.currentTimeMillis() - startTime;
+                int statusCode = response.getStatus();
+
+                String logMessage = String.format(
+                        "[AUDIT] Time: %s | IP: %s | User: %s | Method: %s | URL: %s | Status: %d | Agent: %s | Duration: %dms",
+                        timestamp, ipAddress, username, method, requestUri, statusCode, userAgent, duration
+                );
+
+                if (statusCode >= 400) {
+                    log.error(logMessage);
+                } else {
+                    log.info(logMessage);
+                }
+            }
+        }
+
+        private String getClientIp(HttpServletRequest request) {
+            String ip = request.getHeader("X-Forwarded-For");
+            if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
+                ip = request.getHeader("X-Real-IP");
+            }
+            if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
+                ip = request.getRemoteAddr();
+            }
+            if (ip != null && ip.contains(",")) {
+                ip = ip.split(",")[0].trim();
+            }
+            return ip;
+        }
+
+        private String extractToken(HttpServletRequest request) {
+            String authHeader = request.getHeader("Authorization");
+            if (authHeader != null && authHeader.startsWith("Bearer ")) {
+                String token = authHeader.substring(7);
+                try {
+                    SignedJWT signedJWT = SignedJWT.parse(token);
+                    String preferredUsername = (String) signedJWT.getJWTClaimsSet().getClaim("preferred_username");
+                    return preferredUsername != null ? preferredUsername : "Unknown-User";
+                } catch (ParseException e) {
+                    return "Invalid-Token";
+                }
+            }
+            return "Anonymous";
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.salem.backend.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.salem.backend.support.LocalJwtIssuer;
+import com.salem.backend.support.LocalNotesApp;
+import com.salem.backend.support.S3StubServer;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * End-to-end load test: boots the real app against the local stand-ins (in-memory H2 in PostgreSQL mode,
+ * the S3 stub with a fixed latency per call, the local JWT issuer) and drives a mix of list / get / create /
+ * update / delete calls on NoteController from closed-loop clients (each sends its next request when the
+ * previous one returned). Every client is its own user, so clients never race on each other's notes.
+ * Reports throughput and p50/p95/p99/p99.9 latency per endpoint, writes them to target/load/MixedTrafficLoadTest.json
+ * and fails on errors or regressions.
+ * Settings (system properties, all optional):
+ *   load.concurrency=32  load.warmup=5s  load.duration=30s  load.s3-latency=10ms  load.virtual-threads=false
+ *   load.max-error-rate=0        share of failed requests allowed per endpoint
+ *   load.max-p99=...             absolute p99 bound for every endpoint (e.g. 250ms)
+ *   load.baseline={dir}          compare with {dir}/MixedTrafficLoadTest.json of an earlier run:
+ *   load.tolerance=0.25          fail when a p99 grows, or a throughput drops, by more than this share
+ * Run with: ./mvnw test -Pbenchmark -Dtest=MixedTrafficLoadTest -Dload.concurrency=64
+ */
+@Tag("benchmark")
+class MixedTrafficLoadTest {
+
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 32);
+    private static final Duration WARMUP = duration("load.warmup", "5s");
+    private static final Duration MEASUREMENT = duration("load.duration", "30s");
+    private static final Duration S3_LATENCY = duration("load.s3-latency", "10ms");
+    private static final boolean VIRTUAL_THREADS = Boolean.getBoolean("load.virtual-threads");
+    private static final double MAX_ERROR_RATE = Double.parseDouble(System.getProperty("load.max-error-rate", "0"));
+    private static final double TOLERANCE = Double.parseDouble(System.getProperty("load.tolerance", "0.25"));
+
+    // Notes every client owns before the measurement starts
+    private static final int SEED_NOTES = 10;
+    private static final byte[] IMAGE = new byte[8 * 1024];
+    private static final Pattern NOTE_ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+    private static final Path REPORT = Path.of("target", "load", "MixedTrafficLoadTest.json");
+
+    // Share of each call in the mix, roughly what the web client sends: mostly reads
+    private static final Map<String, Integer> MIX = new LinkedHashMap<>();
+
+    static {
+        MIX.put("GET /api/notes", 50);
+        MIX.put("GET /api/notes/{id}", 20);
+        MIX.put("POST /api/notes", 12);
+        MIX.put("PUT /api/notes/{id}", 10);
+        MIX.put("DELETE /api/notes/{id}", 8);
+    }
+
+    // Clients run on platform threads, so they never take carrier threads away from the app in virtual-thread mode
+    private final ExecutorService clientThreads = Executors.newCachedThreadPool();
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(clientThreads)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+
+    /**
+     * Latencies (microseconds) and failures of one endpoint, per client; merged after the run.
+     */
+    private static final class EndpointStats {
+        final Histogram latencyMicros = new Histogram(3);
+        final Map<String, Integer> failures = new TreeMap<>();
+
+        long errors() {
+            return failures.values().stream().mapToLong(Integer::longValue).sum();
+        }
+    }
+
+    @Test
+    void mixedTraffic() throws Exception {
+        try (S3StubServer s3 = S3StubServer.start(S3_LATENCY);
+             LocalJwtIssuer issuer = LocalJwtIssuer.start();
+             LocalNotesApp app = LocalNotesApp.builder(s3, issuer)
+                     .with("spring.threads.virtual.enabled", VIRTUAL_THREADS)
+                     .start()) {
+
+            Map<String, EndpointStats> stats = run(app.baseUrl(), issuer);
+            Map<String, Map<String, Double>> report = report(stats);
+
+            Files.createDirectories(REPORT.getParent());
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(REPORT.toFile(), Map.of(
+                    "concurrency", CONCURRENCY,
+                    "durationSeconds", MEASUREMENT.toSeconds(),
+                    "s3LatencyMillis", S3_LATENCY.toMillis(),
+                    "virtualThreads", VIRTUAL_THREADS,
+                    "endpoints", report));
+            System.out.printf("Report written to %s%n", REPORT.toAbsolutePath());
+
+            assertThat(regressions(stats, report)).as("load test regressions").isEmpty();
+        }
+    }
+
+    private Map<String, EndpointStats> run(String base, LocalJwtIssuer issuer) throws Exception {
+        try (ExecutorService pool = Executors.newFixedThreadPool(CONCURRENCY)) {
+            // Seed first (not measured), then all clients start the warmup together
+            List<List<Long>> noteIds = new ArrayList<>();
+            List<Future<List<Long>>> seeding = new ArrayList<>();
+            for (int client = 0; client < CONCURRENCY; client++) {
+                String token = issuer.tokenFor("load-user-" + client);
+                seeding.add(pool.submit(() -> {
+                    List<Long> ids = new ArrayList<>();
+                    for (int n = 0; n < SEED_NOTES; n++) {
+                        HttpResponse<String> created = http.send(createNote(base, token), HttpResponse.BodyHandlers.ofString());
+                        assertThat(created.statusCode()).as("seeding: %s", created.body()).isEqualTo(201);
+                        ids.add(noteId(created.body()));
+                    }
+                    return ids;
+                }));
+            }
+            for (Future<List<Long>> seeded : seeding) {
+                noteIds.add(seeded.get());
+            }
+
+            long measureFrom = System.nanoTime() + WARMUP.toNanos();
+            long deadline = measureFrom + MEASUREMENT.toNanos();
+            List<Future<Map<String, EndpointStats>>> clients = new ArrayList<>();
+            for (int client = 0; client < CONCURRENCY; client++) {
+                String token = issuer.tokenFor("load-user-" + client);
+                List<Long> ids = noteIds.get(client);
+                clients.add(pool.submit(() -> drive(base, token, ids, measureFrom, deadline)));
+            }
+
+            Map<String, EndpointStats> merged = new LinkedHashMap<>();
+            MIX.keySet().forEach(endpoint -> merged.put(endpoint, new EndpointStats()));
+            for (Future<Map<String, EndpointStats>> client : clients) {
+                client.get().forEach((endpoint, clientStats) -> {
+                    EndpointStats total = merged.get(endpoint);
+                    total.latencyMicros.add(clientStats.latencyMicros);
+                    clientStats.failures.forEach((reason, count) -> total.failures.merge(reason, count, Integer::sum));
+                });
+            }
+            return merged;
+        }
+    }
+
+    // One closed-loop client: picks the next call from the mix, records it once the warmup is over
+    private Map<String, EndpointStats> drive(String base, String token, List<Long> ids, long measureFrom, long deadline) {
+        Map<String, EndpointStats> stats = new LinkedHashMap<>();
+        MIX.keySet().forEach(endpoint -> stats.put(endpoint, new EndpointStats()));
+        int totalWeight = MIX.values().stream().mapToInt(Integer::intValue).sum();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        while (System.nanoTime() < deadline) {
+            String endpoint = pick(random.nextInt(totalWeight));
+            // Keep a few notes around to read and change
+            if (ids.size() < 2 && !endpoint.startsWith("GET /api/notes") && !endpoint.startsWith("POST")) {
+                endpoint = "POST /api/notes";
+            }
+            long id = ids.isEmpty() ? 0 : ids.get(random.nextInt(ids.size()));
+
+            HttpRequest request;
+            int expected;
+            switch (endpoint) {
+                case "GET /api/notes" -> {
+                    request = authorized(base + "/api/notes?size=20", token).GET().build();
+                    expected = 200;
+                }
+                case "GET /api/notes/{id}" -> {
+                    if (ids.isEmpty()) {
+                        continue;
+                    }
+                    request = authorized(base + "/api/notes/" + id, token).GET().build();
+                    expected = 200;
+                }
+                case "POST /api/notes" -> {
+                    request = createNote(base, token);
+                    expected = 201;
+                }
+                case "PUT /api/notes/{id}" -> {
+                    request = updateNote(base, token, id);
+                    expected = 200;
+                }
+                default -> {
+                    request = authorized(base + "/api/notes/" + id, token).DELETE().build();
+                    expected = 204;
+                }
+            }
+
+            long started = System.nanoTime();
+            boolean measured = started >= measureFrom;
+            EndpointStats endpointStats = stats.get(endpoint);
+            try {
+                HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+                long micros = (System.nanoTime() - started) / 1_000;
+                if (response.statusCode() != expected) {
+                    if (measured) {
+                        endpointStats.failures.merge("HTTP " + response.statusCode(), 1, Integer::sum);
+                    }
+                    continue;
+                }
+                if (measured) {
+                    endpointStats.latencyMicros.recordValue(micros);
+                }
+                if (expected == 201) {
+                    ids.add(noteId(response.body()));
+                } else if (expected == 204) {
+                    ids.remove(Long.valueOf(id));
+                }
+            } catch (Exception e) {
+                if (measured) {
+                    endpointStats.failures.merge(e.getClass().getSimpleName(), 1, Integer::sum);
+                }
+            }
+        }
+        return stats;
+    }
+
+    private static String pick(int roll) {
+        for (Map.Entry<String, Integer> entry : MIX.entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Roll outside the mix");
+    }
+
+    private Map<String, Map<String, Double>> report(Map<String, EndpointStats> stats) {
+        double seconds = MEASUREMENT.toMillis() / 1000.0;
+        Map<String, Map<String, Double>> report = new LinkedHashMap<>();
+
+        System.out.printf("%n%d clients, %d s, %d ms per S3 call, %s threads%n", CONCURRENCY, MEASUREMENT.toSeconds(),
+                S3_LATENCY.toMillis(), VIRTUAL_THREADS ? "virtual" : "platform");
+        System.out.printf("%-24s %9s %7s %9s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<String, EndpointStats> entry : stats.entrySet()) {
+            Histogram latency = entry.getValue().latencyMicros;
+            Map<String, Double> row = new LinkedHashMap<>();
+            row.put("requests", (double) latency.getTotalCount());
+            row.put("errors", (double) entry.getValue().errors());
+            row.put("throughput", latency.getTotalCount() / seconds);
+            row.put("p50Millis", latency.getValueAtPercentile(50) / 1000.0);
+            row.put("p95Millis", latency.getValueAtPercentile(95) / 1000.0);
+            row.put("p99Millis", latency.getValueAtPercentile(99) / 1000.0);
+            row.put("p999Millis", latency.getValueAtPercentile(99.9) / 1000.0);
+            row.put("maxMillis", latency.getMaxValue() / 1000.0);
+            report.put(entry.getKey(), row);
+
+            System.out.printf("%-24s %9.0f %7.0f %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n", entry.getKey(),
+                    row.get("requests"), row.get("errors"), row.get("throughput"), row.get("p50Millis"),
+                    row.get("p95Millis"), row.get("p99Millis"), row.get("p999Millis"), row.get("maxMillis"));
+        }
+        return report;
+    }
+
+    private List<String> regressions(Map<String, EndpointStats> stats, Map<String, Map<String, Double>> report) throws Exception {
+        List<String> regressions = new ArrayList<>();
+
+        // 1. Errors and absolute bounds
+        String maxP99 = System.getProperty("load.max-p99");
+        for (Map.Entry<String, Map<String, Double>> entry : report.entrySet()) {
+            Map<String, Double> row = entry.getValue();
+            double attempts = row.get("requests") + row.get("errors");
+            if (attempts == 0) {
+                regressions.add(entry.getKey() + ": no requests completed");
+            } else if (row.get("errors") / attempts > MAX_ERROR_RATE) {
+                regressions.add(entry.getKey() + ": " + stats.get(entry.getKey()).failures);
+            }
+            if (maxP99 != null && row.get("p99Millis") > DurationStyle.detectAndParse(maxP99).toMillis()) {
+                regressions.add(String.format("%s: p99 %.1f ms over load.max-p99=%s", entry.getKey(), row.get("p99Millis"), maxP99));
+            }
+        }
+
+        // 2. Against an earlier run
+        String baselineDir = System.getProperty("load.baseline");
+        if (baselineDir == null || baselineDir.isBlank()) {
+            return regressions;
+        }
+        Path baselineFile = Path.of(baselineDir).resolve(REPORT.getFileName());
+        if (!Files.exists(baselineFile)) {
+            System.out.printf("No baseline at %s, nothing to compare%n", baselineFile.toAbsolutePath());
+            return regressions;
+        }
+        JsonNode baseline = new ObjectMapper().readTree(baselineFile.toFile()).get("endpoints");
+        System.out.printf("%n%-24s %14s %14s %14s %14s%n", "vs baseline", "p99 before", "p99 now", "req/s before", "req/s now");
+        for (Map.Entry<String, Map<String, Double>> entry : report.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            if (before == null) {
+                continue;
+            }
+            double p99Before = before.get("p99Millis").asDouble();
+            double throughputBefore = before.get("throughput").asDouble();
+            double p99Now = entry.getValue().get("p99Millis");
+            double throughputNow = entry.getValue().get("throughput");
+            System.out.printf("%-24s %14.1f %14.1f %14.1f %14.1f%n", entry.getKey(), p99Before, p99Now, throughputBefore, throughputNow);
+
+            if (p99Now > p99Before * (1 + TOLERANCE)) {
+                regressions.add(String.format("%s: p99 %.1f -> %.1f ms", entry.getKey(), p99Before, p99Now));
+            }
+            if (throughputNow < throughputBefore * (1 - TOLERANCE)) {
+                regressions.add(String.format("%s: throughput %.1f -> %.1f req/s", entry.getKey(), throughputBefore, throughputNow));
+            }
+        }
+        return regressions;
+    }
+
+    private HttpRequest createNote(String base, String token) {
+        return multipart(authorized(base + "/api/notes", token), "POST", "{\"title\":\"Load test note\",\"content\":\"Created by the mixed traffic load test\"}", IMAGE)
+                .build();
+    }
+
+    // Text-only update: the image stays as it is
+    private HttpRequest updateNote(String base, String token, long id) {
+        return multipart(authorized(base + "/api/notes/" + id, token), "PUT", "{\"title\":\"Load test note (edited)\",\"content\":\"Updated by the mixed traffic load test\"}", null)
+                .build();
+    }
+
+    private HttpRequest.Builder multipart(HttpRequest.Builder request, String method, String json, byte[] image) {
+        String boundary = "load-" + ThreadLocalRandom.current().nextLong(Long.MAX_VALUE);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.writeBytes(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"data\"\r\n"
+                + "Content-Type: application/json\r\n\r\n"
+                + json + "\r\n").getBytes(StandardCharsets.UTF_8));
+        if (image != null) {
+            body.writeBytes(("--" + boundary + "\r\n"
+                    + "Content-Disposition: form-data; name=\"file\"; filename=\"image.png\"\r\n"
+                    + "Content-Type: image/png\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            body.writeBytes(image);
+            body.writeBytes("\r\n".getBytes(StandardCharsets.UTF_8));
+        }
+        body.writeBytes(("--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        HttpRequest.BodyPublisher publisher = HttpRequest.BodyPublishers.ofByteArray(body.toByteArray());
+        return request.header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .method(method, publisher);
+    }
+
+    private HttpRequest.Builder authorized(String url, String token) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(30))
+                .header("Authorization", "Bearer " + token);
+    }
+
+    private static long noteId(String body) {
+        Matcher id = NOTE_ID.matcher(body);
+        assertThat(id.find()).as("note id in %s", body).isTrue();
+        return Long.parseLong(id.group(1));
+    }
+
+    private static Duration duration(String property, String defaultValue) {
+        return DurationStyle.detectAndParse(System.getProperty(property, defaultValue));
+    }
+}
@@ -0,0 +1,193 @@
+package com.salem.backend.benchmark;
+
+import com.salem.backend.support.LocalJwtIssuer;
+import com.salem.backend.support.LocalNotesApp;
+import com.salem.backend.support.S3StubServer;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Notes created/deleted per second through the single-note endpoints vs the batch endpoints,
+ * with the same number of concurrent clients, plus the JDBC statements each path needs per note.
+ * Run with: ./mvnw test -Pbenchmark
+ */
+@Tag("benchmark")
+class NoteBatchBenchmarkTest {
+
+    private static final int NOTES = 2_000;
+    private static final int BATCH_SIZE = 500;
+    private static final int CLIENTS = 8;
+    private static final int ROUNDS = 3; // The first round warms up the JIT and is not reported
+
+    private static final Pattern NOTE_ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+    private static final String NOTE_JSON = "{\"title\":\"Benchmark note\",\"content\":\"Created by the batch benchmark\"}";
+
+    private final HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    // One client call; returns the ids of the notes it created (if any)
+    private interface IndexedTask {
+        List<Long> run(int index) throws Exception;
+    }
+
+    @Test
+    void compareSingleAndBatchEndpoints() throws Exception {
+        try (S3StubServer s3 = S3StubServer.start(Duration.ZERO);
+             LocalJwtIssuer issuer = LocalJwtIssuer.start();
+             LocalNotesApp app = LocalNotesApp.builder(s3, issuer).start()) {
+
+            String base = app.baseUrl();
+            String token = issuer.tokenFor("batch-bench-user");
+            MeterRegistry registry = app.context().getBean(MeterRegistry.class);
+
+            double singleCreate = 0, batchCreate = 0, singleDelete = 0, batchDelete = 0;
+            double singleCreateStatements = 0, batchCreateStatements = 0, singleDeleteStatements = 0, batchDeleteStatements = 0;
+
+            for (int round = 0; round < ROUNDS; round++) {
+                registry.clear();
+
+                long start = System.nanoTime();
+                List<Long> singles = parallel(NOTES, note -> List.of(createOne(base, token)));
+                double singleCreateRate = rate(NOTES, start);
+
+                start = System.nanoTime();
+                List<Long> batched = parallel(NOTES / BATCH_SIZE, batch -> createBatch(base, token, BATCH_SIZE));
+                double batchCreateRate = rate(NOTES, start);
+
+                start = System.nanoTime();
+                parallel(NOTES, note -> deleteOne(base, token, singles.get(note)));
+                double singleDeleteRate = rate(NOTES, start);
+
+                start = System.nanoTime();
+                parallel(NOTES / BATCH_SIZE, batch ->
+                        deleteBatch(base, token, batched.subList(batch * BATCH_SIZE, (batch + 1) * BATCH_SIZE)));
+                double batchDeleteRate = rate(NOTES, start);
+
+                assertThat(singles).hasSize(NOTES);
+                assertThat(batched).hasSize(NOTES);
+
+                if (round > 0) {
+                    singleCreate += singleCreateRate / (ROUNDS - 1);
+                    batchCreate += batchCreateRate / (ROUNDS - 1);
+                    singleDelete += singleDeleteRate / (ROUNDS - 1);
+                    batchDelete += batchDeleteRate / (ROUNDS - 1);
+                    singleCreateStatements = statementsPerRequest(registry, "POST", "/api/notes");
+                    batchCreateStatements = statementsPerRequest(registry, "POST", "/api/notes/batch") / BATCH_SIZE;
+                    singleDeleteStatements = statementsPerRequest(registry, "DELETE", "/api/notes/{id}");
+                    batchDeleteStatements = statementsPerRequest(registry, "DELETE", "/api/notes/batch") / BATCH_SIZE;
+                }
+            }
+
+            System.out.printf("%n%d notes, %d clients, batches of %d (H2 in memory, so round trips are cheap here)%n",
+                    NOTES, CLIENTS, BATCH_SIZE);
+            System.out.printf("%-10s %16s %16s %8s %22s %22s%n",
+                    "operation", "single notes/s", "batch notes/s", "ratio", "single statements/note", "batch statements/note");
+            System.out.printf("%-10s %16.0f %16.0f %7.1fx %22.2f %22.3f%n", "create",
+                    singleCreate, batchCreate, batchCreate / singleCreate, singleCreateStatements, batchCreateStatements);
+            System.out.printf("%-10s %16.0f %16.0f %7.1fx %22.2f %22.3f%n", "delete",
+                    singleDelete, batchDelete, batchDelete / singleDelete, singleDeleteStatements, batchDeleteStatements);
+
+            assertThat(batchCreateStatements).isLessThan(singleCreateStatements);
+            assertThat(batchDeleteStatements).isLessThan(singleDeleteStatements);
+        }
+    }
+
+    // Runs 'count' tasks on CLIENTS concurrent clients; returns all ids the tasks reported
+    private List<Long> parallel(int count, IndexedTask task) throws Exception {
+        List<Long> ids = Collections.synchronizedList(new ArrayList<>());
+        try (ExecutorService clients = Executors.newFixedThreadPool(CLIENTS)) {
+            List<Future<List<Long>>> results = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                int index = i;
+                results.add(clients.submit(() -> task.run(index)));
+            }
+            for (Future<List<Long>> result : results) {
+                ids.addAll(result.get());
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    private Long createOne(String base, String token) throws Exception {
+        String boundary = "bench";
+        String body = "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"data\"\r\n"
+                + "Content-Type: application/json\r\n\r\n"
+                + NOTE_JSON + "\r\n"
+                + "--" + boundary + "--\r\n";
+        HttpResponse<String> response = send(authorized(base + "/api/notes", token)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build(), 201);
+        Matcher id = NOTE_ID.matcher(response.body());
+        assertThat(id.find()).isTrue();
+        return Long.valueOf(id.group(1));
+    }
+
+    private List<Long> createBatch(String base, String token, int size) throws Exception {
+        String notes = Collections.nCopies(size, NOTE_JSON).stream().collect(Collectors.joining(",", "{\"notes\":[", "]}"));
+        HttpResponse<String> response = send(authorized(base + "/api/notes/batch", token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(notes)).build(), 201);
+
+        List<Long> ids = new ArrayList<>();
+        Matcher id = NOTE_ID.matcher(response.body());
+        while (id.find()) {
+            ids.add(Long.valueOf(id.group(1)));
+        }
+        return ids;
+    }
+
+    private List<Long> deleteOne(String base, String token, Long id) throws Exception {
+        send(authorized(base + "/api/notes/" + id, token).DELETE().build(), 204);
+        return List.of();
+    }
+
+    private List<Long> deleteBatch(String base, String token, List<Long> ids) throws Exception {
+        String body = ids.stream().map(String::valueOf).collect(Collectors.joining(",", "{\"ids\":[", "]}"));
+        HttpResponse<String> response = send(authorized(base + "/api/notes/batch", token)
+                .header("Content-Type", "application/json")
+                .method("DELETE", HttpRequest.BodyPublishers.ofString(body)).build(), 200);
+        assertThat(response.body()).contains("\"notDeletedIds\":[]");
+        return List.of();
+    }
+
+    private HttpResponse<String> send(HttpRequest request, int expectedStatus) throws Exception {
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).as(response.body()).isEqualTo(expectedStatus);
+        return response;
+    }
+
+    private HttpRequest.Builder authorized(String url, String token) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(60))
+                .header("Authorization", "Bearer " + token);
+    }
+
+    private double rate(int notes, long startNanos) {
+        return notes / ((System.nanoTime() - startNanos) / 1e9);
+    }
+
+    private double statementsPerRequest(MeterRegistry registry, String method, String uri) {
+        DistributionSummary summary = registry.find("db.statements.per.request").tag("method", method).tag("uri", uri).summary();
+        assertThat(summary).as("statement count of %s %s", method, uri).isNotNull();
+        return summary.mean();
+    }
+}
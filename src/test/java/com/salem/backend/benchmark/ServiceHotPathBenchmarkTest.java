@@ -0,0 +1,222 @@
+package com.salem.backend.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.salem.backend.dto.CursorPageResponse;
+import com.salem.backend.dto.ErrorResponse;
+import com.salem.backend.dto.NoteResponse;
+import com.salem.backend.dto.NoteSummaryResponse;
+import com.salem.backend.entity.Note;
+import com.salem.backend.exception.BusinessException;
+import com.salem.backend.exception.GlobalExceptionHandler;
+import com.salem.backend.exception.enErrorCode;
+import com.salem.backend.mapper.NoteMapper;
+import com.salem.backend.mapper.NoteMapperImpl;
+import com.salem.backend.repository.NoteRepository;
+import com.salem.backend.repository.projection.NoteSummaryItem;
+import com.salem.backend.service.FileStorageService;
+import com.salem.backend.service.S3StorageBackend;
+import com.salem.backend.support.JmhRunner;
+import io.awspring.cloud.s3.InMemoryBufferingS3OutputStreamProvider;
+import io.awspring.cloud.s3.Jackson2JsonS3ObjectConverter;
+import io.awspring.cloud.s3.S3Template;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.context.support.ResourceBundleMessageSource;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * JMH: the CPU work every notes request does besides the database, measured in isolation.
+ * - mapping a note to its response (MapStruct), alone and with the signed image URL, as NoteService.mapToResponse does
+ * - FileStorageService.getFileUrl: URL from the cache vs. signing a new one (SigV4, no network)
+ * - JSON serialization of a listing page (Spring's Jackson setup) for the default and maximum page sizes
+ * - GlobalExceptionHandler rendering a BusinessException into the JSON error body, logging included
+ * The access log filter has its own benchmark (AccessLogBenchmarkTest).
+ * Everything runs offline. Run with: ./mvnw test -Pbenchmark -Dtest=ServiceHotPathBenchmarkTest
+ * Results: target/jmh/ServiceHotPathBenchmarkTest.json; compare against an earlier run with -Djmh.baseline={dir}.
+ */
+@Tag("benchmark")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceHotPathBenchmarkTest {
+
+    private static final String IMAGE_KEY = "42/6f1c2a9e-7d41-4a3b-9f0e-2c8d5b7a1e34.png";
+
+    private NoteMapper noteMapper;
+    private FileStorageService fileStorageService;
+    private GlobalExceptionHandler exceptionHandler;
+    private ObjectMapper objectMapper;
+    private S3Client s3Client;
+    private S3Presigner s3Presigner;
+
+    private Note note;
+    private NoteSummaryItem listItem;
+    private String signedUrl;
+
+    /**
+     * One listing page of the given size, already mapped, as the controller hands it to Jackson.
+     */
+    @State(Scope.Benchmark)
+    public static class ListingPage {
+
+        // 1 = single-note responses, 50 = app.notes.page.default-size, 200 = app.notes.page.max-size
+        @Param({"1", "50", "200"})
+        public int size;
+
+        CursorPageResponse<NoteSummaryResponse> page;
+
+        @Setup
+        public void setUp(ServiceHotPathBenchmarkTest benchmark) {
+            List<NoteSummaryResponse> items = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                items.add(benchmark.noteMapper.toSummaryResponse(benchmark.listItem, benchmark.signedUrl, Map.of()));
+            }
+            page = new CursorPageResponse<>(items, "MjAyNi0xMC0xOFQwODoxNzowMi4xMjM0NTZ8MTIzNDU");
+        }
+    }
+
+    @Test
+    void measureHotPaths() throws Exception {
+        Collection<RunResult> results = JmhRunner.run(ServiceHotPathBenchmarkTest.class);
+
+        System.out.printf("%n%-32s %12s %12s%n", "benchmark", "ns/op", "bytes/op");
+        double cachedUrl = 0, signUrl = 0;
+        for (RunResult result : results) {
+            String label = JmhRunner.label(result);
+            double nanos = result.getPrimaryResult().getScore();
+            System.out.printf("%-32s %12.0f %12.0f%n", label, nanos, JmhRunner.bytesPerOp(result));
+            if (label.equals("getFileUrlCached")) {
+                cachedUrl = nanos;
+            } else if (label.equals("getFileUrlSigned")) {
+                signUrl = nanos;
+            }
+        }
+
+        // 6 benchmarks, serializeListingPage once per page size
+        assertThat(results).hasSize(8);
+        assertThat(cachedUrl).isLessThan(signUrl);
+    }
+
+    @Setup
+    public void setUp() {
+        JmhRunner.discardLogOutput();
+        LocaleContextHolder.setDefaultLocale(Locale.ENGLISH);
+
+        noteMapper = new NoteMapperImpl();
+        objectMapper = Jackson2ObjectMapperBuilder.json().build(); // Same modules and features as the app's ObjectMapper
+
+        // Same S3 client setup as the app, against an endpoint that is never called: signing is local
+        StaticCredentialsProvider credentials = StaticCredentialsProvider.create(AwsBasicCredentials.create("local", "local"));
+        URI endpoint = URI.create("http://127.0.0.1:9000");
+        S3Configuration pathStyle = S3Configuration.builder().pathStyleAccessEnabled(true).build();
+        s3Client = S3Client.builder().region(Region.US_EAST_1).credentialsProvider(credentials)
+                .endpointOverride(endpoint).serviceConfiguration(pathStyle).build();
+        s3Presigner = S3Presigner.builder().region(Region.US_EAST_1).credentialsProvider(credentials)
+                .endpointOverride(endpoint).serviceConfiguration(pathStyle).build();
+        S3Template s3Template = new S3Template(s3Client, new InMemoryBufferingS3OutputStreamProvider(s3Client, null),
+                new Jackson2JsonS3ObjectConverter(objectMapper), s3Presigner);
+
+        S3StorageBackend storageBackend = new S3StorageBackend(s3Template, s3Client, null);
+        ReflectionTestUtils.setField(storageBackend, "bucketName", "notes-bucket");
+        fileStorageService = new FileStorageService(storageBackend, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(fileStorageService, "presignTtl", Duration.ofHours(1));
+        ReflectionTestUtils.setField(fileStorageService, "minRemainingValidity", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(fileStorageService, "urlCacheMaxSize", 50_000L);
+        ReflectionTestUtils.invokeMethod(fileStorageService, "initUrlCache");
+
+        ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
+        messageSource.setBasename("messages");
+        messageSource.setDefaultEncoding("UTF-8");
+        exceptionHandler = new GlobalExceptionHandler(messageSource, new SimpleMeterRegistry());
+
+        // A typical note: short title, a paragraph of text, an image
+        LocalDateTime created = LocalDateTime.of(2026, 10, 1, 9, 30, 15, 123_456_000);
+        String content = "Meeting notes: ".repeat(4) + "agreed to move the image uploads to streaming multipart, "
+                + "keep presigned URLs cached for most of their lifetime and page the listing by (updated_at, id). "
+                + "Follow-ups are tracked in the team board; numbers to be checked again after the next load test.";
+        note = Note.builder().id(12_345L).title("Weekly sync - storage & listing").content(content)
+                .imageKey(IMAGE_KEY).createdAt(created).updatedAt(created.plusHours(2)).build();
+        listItem = new NoteSummaryItem(note.getId(), note.getTitle(), content.substring(0, NoteRepository.EXCERPT_LENGTH), IMAGE_KEY, null,
+                note.getCreatedAt(), note.getUpdatedAt());
+        signedUrl = fileStorageService.getFileUrl(IMAGE_KEY);
+    }
+
+    @TearDown
+    public void tearDown() {
+        s3Presigner.close();
+        s3Client.close();
+    }
+
+    @Benchmark
+    public NoteResponse mapNote() {
+        return noteMapper.toResponse(note, signedUrl, Map.of());
+    }
+
+    // NoteService.mapToSummaryResponse in PRESIGNED mode with a warm URL cache (the common case of a listing)
+    @Benchmark
+    public NoteSummaryResponse mapListItemWithImageUrl() {
+        return noteMapper.toSummaryResponse(listItem, fileStorageService.getFileUrl(listItem.imageKey()), Map.of());
+    }
+
+    @Benchmark
+    public String getFileUrlCached() {
+        return fileStorageService.getFileUrl(IMAGE_KEY);
+    }
+
+    // Cache miss: what the first listing after a URL expired pays per image
+    @Benchmark
+    public String getFileUrlSigned() {
+        fileStorageService.evictFileUrl(IMAGE_KEY);
+        return fileStorageService.getFileUrl(IMAGE_KEY);
+    }
+
+    @Benchmark
+    public byte[] serializeListingPage(ListingPage listingPage) throws Exception {
+        return objectMapper.writeValueAsBytes(listingPage.page);
+    }
+
+    // The whole error path after the throw site: exception, handler (message lookup, log line with stack trace), JSON body
+    @Benchmark
+    public byte[] renderBusinessError() throws Exception {
+        ResponseEntity<ErrorResponse> response = exceptionHandler.handleBusiness(new BusinessException(enErrorCode.NOTE_NOT_FOUND));
+        return objectMapper.writeValueAsBytes(response.getBody());
+    }
+}
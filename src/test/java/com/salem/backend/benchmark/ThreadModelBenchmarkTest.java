@@ -0,0 +1,198 @@
+package com.salem.backend.benchmark;
+
+import com.salem.backend.support.LocalJwtIssuer;
+import com.salem.backend.support.LocalNotesApp;
+import com.salem.backend.support.S3StubServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Throughput of the NoteController endpoints with platform threads vs virtual threads.
+ * Boots the app twice against the same local stand-ins (S3 stub with a fixed latency per call, local JWT issuer,
+ * in-memory H2) and drives each endpoint with more concurrent clients than Tomcat has platform threads.
+ * Run with: ./mvnw test -Pbenchmark
+ */
+@Tag("benchmark")
+class ThreadModelBenchmarkTest {
+
+    private static final Duration S3_LATENCY = Duration.ofMillis(50);
+    private static final int TOMCAT_THREADS = 200;
+    private static final int CONCURRENCY = 400;
+    private static final int USERS = 20;
+    private static final int NOTES_PER_USER = 20;
+    private static final Duration WARMUP = Duration.ofSeconds(3);
+    private static final Duration MEASUREMENT = Duration.ofSeconds(10);
+
+    private static final Pattern NOTE_ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+    private static final byte[] IMAGE = new byte[32 * 1024];
+
+    // Clients run on platform threads, so they never take carrier threads away from the app in the virtual run
+    private final ExecutorService clientThreads = Executors.newCachedThreadPool();
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(clientThreads)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+
+    private interface Call {
+        HttpRequest next(int user);
+    }
+
+    @Test
+    void compareThroughputOfPlatformAndVirtualThreads() throws Exception {
+        try (S3StubServer s3 = S3StubServer.start(S3_LATENCY); LocalJwtIssuer issuer = LocalJwtIssuer.start()) {
+
+            Map<String, Double> platform = run(false, s3, issuer);
+            Map<String, Double> virtual = run(true, s3, issuer);
+
+            System.out.printf("%nThroughput with %d clients, %d Tomcat threads, %d ms per S3 call%n",
+                    CONCURRENCY, TOMCAT_THREADS, S3_LATENCY.toMillis());
+            System.out.printf("%-32s %14s %14s %8s%n", "endpoint", "platform req/s", "virtual req/s", "ratio");
+            for (String endpoint : platform.keySet()) {
+                double p = platform.get(endpoint);
+                double v = virtual.get(endpoint);
+                System.out.printf("%-32s %14.1f %14.1f %7.2fx%n", endpoint, p, v, v / p);
+            }
+
+            assertThat(platform.values()).allMatch(rate -> rate > 0);
+            assertThat(virtual.values()).allMatch(rate -> rate > 0);
+        }
+    }
+
+    private Map<String, Double> run(boolean virtualThreads, S3StubServer s3, LocalJwtIssuer issuer) throws Exception {
+        try (LocalNotesApp app = LocalNotesApp.builder(s3, issuer)
+                .with("spring.threads.virtual.enabled", virtualThreads)
+                .with("server.tomcat.threads.max", TOMCAT_THREADS)
+                .with("app.virtual-threads.pinning-threshold", "5ms")
+                .start()) {
+
+            String base = app.baseUrl();
+            List<String> tokens = new ArrayList<>();
+            List<List<Long>> noteIds = new ArrayList<>();
+            for (int user = 0; user < USERS; user++) {
+                tokens.add(issuer.tokenFor("bench-user-" + user));
+                noteIds.add(new ArrayList<>());
+            }
+
+            // Seed: every user gets notes with images (also warms up provisioning and the caches)
+            for (int user = 0; user < USERS; user++) {
+                for (int n = 0; n < NOTES_PER_USER; n++) {
+                    HttpResponse<String> created = http.send(createNote(base, tokens.get(user)), HttpResponse.BodyHandlers.ofString());
+                    assertThat(created.statusCode()).isEqualTo(201);
+                    Matcher id = NOTE_ID.matcher(created.body());
+                    assertThat(id.find()).isTrue();
+                    noteIds.get(user).add(Long.valueOf(id.group(1)));
+                }
+            }
+
+            Map<String, Call> calls = new LinkedHashMap<>();
+            calls.put("GET /api/notes", user -> authorized(base + "/api/notes?size=20", tokens.get(user)).GET().build());
+            calls.put("GET /api/notes/{id}/image", user ->
+                    authorized(base + "/api/notes/" + randomNote(noteIds.get(user)) + "/image", tokens.get(user)).GET().build());
+            calls.put("POST /api/notes (with image)", user -> createNote(base, tokens.get(user)));
+            calls.put("PUT /api/notes/{id}/image", user ->
+                    authorized(base + "/api/notes/" + randomNote(noteIds.get(user)) + "/image", tokens.get(user))
+                            .header("Content-Type", "image/png")
+                            .PUT(HttpRequest.BodyPublishers.ofByteArray(IMAGE)).build());
+
+            Map<String, Double> throughput = new LinkedHashMap<>();
+            for (Map.Entry<String, Call> call : calls.entrySet()) {
+                drive(call.getValue(), WARMUP);
+                throughput.put(call.getKey(), drive(call.getValue(), MEASUREMENT));
+            }
+
+            if (virtualThreads) {
+                MeterRegistry registry = app.context().getBean(MeterRegistry.class);
+                long pinned = registry.find("jvm.threads.virtual.pinned").timers().stream().mapToLong(Timer::count).sum();
+                System.out.printf("Pinned virtual-thread events over 5 ms during the virtual run: %d%n", pinned);
+            }
+            return throughput;
+        }
+    }
+
+    // Keeps CONCURRENCY clients busy for the given time; returns successful requests per second
+    private double drive(Call call, Duration duration) throws InterruptedException {
+        LongAdder ok = new LongAdder();
+        LongAdder failed = new LongAdder();
+        Map<String, Integer> failures = new ConcurrentHashMap<>();
+        long deadline = System.nanoTime() + duration.toNanos();
+
+        try (ExecutorService clients = Executors.newFixedThreadPool(CONCURRENCY)) {
+            for (int client = 0; client < CONCURRENCY; client++) {
+                int user = client % USERS;
+                clients.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        try {
+                            HttpResponse<Void> response = http.send(call.next(user), HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() < 400) {
+                                ok.increment();
+                            } else {
+                                failed.increment();
+                                failures.merge("HTTP " + response.statusCode(), 1, Integer::sum);
+                            }
+                        } catch (Exception e) {
+                            failed.increment();
+                            failures.merge(e.getClass().getSimpleName(), 1, Integer::sum);
+                        }
+                    }
+                });
+            }
+        }
+
+        assertThat(failed.sum()).as("failed requests %s", failures).isZero();
+        return ok.sum() / (duration.toMillis() / 1000.0);
+    }
+
+    private HttpRequest createNote(String base, String token) {
+        String boundary = "bench-" + ThreadLocalRandom.current().nextLong(Long.MAX_VALUE);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.writeBytes(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"data\"\r\n"
+                + "Content-Type: application/json\r\n\r\n"
+                + "{\"title\":\"Benchmark note\",\"content\":\"Created by the thread model benchmark\"}\r\n"
+                + "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"image.png\"\r\n"
+                + "Content-Type: image/png\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(IMAGE);
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        return authorized(base + "/api/notes", token)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+    }
+
+    private HttpRequest.Builder authorized(String url, String token) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(30))
+                .header("Authorization", "Bearer " + token);
+    }
+
+    private long randomNote(List<Long> ids) {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+}
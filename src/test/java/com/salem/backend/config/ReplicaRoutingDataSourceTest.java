@@ -0,0 +1,100 @@
+package com.salem.backend.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Routing against two local (H2 in-memory) databases, each of which names itself in a one-row table.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ReplicaRoutingDataSource underTest;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    private static DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1", "sa", "sa");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE IF NOT EXISTS whoami (name VARCHAR(20))");
+        jdbc.execute("DELETE FROM whoami");
+        jdbc.update("INSERT INTO whoami VALUES (?)", name);
+        return dataSource;
+    }
+
+    @BeforeEach
+    void setUp() {
+        underTest = new ReplicaRoutingDataSource(database("primary"), List.of(database("replica")), Duration.ofMinutes(1),
+                meterRegistry);
+        jdbc = new JdbcTemplate(underTest);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(underTest);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private String database(TransactionTemplate transaction) {
+        return transaction.execute(status -> jdbc.queryForObject("SELECT name FROM whoami", String.class));
+    }
+
+    // ========================================================================
+    // TEST 1: Read-only transactions go to the replica, everything else to the primary
+    // ========================================================================
+
+    @Test
+    void getConnection_ShouldRouteByTheTransactionsReadOnlyFlag() {
+
+        // --------- (Act & Assert) ------------
+
+        assertThat(database(readOnly)).isEqualTo("replica");
+        assertThat(database(readWrite)).isEqualTo("primary");
+        assertThat(jdbc.queryForObject("SELECT name FROM whoami", String.class)).isEqualTo("primary"); // No transaction
+        assertThat(meterRegistry.get("datasource.reads").tag("route", "replica").counter().count()).isEqualTo(1);
+    }
+
+    // ========================================================================
+    // TEST 2: After a write, only the writer reads from the primary (read-your-writes)
+    // ========================================================================
+
+    @Test
+    void getConnection_AfterUsersWrite_ShouldKeepOnlyThatUserOnThePrimary() {
+
+        // ------------ (Arrange & Given) -------------
+
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("kc-alice", null, "USER"));
+        assertThat(database(readOnly)).isEqualTo("replica");
+
+        // --------- (Act) ------------
+
+        readWrite.executeWithoutResult(status -> jdbc.update("UPDATE whoami SET name = name"));
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(database(readOnly)).isEqualTo("primary");
+
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("kc-bob", null, "USER"));
+        assertThat(database(readOnly)).isEqualTo("replica");
+        assertThat(meterRegistry.get("datasource.reads").tag("route", "primary.sticky").counter().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,219 @@
+package com.salem.backend.controller;
+
+import com.salem.backend.exception.GlobalExceptionHandler;
+import com.salem.backend.service.LocalDiskStorageBackend;
+import com.salem.backend.support.LocalJwtIssuer;
+import com.salem.backend.support.LocalNotesApp;
+import com.salem.backend.support.S3StubServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.support.ResourceBundleMessageSource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * GET /api/files/** on the local storage backend: through standalone MockMvc for each way the file is sent
+ * (Tomcat sendfile, or FileChannel.transferTo when the container offers no sendfile), and over HTTP on the real app.
+ */
+class FileControllerTest {
+
+    private static final String KEY = "user-1/6f1c2a9e-7d41-4a3b-9f0e-2c8d5b7a1e34.png";
+    private static final String URL_SECRET = "0123456789abcdef0123456789abcdef";
+    private static final byte[] FILE = randomBytes(64 * 1024);
+
+    @TempDir
+    Path root;
+
+    private LocalDiskStorageBackend storage;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        storage = new LocalDiskStorageBackend();
+        ReflectionTestUtils.setField(storage, "configuredRoot", root);
+        ReflectionTestUtils.setField(storage, "fsyncPolicy", LocalDiskStorageBackend.FsyncPolicy.NONE);
+        ReflectionTestUtils.setField(storage, "publicUrl", "http://localhost:8080");
+        ReflectionTestUtils.setField(storage, "urlSecret", URL_SECRET);
+        ReflectionTestUtils.invokeMethod(storage, "init"); // @PostConstruct
+        storage.putStream(KEY, "image/png", new ByteArrayInputStream(FILE), FILE.length);
+
+        ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
+        messageSource.setBasename("messages");
+        messageSource.setDefaultEncoding("UTF-8");
+        mockMvc = MockMvcBuilders.standaloneSetup(new FileController(storage))
+                .setControllerAdvice(new GlobalExceptionHandler(messageSource, new SimpleMeterRegistry()))
+                .build();
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    // The path and query of a signed URL, with the signature replaced when one is given
+    private static String pathAndQuery(String signedUrl, String signature) {
+        UriComponentsBuilder url = UriComponentsBuilder.fromUriString(signedUrl).scheme(null).host(null).port(-1);
+        if (signature != null) {
+            url.replaceQueryParam("signature", signature);
+        }
+        return url.build(true).toUriString();
+    }
+
+    private static String tampered(String signedUrl) {
+        String signature = UriComponentsBuilder.fromUriString(signedUrl).build().getQueryParams().getFirst("signature");
+        return (signature.charAt(0) == 'A' ? "B" : "A") + signature.substring(1);
+    }
+
+    // ========================================================================
+    // TEST 1: Without sendfile the file is copied with transferTo: 200, the exact bytes and the download headers
+    // ========================================================================
+
+    @Test
+    void getFile_WithoutSendfile_ShouldWriteTheFileWithItsHeaders() throws Exception {
+
+        // --------- (Act) ------------
+
+        MockHttpServletResponse response = mockMvc
+                .perform(get(URI.create(pathAndQuery(storage.signGetUrl(KEY, Duration.ofHours(1)), null))))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse();
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(response.getContentType()).isEqualTo("image/png");
+        assertThat(response.getContentLengthLong()).isEqualTo(FILE.length);
+        assertThat(response.getHeader(HttpHeaders.CACHE_CONTROL)).matches("max-age=3[56]\\d\\d, private");
+        assertThat(response.getHeader("X-Content-Type-Options")).isEqualTo("nosniff");
+        assertThat(response.getHeader("Content-Security-Policy")).isEqualTo("sandbox");
+        assertThat(response.getContentAsByteArray()).isEqualTo(FILE);
+    }
+
+    // ========================================================================
+    // TEST 2: When the container supports sendfile the controller only names the file and its range, and writes nothing
+    // ========================================================================
+
+    @Test
+    void getFile_WithSendfile_ShouldHandTheFileToTheContainer() throws Exception {
+
+        // --------- (Act) ------------
+
+        MvcResult result = mockMvc
+                .perform(get(URI.create(pathAndQuery(storage.signGetUrl(KEY, Duration.ofHours(1)), null)))
+                        .requestAttr("org.apache.tomcat.sendfile.support", Boolean.TRUE))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // --------- (Assert & Verify) ------------
+
+        MockHttpServletRequest request = result.getRequest();
+        assertThat(request.getAttribute("org.apache.tomcat.sendfile.filename"))
+                .isEqualTo(root.toRealPath().resolve(KEY).toString());
+        assertThat(request.getAttribute("org.apache.tomcat.sendfile.start")).isEqualTo(0L);
+        assertThat(request.getAttribute("org.apache.tomcat.sendfile.end")).isEqualTo((long) FILE.length);
+        assertThat(result.getResponse().getContentLengthLong()).isEqualTo(FILE.length);
+        assertThat(result.getResponse().getContentAsByteArray()).isEmpty();
+    }
+
+    // ========================================================================
+    // TEST 3: A tampered signature, an expired link, a key outside the pattern and a missing file are refused
+    // ========================================================================
+
+    @Test
+    void getFile_WhenLinkIsNotValid_ShouldRefuseIt() throws Exception {
+
+        // ------------ (Arrange & Given) -------------
+
+        String valid = storage.signGetUrl(KEY, Duration.ofHours(1));
+        UriComponents signed = UriComponentsBuilder.fromUriString(valid).build();
+
+        // --------- (Act & Assert) ------------
+
+        mockMvc.perform(get(URI.create(pathAndQuery(valid, tampered(valid)))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code").value("FILE_LINK_INVALID"));
+        mockMvc.perform(get(URI.create(pathAndQuery(storage.signGetUrl(KEY, Duration.ofSeconds(-10)), null))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code").value("FILE_LINK_INVALID"));
+        // Same expires and signature, on a file name the key pattern does not allow
+        mockMvc.perform(get("/api/files/user-1/{fileName}", "photo.tar.gz")
+                        .param("expires", signed.getQueryParams().getFirst("expires"))
+                        .param("signature", signed.getQueryParams().getFirst("signature")))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code").value("FILE_LINK_INVALID"));
+        // A correctly signed link to a file that is gone
+        mockMvc.perform(get(URI.create(pathAndQuery(storage.signGetUrl("user-1/deleted.png", Duration.ofHours(1)), null))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code").value("FILE_NOT_FOUND"));
+    }
+
+    // ========================================================================
+    // TEST 4: Over HTTP on the real app (Tomcat, sendfile on): the signed URL downloads the file, tampered or expired ones do not
+    // ========================================================================
+
+    @Test
+    void getFile_OverHttp_ShouldServeOnlyValidSignedUrls() throws Exception {
+        HttpClient http = HttpClient.newHttpClient();
+        try (S3StubServer s3 = S3StubServer.start(Duration.ZERO);
+             LocalJwtIssuer issuer = LocalJwtIssuer.start();
+             LocalNotesApp app = LocalNotesApp.builder(s3, issuer)
+                     .with("app.storage.backend", "local")
+                     .with("app.storage.local.root", root.resolve("app"))
+                     .with("app.storage.local.url-secret", URL_SECRET)
+                     .start()) {
+
+            // ------------ (Arrange & Given) -------------
+
+            LocalDiskStorageBackend appStorage = app.context().getBean(LocalDiskStorageBackend.class);
+            appStorage.putStream(KEY, "image/png", new ByteArrayInputStream(FILE), FILE.length);
+            String valid = appStorage.signGetUrl(KEY, Duration.ofHours(1));
+            String expired = appStorage.signGetUrl(KEY, Duration.ofSeconds(-10));
+
+            // --------- (Act) ------------
+
+            HttpResponse<byte[]> downloaded = http.send(HttpRequest.newBuilder(
+                    URI.create(app.baseUrl() + pathAndQuery(valid, null))).build(), HttpResponse.BodyHandlers.ofByteArray());
+            HttpResponse<String> forged = http.send(HttpRequest.newBuilder(
+                    URI.create(app.baseUrl() + pathAndQuery(valid, tampered(valid)))).build(), HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> late = http.send(HttpRequest.newBuilder(
+                    URI.create(app.baseUrl() + pathAndQuery(expired, null))).build(), HttpResponse.BodyHandlers.ofString());
+
+            // --------- (Assert & Verify) ------------
+
+            assertThat(downloaded.statusCode()).isEqualTo(200);
+            assertThat(downloaded.headers().firstValue(HttpHeaders.CONTENT_TYPE)).hasValue("image/png");
+            assertThat(downloaded.headers().firstValueAsLong(HttpHeaders.CONTENT_LENGTH)).hasValue(FILE.length);
+            assertThat(downloaded.headers().firstValue("X-Content-Type-Options")).hasValue("nosniff");
+            assertThat(downloaded.body()).isEqualTo(FILE);
+
+            assertThat(forged.statusCode()).isEqualTo(400);
+            assertThat(forged.body()).contains("FILE_LINK_INVALID");
+            assertThat(late.statusCode()).isEqualTo(400);
+            assertThat(late.body()).contains("FILE_LINK_INVALID");
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package com.salem.backend.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.salem.backend.dto.NoteResponse;
+import com.salem.backend.exception.GlobalExceptionHandler;
+import com.salem.backend.service.ContentProxyService;
+import com.salem.backend.service.FileStorageService;
+import com.salem.backend.service.NoteExportLimiter;
+import com.salem.backend.service.NoteService;
+import com.salem.backend.service.ObjectMetadata;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.support.ResourceBundleMessageSource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willReturn;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * GET /api/notes/export and GET /api/notes/{id}/content through Spring MVC (standalone MockMvc, no server).
+ * Export: NDJSON framing, gzip negotiation and the cap on concurrent exports. Content: byte ranges, If-Range,
+ * revalidation and the cap on proxied streams, on a real ContentProxyService whose stat() is stubbed.
+ */
+@ExtendWith(MockitoExtension.class)
+class NoteControllerTest {
+
+    private static final String EXPORT = "/api/notes/export";
+    private static final String CONTENT = "/api/notes/7/content";
+    private static final String IMAGE_KEY = "kc-1/photo.png";
+    private static final String ETAG = "\"5d41402abc4b2a76b9719d911017c592\"";
+    private static final Instant LAST_MODIFIED = Instant.parse("2026-01-12T03:04:05Z");
+    private static final byte[] FILE = file();
+
+    @Mock
+    private NoteService noteService;
+
+    @Mock
+    private FileStorageService fileStorageService;
+
+    private ContentProxyService contentProxyService;
+    private NoteExportLimiter noteExportLimiter;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        noteExportLimiter = new NoteExportLimiter(meterRegistry);
+        ReflectionTestUtils.setField(noteExportLimiter, "maxConcurrent", 1);
+        ReflectionTestUtils.invokeMethod(noteExportLimiter, "init"); // @PostConstruct
+
+        ContentProxyService proxy = new ContentProxyService(fileStorageService, meterRegistry);
+        ReflectionTestUtils.setField(proxy, "maxStreams", 1);
+        ReflectionTestUtils.setField(proxy, "bufferSize", DataSize.ofBytes(16));
+        ReflectionTestUtils.setField(proxy, "acquireTimeout", Duration.ofMillis(10));
+        ReflectionTestUtils.invokeMethod(proxy, "init"); // @PostConstruct
+        contentProxyService = spy(proxy);
+
+        ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
+        messageSource.setBasename("messages");
+        messageSource.setDefaultEncoding("UTF-8");
+
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        NoteController controller = new NoteController(noteService, contentProxyService, noteExportLimiter, objectMapper);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .setControllerAdvice(new GlobalExceptionHandler(messageSource, meterRegistry))
+                .build();
+    }
+
+    private void givenNotes(NoteResponse... notes) {
+        willAnswer(invocation -> {
+            Consumer<NoteResponse> sink = invocation.getArgument(0);
+            for (NoteResponse note : notes) {
+                sink.accept(note);
+            }
+            return null;
+        }).given(noteService).exportNotes(any());
+    }
+
+    private static NoteResponse note(long id, String title, String content) {
+        LocalDateTime at = LocalDateTime.of(2026, 1, 2, 3, 4, 5);
+        return new NoteResponse(id, title, content, null, Map.of(), at, at);
+    }
+
+    private MockHttpServletResponse export(String acceptEncoding) throws Exception {
+        MvcResult started = mockMvc.perform(acceptEncoding == null
+                        ? get(EXPORT)
+                        : get(EXPORT).header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse();
+    }
+
+    private void givenStoredImage() {
+        given(noteService.getNoteImageKey(7L, null)).willReturn(IMAGE_KEY);
+        willReturn(new ObjectMetadata(FILE.length, ETAG, LAST_MODIFIED, "image/png")).given(contentProxyService).stat(IMAGE_KEY);
+        lenient().when(fileStorageService.openFile(eq(IMAGE_KEY), anyLong(), anyLong())).thenAnswer(invocation ->
+                new ByteArrayInputStream(FILE, invocation.<Long>getArgument(1).intValue(), invocation.<Long>getArgument(2).intValue()));
+    }
+
+    private static byte[] file() {
+        byte[] file = new byte[100];
+        for (int i = 0; i < file.length; i++) {
+            file[i] = (byte) i;
+        }
+        return file;
+    }
+
+    private static String httpDate(Instant instant) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(instant.atZone(ZoneOffset.UTC));
+    }
+
+    // ========================================================================
+    // TEST 1: Without gzip, every note is one JSON line (a newline inside a note stays escaped)
+    // ========================================================================
+
+    @Test
+    void exportNotes_WithoutGzip_ShouldWriteOneJsonObjectPerLine() throws Exception {
+
+        // ------------ (Arrange & Given) -------------
+
+        givenNotes(note(2, "Second", "two\nlines"), note(1, "First", "one"));
+
+        // --------- (Act) ------------
+
+        MockHttpServletResponse response = export(null);
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(response.getContentType()).startsWith(MediaType.APPLICATION_NDJSON_VALUE);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(response.getHeader(HttpHeaders.VARY)).isEqualTo(HttpHeaders.ACCEPT_ENCODING);
+
+        String body = response.getContentAsString(StandardCharsets.UTF_8);
+        assertThat(body).endsWith("\n");
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).startsWith("{\"id\":2,\"title\":\"Second\",\"content\":\"two\\nlines\"");
+        assertThat(lines[1]).startsWith("{\"id\":1,\"title\":\"First\"");
+    }
+
+    // ========================================================================
+    // TEST 2: gzip only when Accept-Encoding allows it; the compressed body is the same NDJSON
+    // ========================================================================
+
+    @Test
+    void exportNotes_ShouldNegotiateGzipFromAcceptEncoding() throws Exception {
+
+        // ------------ (Arrange & Given) -------------
+
+        givenNotes(note(1, "First", "one"));
+        String plain = export(null).getContentAsString(StandardCharsets.UTF_8);
+
+        // --------- (Act) ------------
+
+        MockHttpServletResponse compressed = export("deflate, gzip;q=0.8");
+        MockHttpServletResponse refused = export("gzip;q=0, deflate");
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(compressed.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.getContentAsByteArray()))) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(plain);
+        }
+
+        assertThat(refused.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(refused.getContentAsString(StandardCharsets.UTF_8)).isEqualTo(plain);
+    }
+
+    // ========================================================================
+    // TEST 3: Past max-concurrent exports the request gets 503 with Retry-After; finished exports free their slot
+    // ========================================================================
+
+    @Test
+    void exportNotes_WhenAllExportSlotsAreTaken_ShouldAnswer503() throws Exception {
+
+        // ------------ (Arrange & Given) -------------
+
+        NoteExportLimiter.Slot running = noteExportLimiter.tryAcquire();
+
+        // --------- (Act & Assert) ------------
+
+        mockMvc.perform(get(EXPORT))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                .andExpect(jsonPath("$.code").value("EXPORTS_BUSY"));
+
+        running.close();
+        givenNotes(note(1, "First", "one"));
+        export(null);
+
+        NoteExportLimiter.Slot next = noteExportLimiter.tryAcquire();
+        assertThat(next).isNotNull(); // The completed export gave its slot back
+        next.close();
+    }
+
+    // ========================================================================
+    // TEST 4: One byte range is answered 206 with Content-Range and exactly those bytes
+    // ========================================================================
+
+    @Test
+    void getNoteContent_WithOneRange_ShouldAnswer206WithThatRange() throws Exception {
+
+        // ------------ (Arrange & Given) -------------
+
+        givenStoredImage();
+
+        // --------- (Act) ------------
+
+        MockHttpServletResponse response = mockMvc.perform(get(CONTENT).header(HttpHeaders.RANGE, "bytes=10-39"))
+                .andExpect(status().isPartialContent())
+                .andReturn()
+                .getResponse();
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 10-39/100");
+        assertThat(response.getContentLengthLong()).isEqualTo(30);
+        assertThat(response.getHeader(HttpHeaders.ACCEPT_RANGES)).isEqualTo("bytes");
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo(ETAG);
+        assertThat(response.getContentType()).isEqualTo("image/png");
+        assertThat(response.getContentAsByteArray()).isEqualTo(Arrays.copyOfRange(FILE, 10, 40));
+    }
+
+    // ========================================================================
+    // TEST 5: A range that starts past the end is answered 416 with "bytes */size" and no body
+    // ========================================================================
+
+    @Test
+    void getNoteContent_WhenRangeStartsPastTheEnd_ShouldAnswer416() throws Exception {
+
+        // ------------ (Arrange & Given) -------------
+
+        givenStoredImage();
+
+        // --------- (Act) ------------
+
+        MockHttpServletResponse response = mockMvc.perform(get(CONTENT).header(HttpHeaders.RANGE, "bytes=100-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andReturn()
+                .getResponse();
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes */100");
+        assertThat(response.getContentAsByteArray()).isEmpty();
+        verify(fileStorageService, never()).openFile(any(), anyLong(), anyLong());
+    }
+
+    // ========================================================================
+    // TEST 6: Several ranges or a malformed Range header are ignored: 200 with the whole file
+    // ========================================================================
+
+    @Test
+    void getNoteContent_WithMultipleOrMalformedRanges_ShouldAnswer200WithTheWholeFile() throws Exception {
+
+        // ------------ (Arrange & Given) -------------
+
+        givenStoredImage();
+
+        for (String range : new String[] {"bytes=0-9,20-29", "bytes=abc", "pages=1-2"}) {
+
+            // --------- (Act) ------------
+
+            MockHttpServletResponse response = mockMvc.perform(get(CONTENT).header(HttpHeaders.RANGE, range))
+                    .andExpect(status().isOk())
+                    .andReturn()
+                    .getResponse();
+
+            // --------- (Assert & Verify) ------------
+
+            assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).as(range).isNull();
+            assertThat(response.getContentLengthLong()).as(range).isEqualTo(100);
+            assertThat(response.getContentAsByteArray()).as(range).isEqualTo(FILE);
+        }
+    }
+
+    // ========================================================================
+    // TEST 7: If-Range keeps the range only while its ETag or date still names the stored copy
+    // ========================================================================
+
+    @Test
+    void getNoteContent_WithIfRange_ShouldHonourTheRangeOnlyForTheCurrentCopy() throws Exception {
+
+        // ------------ (Arrange & Given) -------------
+
+        givenStoredImage();
+
+        // --------- (Act & Assert) ------------
+
+        mockMvc.perform(get(CONTENT).header(HttpHeaders.RANGE, "bytes=0-9").header(HttpHeaders.IF_RANGE, ETAG))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 0-9/100"));
+        mockMvc.perform(get(CONTENT).header(HttpHeaders.RANGE, "bytes=0-9").header(HttpHeaders.IF_RANGE, "\"stale\""))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 100));
+
+        mockMvc.perform(get(CONTENT).header(HttpHeaders.RANGE, "bytes=0-9")
+                        .header(HttpHeaders.IF_RANGE, httpDate(LAST_MODIFIED)))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 0-9/100"));
+        mockMvc.perform(get(CONTENT).header(HttpHeaders.RANGE, "bytes=0-9")
+                        .header(HttpHeaders.IF_RANGE, httpDate(LAST_MODIFIED.minusSeconds(60))))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE));
+    }
+
+    // ========================================================================
+    // TEST 8: If-None-Match with the current ETag is answered 304 without reading the file
+    // ========================================================================
+
+    @Test
+    void getNoteContent_WhenClientCopyIsCurrent_ShouldAnswer304() throws Exception {
+
+        // ------------ (Arrange & Given) -------------
+
+        givenStoredImage();
+
+        // --------- (Act) ------------
+
+        MockHttpServletResponse response = mockMvc.perform(get(CONTENT).header(HttpHeaders.IF_NONE_MATCH, ETAG))
+                .andExpect(status().isNotModified())
+                .andReturn()
+                .getResponse();
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo(ETAG);
+        assertThat(response.getHeader(HttpHeaders.CACHE_CONTROL)).isEqualTo("no-cache, private");
+        assertThat(response.getContentAsByteArray()).isEmpty();
+        verify(fileStorageService, never()).openFile(any(), anyLong(), anyLong());
+    }
+
+    // ========================================================================
+    // TEST 9: With every proxied stream busy the request gets 503 with Retry-After and no body
+    // ========================================================================
+
+    @Test
+    void getNoteContent_WhenAllStreamsAreBusy_ShouldAnswer503() throws Exception {
+
+        // ------------ (Arrange & Given) -------------
+
+        givenStoredImage();
+        ContentProxyService.Slot running = contentProxyService.tryAcquire();
+
+        // --------- (Act) ------------
+
+        MockHttpServletResponse response;
+        try {
+            response = mockMvc.perform(get(CONTENT).header(HttpHeaders.RANGE, "bytes=0-9"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andReturn()
+                    .getResponse();
+        } finally {
+            running.close();
+        }
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(response.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isNull();
+        assertThat(response.getContentAsByteArray()).isEmpty();
+        verify(fileStorageService, never()).openFile(any(), anyLong(), anyLong());
+    }
+}
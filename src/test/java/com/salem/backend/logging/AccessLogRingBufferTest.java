@@ -0,0 +1,97 @@
+package com.salem.backend.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccessLogRingBufferTest {
+
+    // ========================================================================
+    // TEST 1: A full buffer refuses new records instead of overwriting queued ones
+    // ========================================================================
+
+    @Test
+    void claim_WhenBufferIsFull_ShouldFailUntilTheConsumerFreesASlot() {
+
+        // ------------ (Arrange & Given) -------------
+
+        AccessLogRingBuffer buffer = new AccessLogRingBuffer(4);
+        for (int i = 0; i < 4; i++) {
+            long index = buffer.claim();
+            buffer.get(index).uri = "/" + i;
+            buffer.publish(index);
+        }
+
+        // --------- (Act) ------------
+
+        long whenFull = buffer.claim();
+        List<String> first = new ArrayList<>();
+        buffer.drain(event -> first.add(event.uri), 1);
+        long afterDrain = buffer.claim();
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(whenFull).isEqualTo(-1);
+        assertThat(first).containsExactly("/0");
+        assertThat(afterDrain).isEqualTo(4);
+    }
+
+    // ========================================================================
+    // TEST 2: Concurrent producers, one consumer: every record arrives exactly once
+    // ========================================================================
+
+    @Test
+    void drain_WithConcurrentProducers_ShouldDeliverEveryPublishedRecordOnce() throws Exception {
+
+        // ------------ (Arrange & Given) -------------
+
+        int producers = 4;
+        int perProducer = 10_000;
+        AccessLogRingBuffer buffer = new AccessLogRingBuffer(64);
+        Set<String> received = new HashSet<>();
+        CountDownLatch start = new CountDownLatch(1);
+
+        // --------- (Act) ------------
+
+        List<Future<?>> running = new ArrayList<>();
+        try (ExecutorService pool = Executors.newFixedThreadPool(producers)) {
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                running.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perProducer; i++) {
+                        long index;
+                        while ((index = buffer.claim()) < 0) {
+                            Thread.yield(); // Full: let the consumer catch up
+                        }
+                        buffer.get(index).uri = producer + "/" + i;
+                        buffer.publish(index);
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            while (received.size() < producers * perProducer) {
+                buffer.drain(event -> assertThat(received.add(event.uri)).isTrue(), 100);
+            }
+            for (Future<?> producer : running) {
+                producer.get();
+            }
+        }
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(received).hasSize(producers * perProducer);
+        assertThat(buffer.size()).isZero();
+    }
+}
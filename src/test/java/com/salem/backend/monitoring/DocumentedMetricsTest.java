@@ -0,0 +1,197 @@
+package com.salem.backend.monitoring;
+
+import com.salem.backend.exception.BusinessException;
+import com.salem.backend.exception.GlobalExceptionHandler;
+import com.salem.backend.exception.ServiceBusyException;
+import com.salem.backend.exception.enErrorCode;
+import com.salem.backend.service.FileStorageService;
+import com.salem.backend.service.StorageBackend;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.CountAtBucket;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsProperties;
+import org.springframework.boot.actuate.autoconfigure.metrics.PropertiesMeterFilter;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.context.support.ResourceBundleMessageSource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+
+/**
+ * The storage and error meters of docs/metrics.md, as a SimpleMeterRegistry sees them after real calls.
+ * The registry gets the management.metrics.* filter of the production application.properties
+ * (read from src/main/resources, the test application.properties would shadow it), so the SLO buckets are the shipped ones.
+ */
+@ExtendWith(MockitoExtension.class)
+class DocumentedMetricsTest {
+
+    // The documented tag values; anything else (an object key, a user id) would be a cardinality leak
+    private static final Set<String> STORAGE_OPERATIONS = Set.of(
+            "upload", "upload.stream", "upload.derivative", "presign", "stat", "open", "delete", "delete.batch");
+    private static final Set<String> STORAGE_OUTCOMES = Set.of("success", "failure", "partial");
+
+    @Mock
+    private StorageBackend storageBackend;
+
+    private SimpleMeterRegistry meterRegistry;
+    private FileStorageService fileStorageService;
+    private GlobalExceptionHandler exceptionHandler;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        meterRegistry = new SimpleMeterRegistry();
+        meterRegistry.config().meterFilter(new PropertiesMeterFilter(productionMetricsProperties()));
+
+        fileStorageService = new FileStorageService(storageBackend, meterRegistry);
+        ReflectionTestUtils.setField(fileStorageService, "maxObjectSize", DataSize.ofMegabytes(100));
+        ReflectionTestUtils.setField(fileStorageService, "presignTtl", Duration.ofHours(1));
+        ReflectionTestUtils.setField(fileStorageService, "minRemainingValidity", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(fileStorageService, "urlCacheMaxSize", 100L);
+        ReflectionTestUtils.invokeMethod(fileStorageService, "initUrlCache"); // @PostConstruct
+
+        ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
+        messageSource.setBasename("messages");
+        messageSource.setDefaultEncoding("UTF-8");
+        exceptionHandler = new GlobalExceptionHandler(messageSource, meterRegistry);
+    }
+
+    private static MetricsProperties productionMetricsProperties() throws Exception {
+        Properties properties = PropertiesLoaderUtils.loadProperties(new FileSystemResource("src/main/resources/application.properties"));
+        return new Binder(new MapConfigurationPropertySource(properties))
+                .bindOrCreate("management.metrics", MetricsProperties.class);
+    }
+
+    private Timer storageTimer(String operation, String outcome) {
+        return meterRegistry.get("storage.operation").tag("operation", operation).tag("outcome", outcome).timer();
+    }
+
+    // ========================================================================
+    // TEST 1: Upload, presign and deletes are timed by operation and outcome, with the configured SLO buckets
+    // ========================================================================
+
+    @Test
+    void storageCalls_ShouldRecordDocumentedTimersAndSizes() {
+
+        // ------------ (Arrange & Given) -------------
+
+        MockMultipartFile image = new MockMultipartFile("file", "photo.png", "image/png", new byte[300 * 1024]);
+        given(storageBackend.putStream(any(), eq("image/png"), any(), anyLong())).willReturn(6L * 1024 * 1024);
+        given(storageBackend.signGetUrl(any(), any())).willReturn("https://s3/signed");
+        willAnswer(invocation -> {
+            if (invocation.<String>getArgument(0).equals("kc-1/broken.png")) {
+                throw new IllegalStateException("connection reset");
+            }
+            return null;
+        }).given(storageBackend).delete(any());
+        given(storageBackend.maxKeysPerDelete()).willReturn(1000);
+        given(storageBackend.deleteAll(List.of("kc-1/a.png", "kc-1/b.png"))).willReturn(Map.of("kc-1/b.png", "AccessDenied"));
+
+        // --------- (Act) ------------
+
+        String key = fileStorageService.uploadFile(image, "kc-1");
+        fileStorageService.uploadStream(new ByteArrayInputStream(new byte[0]), "image/png", -1, "kc-1");
+        fileStorageService.getFileUrl(key);
+        fileStorageService.getFileUrl(key); // Cache hit: not timed as a presign
+        fileStorageService.deleteFile(key);
+        fileStorageService.deleteFile("kc-1/broken.png");
+        fileStorageService.deleteFiles(List.of("kc-1/a.png", "kc-1/b.png"));
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(storageTimer("upload", "success").count()).isEqualTo(1);
+        assertThat(storageTimer("upload.stream", "success").count()).isEqualTo(1);
+        assertThat(storageTimer("presign", "success").count()).isEqualTo(1);
+        assertThat(storageTimer("delete", "success").count()).isEqualTo(1);
+        assertThat(storageTimer("delete", "failure").count()).isEqualTo(1);
+        assertThat(storageTimer("delete.batch", "partial").count()).isEqualTo(1);
+
+        // management.metrics.distribution.slo.storage.operation
+        assertThat(Arrays.stream(storageTimer("upload", "success").takeSnapshot().histogramCounts())
+                .map(bucket -> Duration.ofNanos((long) bucket.bucket(TimeUnit.NANOSECONDS))))
+                .containsExactly(Duration.ofMillis(25), Duration.ofMillis(50), Duration.ofMillis(100),
+                        Duration.ofMillis(250), Duration.ofMillis(500), Duration.ofSeconds(1),
+                        Duration.ofMillis(2500), Duration.ofSeconds(5), Duration.ofSeconds(10));
+
+        DistributionSummary uploadSize = meterRegistry.get("storage.upload.size").tag("operation", "upload").summary();
+        assertThat(uploadSize.totalAmount()).isEqualTo(300 * 1024);
+        assertThat(meterRegistry.get("storage.upload.size").tag("operation", "upload.stream").summary().totalAmount())
+                .isEqualTo(6 * 1024 * 1024);
+        // Byte buckets 100KB, 1MB, 5MB, 10MB, 100MB, 1GB: the 300KB upload is in every bucket from 1MB on
+        CountAtBucket[] sizeBuckets = uploadSize.takeSnapshot().histogramCounts();
+        assertThat(Arrays.stream(sizeBuckets).map(CountAtBucket::bucket)).containsExactly(
+                (double) DataSize.ofKilobytes(100).toBytes(), (double) DataSize.ofMegabytes(1).toBytes(),
+                (double) DataSize.ofMegabytes(5).toBytes(), (double) DataSize.ofMegabytes(10).toBytes(),
+                (double) DataSize.ofMegabytes(100).toBytes(), (double) DataSize.ofGigabytes(1).toBytes());
+        assertThat(Arrays.stream(sizeBuckets).map(CountAtBucket::count)).containsExactly(0d, 1d, 1d, 1d, 1d, 1d);
+
+        // Low cardinality: only the documented tag keys and values, never a key or user id
+        for (Meter meter : meterRegistry.find("storage.operation").meters()) {
+            assertThat(meter.getId().getTags()).extracting(Tag::getKey).containsExactlyInAnyOrder("operation", "outcome");
+            assertThat(STORAGE_OPERATIONS).contains(meter.getId().getTag("operation"));
+            assertThat(STORAGE_OUTCOMES).contains(meter.getId().getTag("outcome"));
+        }
+        for (Meter meter : meterRegistry.find("storage.upload.size").meters()) {
+            assertThat(meter.getId().getTags()).extracting(Tag::getKey).containsExactly("operation");
+        }
+    }
+
+    // ========================================================================
+    // TEST 2: Error responses are counted as api.errors, tagged with the enErrorCode name only
+    // ========================================================================
+
+    @Test
+    void errorResponses_ShouldBeCountedByErrorCode() {
+
+        // --------- (Act) ------------
+
+        HttpStatus business = HttpStatus.valueOf(exceptionHandler
+                .handleBusiness(new BusinessException(enErrorCode.NOTE_NOT_FOUND)).getStatusCode().value());
+        exceptionHandler.handleBusiness(new BusinessException(enErrorCode.NOTE_NOT_FOUND));
+        HttpStatus busy = HttpStatus.valueOf(exceptionHandler
+                .handleBusy(new ServiceBusyException(enErrorCode.UPLOADS_BUSY)).getStatusCode().value());
+        HttpStatus internal = HttpStatus.valueOf(exceptionHandler
+                .handleGeneral(new IllegalStateException("kc-1/secret.png is gone")).getStatusCode().value());
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(business).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(busy).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(internal).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+
+        assertThat(meterRegistry.get("api.errors").tag("code", "NOTE_NOT_FOUND").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("api.errors").tag("code", "UPLOADS_BUSY").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("api.errors").tag("code", "INTERNAL_ERROR").counter().count()).isEqualTo(1);
+        for (Meter meter : meterRegistry.find("api.errors").meters()) {
+            assertThat(meter.getId().getTags()).extracting(Tag::getKey).containsExactly("code");
+            assertThat(enErrorCode.valueOf(meter.getId().getTag("code"))).isNotNull();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.salem.backend.monitoring;
+
+import com.salem.backend.support.LocalJwtIssuer;
+import com.salem.backend.support.LocalNotesApp;
+import com.salem.backend.support.S3StubServer;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Statements per request as db.statements.per.request reports them, on the real app (H2 in PostgreSQL mode).
+ * Guards the single owner-scoped statement of note updates and deletes (plus the notes_version bump).
+ */
+class StatementCountFilterTest {
+
+    private static final Pattern NOTE_ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    // ========================================================================
+    // TEST 1: Text update and delete of an own note are two statements each; the pool is closed with the app
+    // ========================================================================
+
+    @Test
+    void updateAndDelete_ShouldRunOnlyTheOwnerScopedWriteAndVersionBump() throws Exception {
+        HikariDataSource pool;
+        try (S3StubServer s3 = S3StubServer.start(Duration.ZERO);
+             LocalJwtIssuer issuer = LocalJwtIssuer.start();
+             LocalNotesApp app = LocalNotesApp.builder(s3, issuer).start()) {
+
+            // ------------ (Arrange & Given) -------------
+
+            String token = issuer.tokenFor("statements");
+            pool = app.context().getBean(DataSource.class).unwrap(HikariDataSource.class);
+
+            // Provisions the user and warms the user cache, so the measured requests only do their own work
+            HttpResponse<String> created = send(HttpRequest.newBuilder(URI.create(app.baseUrl() + "/api/notes/batch"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            "{\"notes\":[{\"title\":\"Counted\",\"content\":\"Statements are counted\"}]}")), token);
+            assertThat(created.statusCode()).isEqualTo(201);
+            Matcher id = NOTE_ID.matcher(created.body());
+            assertThat(id.find()).isTrue();
+            String noteUrl = app.baseUrl() + "/api/notes/" + id.group(1);
+
+            // --------- (Act) ------------
+
+            String boundary = "statements";
+            String body = "--" + boundary + "\r\n"
+                    + "Content-Disposition: form-data; name=\"data\"\r\nContent-Type: application/json\r\n\r\n"
+                    + "{\"title\":\"Counted (edited)\",\"content\":\"Statements are still counted\"}\r\n"
+                    + "--" + boundary + "--\r\n";
+            HttpResponse<String> updated = send(HttpRequest.newBuilder(URI.create(noteUrl))
+                    .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                    .PUT(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8)), token);
+            HttpResponse<String> deleted = send(HttpRequest.newBuilder(URI.create(noteUrl)).DELETE(), token);
+
+            // --------- (Assert & Verify) ------------
+
+            assertThat(updated.statusCode()).isEqualTo(200);
+            assertThat(deleted.statusCode()).isEqualTo(204);
+
+            MeterRegistry registry = app.context().getBean(MeterRegistry.class);
+            DistributionSummary update = statements(registry, "PUT", "200");
+            DistributionSummary delete = statements(registry, "DELETE", "204");
+            // The owner-scoped UPDATE / DELETE that also returns the old row, then the notes_version bump.
+            // No ownership SELECT before it, no image to release.
+            assertThat(update.count()).isEqualTo(1);
+            assertThat(update.totalAmount()).isEqualTo(2);
+            assertThat(delete.count()).isEqualTo(1);
+            assertThat(delete.totalAmount()).isEqualTo(2);
+
+            assertThat(pool.isClosed()).isFalse();
+        }
+        assertThat(pool.isClosed()).isTrue();
+    }
+
+    private static DistributionSummary statements(MeterRegistry registry, String method, String status) {
+        return registry.get("db.statements.per.request")
+                .tag("method", method)
+                .tag("uri", "/api/notes/{id}")
+                .tag("status", status)
+                .summary();
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request, String token) throws Exception {
+        return http.send(request.header("Authorization", "Bearer " + token).build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
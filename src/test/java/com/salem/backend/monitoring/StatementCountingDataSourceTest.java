@@ -0,0 +1,61 @@
+package com.salem.backend.monitoring;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class StatementCountingDataSourceTest {
+
+    // ========================================================================
+    // TEST 1: Statements are counted per thread, only between start and stop
+    // ========================================================================
+
+    @Test
+    void stopCounting_ShouldReturnStatementsPreparedSinceStart() {
+
+        // ------------ (Arrange & Given) -------------
+
+        JdbcTemplate jdbc = new JdbcTemplate(new StatementCountingDataSource(
+                new DriverManagerDataSource("jdbc:h2:mem:statement-counting;DB_CLOSE_DELAY=-1", "sa", "sa")));
+        jdbc.execute("CREATE TABLE IF NOT EXISTS counted (id INT)"); // Not counted: outside start/stop
+
+        // --------- (Act) ------------
+
+        StatementCountingDataSource.startCounting();
+        jdbc.update("INSERT INTO counted VALUES (?)", 1);
+        jdbc.queryForObject("SELECT COUNT(*) FROM counted", Integer.class);
+        int counted = StatementCountingDataSource.stopCounting();
+
+        jdbc.update("DELETE FROM counted");
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(counted).isEqualTo(2);
+        assertThat(StatementCountingDataSource.stopCounting()).isZero();
+    }
+
+    // ========================================================================
+    // TEST 2: Closing the wrapper closes the pool behind it
+    // ========================================================================
+
+    @Test
+    void close_ShouldCloseTheWrappedPool() throws Exception {
+
+        // ------------ (Arrange & Given) -------------
+
+        HikariDataSource pool = mock(HikariDataSource.class);
+
+        // --------- (Act) ------------
+
+        new StatementCountingDataSource(pool).close();
+
+        // --------- (Assert & Verify) ------------
+
+        verify(pool).close();
+    }
+}
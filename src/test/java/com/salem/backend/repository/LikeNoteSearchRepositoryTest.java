@@ -0,0 +1,161 @@
+package com.salem.backend.repository;
+
+import com.salem.backend.repository.projection.NoteSearchHit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.salem.backend.repository.NoteSearchRepository.MATCH_END;
+import static com.salem.backend.repository.NoteSearchRepository.MATCH_START;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The LIKE search SQL, keyset paging and highlighting against a local (H2 in-memory) notes table.
+ */
+class LikeNoteSearchRepositoryTest {
+
+    private static final long USER = 1L;
+    private static final long OTHER_USER = 2L;
+
+    private JdbcTemplate jdbc;
+    private LikeNoteSearchRepository underTest;
+
+    @BeforeEach
+    void setUp() {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:like-search;DB_CLOSE_DELAY=-1", "sa", "sa");
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("""
+                CREATE TABLE IF NOT EXISTS notes (
+                    id BIGINT PRIMARY KEY,
+                    user_id BIGINT NOT NULL,
+                    title VARCHAR(255) NOT NULL,
+                    content TEXT,
+                    image_key VARCHAR(255),
+                    created_at TIMESTAMP,
+                    updated_at TIMESTAMP NOT NULL
+                )""");
+        jdbc.execute("DELETE FROM notes");
+        underTest = new LikeNoteSearchRepository(new NamedParameterJdbcTemplate(dataSource));
+    }
+
+    private void note(long id, long userId, String title, String content) {
+        jdbc.update("INSERT INTO notes (id, user_id, title, content, created_at, updated_at) "
+                + "VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)", id, userId, title, content);
+    }
+
+    private static String marked(String word) {
+        return MATCH_START + word + MATCH_END;
+    }
+
+    // ========================================================================
+    // TEST 1: Title matches rank above content matches; every word must appear; other users' notes never match
+    // ========================================================================
+
+    @Test
+    void search_ShouldRankTitleMatchesFirst() {
+
+        // ------------ (Arrange & Given) -------------
+
+        note(1, USER, "Groceries", "Buy Coffee beans and milk");
+        note(2, USER, "Coffee beans", "Roast dates");
+        note(3, USER, "Coffee", "Dark roast beans");
+        note(4, USER, "Coffee", "Decaf");
+        note(5, OTHER_USER, "Coffee beans", "Coffee beans");
+
+        // --------- (Act) ------------
+
+        List<NoteSearchHit> hits = underTest.search(USER, "coffee BEANS", null, null, 10);
+
+        // --------- (Assert & Verify) ------------
+
+        // 2: both words in the title (4), 3: one in the title, one in the content (3), 1: both in the content (2)
+        assertThat(hits).extracting(NoteSearchHit::id).containsExactly(2L, 3L, 1L);
+        assertThat(hits).extracting(NoteSearchHit::rank).containsExactly(4f, 3f, 2f);
+        assertThat(hits.get(0).titleHighlight()).isEqualTo(marked("Coffee") + " " + marked("beans"));
+        assertThat(hits.get(2).snippet()).isEqualTo("Buy " + marked("Coffee") + " " + marked("beans") + " and milk");
+    }
+
+    // ========================================================================
+    // TEST 2: Walking two pages with the (rank, id) cursor returns every hit once, ties broken by id
+    // ========================================================================
+
+    @Test
+    void search_WithCursor_ShouldContinueAfterThePreviousPage() {
+
+        // ------------ (Arrange & Given) -------------
+
+        note(1, USER, "Tea", "green");
+        note(2, USER, "Other", "tea leaves");
+        note(3, USER, "Tea", "black");
+        note(4, USER, "Other", "more tea");
+        note(5, USER, "Tea", "white");
+
+        // --------- (Act) ------------
+
+        List<NoteSearchHit> walked = new ArrayList<>();
+        List<NoteSearchHit> first = underTest.search(USER, "tea", null, null, 3);
+        walked.addAll(first);
+        NoteSearchHit last = first.get(first.size() - 1);
+        List<NoteSearchHit> second = underTest.search(USER, "tea", last.rank(), last.id(), 3);
+        walked.addAll(second);
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(first).extracting(NoteSearchHit::id).containsExactly(5L, 3L, 1L);
+        assertThat(second).extracting(NoteSearchHit::id).containsExactly(4L, 2L);
+        assertThat(walked).extracting(NoteSearchHit::id).doesNotHaveDuplicates().hasSize(5);
+        NoteSearchHit end = second.get(second.size() - 1);
+        assertThat(underTest.search(USER, "tea", end.rank(), end.id(), 3)).isEmpty();
+    }
+
+    // ========================================================================
+    // TEST 3: '%' and '_' in the query are literal characters, not LIKE wildcards
+    // ========================================================================
+
+    @Test
+    void search_ShouldEscapeLikeWildcards() {
+
+        // ------------ (Arrange & Given) -------------
+
+        note(1, USER, "Progress", "100% done");
+        note(2, USER, "Progress", "1000 done");
+        note(3, USER, "Config", "set max_size");
+        note(4, USER, "Config", "set maxXsize");
+
+        // --------- (Act & Assert) ------------
+
+        assertThat(underTest.search(USER, "100%", null, null, 10)).extracting(NoteSearchHit::id).containsExactly(1L);
+        assertThat(underTest.search(USER, "max_size", null, null, 10)).extracting(NoteSearchHit::id).containsExactly(3L);
+        assertThat(underTest.search(USER, "%", null, null, 10)).extracting(NoteSearchHit::id).containsExactly(1L);
+    }
+
+    // ========================================================================
+    // TEST 4: Text that grows when lower-cased ("İ" is two chars in lower case) still gets the right excerpt and marks
+    // ========================================================================
+
+    @Test
+    void search_WhenLowerCasingChangesTheLength_ShouldCutAndMarkTheOriginalText() {
+
+        // ------------ (Arrange & Given) -------------
+
+        String content = "İ".repeat(200) + " match";
+        note(1, USER, "İİİ Match", content);
+
+        // --------- (Act) ------------
+
+        List<NoteSearchHit> hits = underTest.search(USER, "match", null, null, 10);
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(hits).singleElement().satisfies(hit -> {
+            assertThat(hit.titleHighlight()).isEqualTo("İİİ " + marked("Match"));
+            assertThat(hit.snippet()).isEqualTo("… " + "İ".repeat(59) + " " + marked("match"));
+        });
+    }
+}
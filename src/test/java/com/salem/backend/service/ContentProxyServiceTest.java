@@ -0,0 +1,92 @@
+package com.salem.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+class ContentProxyServiceTest {
+
+    @Mock
+    private FileStorageService fileStorageService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ContentProxyService underTest;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = new ContentProxyService(fileStorageService, meterRegistry);
+        ReflectionTestUtils.setField(underTest, "maxStreams", 1);
+        ReflectionTestUtils.setField(underTest, "bufferSize", DataSize.ofBytes(16)); // Smaller than the range: several rounds
+        ReflectionTestUtils.setField(underTest, "acquireTimeout", Duration.ofMillis(10));
+        underTest.init();
+    }
+
+    // ========================================================================
+    // TEST 1: A range is copied through the small pooled buffer, byte for byte
+    // ========================================================================
+
+    @Test
+    void copy_ShouldSendExactlyTheRequestedBytes() throws Exception {
+
+        // ------------ (Arrange & Given) -------------
+
+        byte[] file = new byte[100];
+        for (int i = 0; i < file.length; i++) {
+            file[i] = (byte) i;
+        }
+        given(fileStorageService.openFile("kc-5/doc.pdf", 10, 50))
+                .willReturn(new ByteArrayInputStream(file, 10, 60)); // Storage may hand out more than asked for
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // --------- (Act) ------------
+
+        try (ContentProxyService.Slot slot = underTest.tryAcquire()) {
+            slot.copy("kc-5/doc.pdf", 10, 50, out);
+        }
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(out.toByteArray()).isEqualTo(Arrays.copyOfRange(file, 10, 60));
+        assertThat(meterRegistry.get("notes.content.bytes").counter().count()).isEqualTo(50);
+    }
+
+    // ========================================================================
+    // TEST 2: Past max-streams requests are turned away until a stream is closed
+    // ========================================================================
+
+    @Test
+    void tryAcquire_WhenAllStreamsAreBusy_ShouldReturnNullUntilOneIsClosed() throws Exception {
+
+        // ------------ (Arrange & Given) -------------
+
+        ContentProxyService.Slot first = underTest.tryAcquire();
+
+        // --------- (Act & Assert) ------------
+
+        assertThat(first).isNotNull();
+        assertThat(underTest.tryAcquire()).isNull();
+        assertThat(meterRegistry.get("notes.content.streams.rejected").counter().count()).isEqualTo(1);
+
+        first.close();
+        first.close(); // Idempotent: a second close must not hand out an extra stream
+        try (ContentProxyService.Slot second = underTest.tryAcquire()) {
+            assertThat(second).isNotNull();
+            assertThat(underTest.tryAcquire()).isNull();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.salem.backend.service;
+
+import com.salem.backend.entity.User;
+import com.salem.backend.repository.NoteRepository;
+import com.salem.backend.repository.StoredFileRepository;
+import com.salem.backend.service.FileDeduplicationService.StoredImage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class FileDeduplicationServiceTest {
+
+    @Mock
+    private FileStorageService fileStorageService;
+    @Mock
+    private StoredFileRepository storedFileRepository;
+    @Mock
+    private NoteRepository noteRepository;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private FileDeduplicationService underTest;
+
+    private final User user = new User();
+
+    @BeforeEach
+    void setUp() {
+        underTest = new FileDeduplicationService(fileStorageService, storedFileRepository, noteRepository,
+                transactionTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(underTest, "enabled", true);
+
+        user.setId(5L);
+        user.setKeycloakId("kc-5");
+    }
+
+    // ========================================================================
+    // TEST 1: Content the user already stored is referenced, not uploaded again
+    // ========================================================================
+
+    @Test
+    void store_WhenContentIsKnown_ShouldReuseObjectAndItsVariants() throws Exception {
+
+        // ------------ (Arrange & Given) -------------
+
+        MockMultipartFile file = new MockMultipartFile("file", "scan.png", "image/png",
+                "same scan".getBytes(StandardCharsets.UTF_8));
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                .digest("same scan".getBytes(StandardCharsets.UTF_8)));
+
+        given(transactionTemplate.execute(any())).willAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        given(storedFileRepository.addReference(5L, hash)).willReturn(1);
+        given(storedFileRepository.findObjectKey(5L, hash)).willReturn(Optional.of("kc-5/first.png"));
+        given(noteRepository.findImageDerivatives("kc-5/first.png", Limit.of(1))).willReturn(List.of("thumb,medium"));
+
+        // --------- (Act) ------------
+
+        StoredImage stored = underTest.store(file, user);
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(stored).isEqualTo(new StoredImage("kc-5/first.png", "thumb,medium"));
+        verify(fileStorageService, never()).uploadFile(any(), any());
+        verify(storedFileRepository, never()).insert(any(), any(), any());
+    }
+
+    // ========================================================================
+    // TEST 2: Only the last reference deletes the object; untracked (older) objects are deleted as before
+    // ========================================================================
+
+    @Test
+    void release_ShouldReportTheLastReferenceOnly() {
+
+        // ------------ (Arrange & Given) -------------
+
+        given(storedFileRepository.removeReference("kc-5/shared.png")).willReturn(1);
+        given(storedFileRepository.deleteIfUnreferenced("kc-5/shared.png")).willReturn(0, 1);
+        given(storedFileRepository.removeReference("kc-5/legacy.png")).willReturn(0);
+
+        // --------- (Act & Assert) ------------
+
+        assertThat(underTest.release("kc-5/shared.png")).isFalse(); // Another note still shows it
+        assertThat(underTest.release("kc-5/shared.png")).isTrue();
+        assertThat(underTest.release("kc-5/legacy.png")).isTrue();
+        verify(storedFileRepository, never()).deleteIfUnreferenced("kc-5/legacy.png");
+    }
+}
@@ -0,0 +1,189 @@
+package com.salem.backend.service;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * The signed-URL cache of FileStorageService, on a fake clock that the test moves forward
+ * and a stub signer (the mocked StorageBackend) that numbers the URLs it hands out.
+ */
+@ExtendWith(MockitoExtension.class)
+class FileStorageServiceTest {
+
+    private static final Duration TTL = Duration.ofHours(1);
+    private static final Duration MIN_REMAINING = Duration.ofMinutes(10);
+    private static final Instant START = Instant.parse("2026-01-01T10:00:00Z");
+
+    @Mock
+    private StorageBackend storageBackend;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final FakeTime time = new FakeTime();
+    private FileStorageService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new FileStorageService(storageBackend, meterRegistry);
+        ReflectionTestUtils.setField(underTest, "maxObjectSize", DataSize.ofMegabytes(10));
+        ReflectionTestUtils.setField(underTest, "presignTtl", TTL);
+        ReflectionTestUtils.setField(underTest, "minRemainingValidity", MIN_REMAINING);
+        ReflectionTestUtils.setField(underTest, "urlCacheMaxSize", 100L);
+        ReflectionTestUtils.setField(underTest, "ticker", (Ticker) time::nanos);
+        ReflectionTestUtils.setField(underTest, "clock", time);
+        underTest.initUrlCache();
+    }
+
+    // ========================================================================
+    // TEST 1: A signed URL is reused until less than min-remaining of its validity is left, then re-signed
+    // ========================================================================
+
+    @Test
+    void getSignedUrl_WhenLessThanMinRemainingIsLeft_ShouldSignANewUrl() {
+
+        // ------------ (Arrange & Given) -------------
+
+        given(storageBackend.signGetUrl("kc-1/a.png", TTL)).willReturn("https://s3/a?sig=1", "https://s3/a?sig=2");
+
+        // --------- (Act) ------------
+
+        PresignedUrl first = underTest.getSignedUrl("kc-1/a.png");
+        time.advance(TTL.minus(MIN_REMAINING).minusSeconds(1)); // 10m01s of validity left
+        PresignedUrl stillCached = underTest.getSignedUrl("kc-1/a.png");
+        time.advance(Duration.ofSeconds(2));                     // 9m59s left: no longer handed out
+        PresignedUrl resigned = underTest.getSignedUrl("kc-1/a.png");
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(first.url()).isEqualTo("https://s3/a?sig=1");
+        assertThat(first.expiresAt()).isEqualTo(START.plus(TTL));
+        assertThat(stillCached).isSameAs(first);
+        assertThat(resigned.url()).isEqualTo("https://s3/a?sig=2");
+        assertThat(resigned.expiresAt()).isEqualTo(time.instant().plus(TTL));
+        verify(storageBackend, times(2)).signGetUrl("kc-1/a.png", TTL);
+    }
+
+    // ========================================================================
+    // TEST 2: Deleting a file drops its cached URL
+    // ========================================================================
+
+    @Test
+    void deleteFile_ShouldEvictTheCachedUrl() {
+
+        // ------------ (Arrange & Given) -------------
+
+        given(storageBackend.signGetUrl("kc-1/a.png", TTL)).willReturn("https://s3/a?sig=1", "https://s3/a?sig=2");
+        underTest.getFileUrl("kc-1/a.png");
+
+        // --------- (Act) ------------
+
+        underTest.deleteFile("kc-1/a.png");
+
+        // --------- (Assert & Verify) ------------
+
+        verify(storageBackend).delete("kc-1/a.png");
+        assertThat(underTest.getFileUrl("kc-1/a.png")).isEqualTo("https://s3/a?sig=2");
+    }
+
+    // ========================================================================
+    // TEST 3: Replacing an image evicts the URL of the old key only (NoteService calls evictFileUrl)
+    // ========================================================================
+
+    @Test
+    void evictFileUrl_WhenImageIsReplaced_ShouldDropOnlyTheOldKey() {
+
+        // ------------ (Arrange & Given) -------------
+
+        given(storageBackend.signGetUrl("kc-1/old.png", TTL)).willReturn("https://s3/old?sig=1", "https://s3/old?sig=2");
+        given(storageBackend.signGetUrl("kc-1/other.png", TTL)).willReturn("https://s3/other?sig=1");
+        underTest.getFileUrl("kc-1/old.png");
+        underTest.getFileUrl("kc-1/other.png");
+
+        // --------- (Act) ------------
+
+        underTest.evictFileUrl("kc-1/old.png");
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(underTest.getFileUrl("kc-1/old.png")).isEqualTo("https://s3/old?sig=2");
+        assertThat(underTest.getFileUrl("kc-1/other.png")).isEqualTo("https://s3/other?sig=1");
+        verify(storageBackend, times(1)).signGetUrl("kc-1/other.png", TTL);
+    }
+
+    // ========================================================================
+    // TEST 4: The cache reports its hits, misses and size; only misses are timed as presign calls
+    // ========================================================================
+
+    @Test
+    void getFileUrl_ShouldRegisterCacheMetrics() {
+
+        // ------------ (Arrange & Given) -------------
+
+        given(storageBackend.signGetUrl("kc-1/a.png", TTL)).willReturn("https://s3/a?sig=1");
+
+        // --------- (Act) ------------
+
+        underTest.getFileUrl("kc-1/a.png");
+        underTest.getFileUrl("kc-1/a.png");
+        underTest.getFileUrl("kc-1/a.png");
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "presignedUrls").tag("result", "miss")
+                .functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "presignedUrls").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("cache.size").tag("cache", "presignedUrls").gauge().value()).isEqualTo(1);
+        assertThat(meterRegistry.get("storage.operation").tag("operation", "presign").tag("outcome", "success")
+                .timer().count()).isEqualTo(1);
+    }
+
+    /**
+     * One fake time for both sources: the cache ticker (nanoseconds) and the clock that stamps expiresAt.
+     */
+    private static final class FakeTime extends Clock {
+
+        private final AtomicLong elapsedNanos = new AtomicLong();
+
+        void advance(Duration duration) {
+            elapsedNanos.addAndGet(duration.toNanos());
+        }
+
+        long nanos() {
+            return elapsedNanos.get();
+        }
+
+        @Override
+        public Instant instant() {
+            return START.plusNanos(elapsedNanos.get());
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
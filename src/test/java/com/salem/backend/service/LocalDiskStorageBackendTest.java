@@ -0,0 +1,97 @@
+package com.salem.backend.service;
+
+import com.salem.backend.exception.BusinessException;
+import com.salem.backend.exception.enErrorCode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LocalDiskStorageBackendTest {
+
+    private static final String KEY = "user-1/6f1c2a9e-7d41-4a3b-9f0e-2c8d5b7a1e34.png";
+
+    @TempDir
+    Path root;
+
+    private LocalDiskStorageBackend underTest;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        underTest = new LocalDiskStorageBackend();
+        ReflectionTestUtils.setField(underTest, "configuredRoot", root);
+        ReflectionTestUtils.setField(underTest, "fsyncPolicy", LocalDiskStorageBackend.FsyncPolicy.ALL);
+        ReflectionTestUtils.setField(underTest, "publicUrl", "http://localhost:8080");
+        ReflectionTestUtils.setField(underTest, "urlSecret", "0123456789abcdef0123456789abcdef");
+        underTest.init();
+    }
+
+    // ========================================================================
+    // TEST 1: A stored file is reachable through its signed URL, a tampered or expired URL is refused
+    // ========================================================================
+
+    @Test
+    void signGetUrl_WhenFileIsStored_ShouldVerifyOnlyTheUntouchedSignature() throws Exception {
+
+        // ------------ (Arrange & Given) -------------
+
+        byte[] content = "not really a png".getBytes(StandardCharsets.UTF_8);
+        underTest.putStream(KEY, "image/png", new ByteArrayInputStream(content), 1024);
+
+        // --------- (Act) ------------
+
+        UriComponents url = UriComponentsBuilder.fromUriString(underTest.signGetUrl(KEY, Duration.ofHours(1))).build();
+        long expires = Long.parseLong(url.getQueryParams().getFirst("expires"));
+        String signature = url.getQueryParams().getFirst("signature");
+        Path path = underTest.verifiedPath(KEY, expires, signature);
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(url.getPath()).isEqualTo("/api/files/" + KEY);
+        assertThat(Files.readAllBytes(path)).isEqualTo(content);
+
+        assertThatThrownBy(() -> underTest.verifiedPath(KEY, expires + 3600, signature))
+                .isInstanceOf(BusinessException.class)
+                .extracting("errorCode").isEqualTo(enErrorCode.FILE_LINK_INVALID);
+        assertThatThrownBy(() -> underTest.verifiedPath("user-2/6f1c2a9e-7d41-4a3b-9f0e-2c8d5b7a1e34.png", expires, signature))
+                .isInstanceOf(BusinessException.class);
+        assertThatThrownBy(() -> underTest.verifiedPath(KEY, 1_000_000L, signature))
+                .isInstanceOf(BusinessException.class);
+    }
+
+    // ========================================================================
+    // TEST 2: A stream over the size limit is refused and leaves nothing on disk
+    // ========================================================================
+
+    @Test
+    void putStream_WhenStreamExceedsLimit_ShouldThrowAndLeaveNoFile() throws Exception {
+
+        // ------------ (Arrange & Given) -------------
+
+        byte[] content = new byte[4096];
+
+        // --------- (Act) ------------
+
+        assertThatThrownBy(() -> underTest.putStream(KEY, "image/png", new ByteArrayInputStream(content), 1024))
+                .isInstanceOf(BusinessException.class)
+                .extracting("errorCode").isEqualTo(enErrorCode.FILE_TOO_LARGE);
+
+        // --------- (Assert & Verify) ------------
+
+        try (Stream<Path> files = Files.list(root.resolve("user-1"))) {
+            assertThat(files).isEmpty();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.salem.backend.service;
+
+import com.salem.backend.entity.Note;
+import com.salem.backend.repository.NoteRepository;
+import com.salem.backend.repository.UserRepository;
+import com.salem.backend.repository.projection.NoteSummaryItem;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class NoteListCacheTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 1, 1, 10, 0, 0);
+
+    @Mock
+    private NoteRepository noteRepository;
+    @Mock
+    private UserRepository userRepository;
+
+    // Records what would be sent to the other instances
+    private final List<Long> published = new ArrayList<>();
+
+    private NoteListCache underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new NoteListCache(noteRepository, userRepository, List.of(published::add), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(underTest, "maxNotesPerUser", 3);
+        ReflectionTestUtils.setField(underTest, "maxSize", DataSize.ofMegabytes(1));
+        ReflectionTestUtils.setField(underTest, "ttl", Duration.ofMinutes(5));
+        underTest.initCache();
+    }
+
+    // ========================================================================
+    // TEST 1: Pages inside the window come from memory, pages past it from the database
+    // ========================================================================
+
+    @Test
+    void findPage_WhenPageRunsPastTheWindow_ShouldFallBackToDatabase() {
+
+        // ------------ (Arrange & Given) -------------
+
+        NoteSummaryItem n5 = item(5L, 5), n4 = item(4L, 4), n3 = item(3L, 3), n2 = item(2L, 2);
+
+        // Window of 3 -> the cache loads 4 rows to know that the user has more notes
+        given(noteRepository.findFirstPage(7L, Limit.of(4))).willReturn(List.of(n5, n4, n3, n2));
+        given(noteRepository.findPageAfter(7L, n4.updatedAt(), n4.id(), Limit.of(2))).willReturn(List.of(n3, n2));
+
+        // --------- (Act) ------------
+
+        List<NoteSummaryItem> first = underTest.findPage(7L, 0L, null, null, 2);
+        List<NoteSummaryItem> again = underTest.findPage(7L, 0L, null, null, 2);
+        List<NoteSummaryItem> second = underTest.findPage(7L, 0L, n4.updatedAt(), n4.id(), 2);
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(first).containsExactly(n5, n4);
+        assertThat(again).containsExactly(n5, n4);
+        assertThat(second).containsExactly(n3, n2);
+
+        verify(noteRepository, times(1)).findFirstPage(7L, Limit.of(4));
+    }
+
+    // ========================================================================
+    // TEST 2: Writes patch the cached list instead of reloading it
+    // ========================================================================
+
+    @Test
+    void noteSavedAndDeleted_ShouldPatchCachedListAndPublish() {
+
+        // ------------ (Arrange & Given) -------------
+
+        NoteSummaryItem n2 = item(2L, 2), n1 = item(1L, 1);
+        given(noteRepository.findFirstPage(7L, Limit.of(4))).willReturn(List.of(n2, n1));
+        underTest.findPage(7L, 0L, null, null, 10);
+
+        Note edited = Note.builder().id(1L).title("Edited").content("Changed ".repeat(100)).createdAt(NOW).updatedAt(NOW.plusMinutes(3)).build();
+
+        // --------- (Act) ------------
+
+        underTest.noteSaved(7L, edited, 1L);
+        List<NoteSummaryItem> afterSave = underTest.findPage(7L, 0L, null, null, 10);
+
+        underTest.noteDeleted(7L, 2L, 2L);
+        List<NoteSummaryItem> afterDelete = underTest.findPage(7L, 0L, null, null, 10);
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(afterSave).extracting(NoteSummaryItem::id).containsExactly(1L, 2L);
+        assertThat(afterSave.get(0).title()).isEqualTo("Edited");
+        assertThat(afterSave.get(0).excerpt()).hasSize(NoteRepository.EXCERPT_LENGTH); // Cut like the listing query
+        assertThat(afterDelete).extracting(NoteSummaryItem::id).containsExactly(1L);
+
+        verify(noteRepository, times(1)).findFirstPage(7L, Limit.of(4));
+        assertThat(published).containsExactly(7L, 7L);
+    }
+
+    // ========================================================================
+    // TEST 3: An entry that missed a write is reloaded, never patched or served
+    // ========================================================================
+
+    @Test
+    void findPage_WhenCallerHasSeenNewerVersion_ShouldReloadTheEntry() {
+
+        // ------------ (Arrange & Given) -------------
+
+        NoteSummaryItem n2 = item(2L, 2), n1 = item(1L, 1);
+        given(userRepository.findNotesVersion(7L)).willReturn(5L, 6L);
+        given(noteRepository.findFirstPage(7L, Limit.of(4))).willReturn(List.of(n2), List.of(n2, n1));
+        underTest.findPage(7L, 5L, null, null, 10);
+
+        Note created = Note.builder().id(1L).title("Note 1").content("Content 1").createdAt(NOW).updatedAt(NOW.plusMinutes(1)).build();
+
+        // --------- (Act) ------------
+
+        // Version 6 came from another instance, 7 is a later write here: it must not be patched onto version 5
+        underTest.noteSaved(7L, created, 7L);
+        List<NoteSummaryItem> reloaded = underTest.findPage(7L, 6L, null, null, 10);
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(reloaded).containsExactly(n2, n1);
+        verify(noteRepository, times(2)).findFirstPage(7L, Limit.of(4));
+    }
+
+    private static NoteSummaryItem item(Long id, int minutes) {
+        return new NoteSummaryItem(id, "Note " + id, "Content " + id, null, null, NOW, NOW.plusMinutes(minutes));
+    }
+}
@@ -1,13 +1,27 @@
 package com.salem.backend.service;
 
+import com.salem.backend.dto.CursorPageResponse;
+import com.salem.backend.dto.NoteBatchDeleteResponse;
 import com.salem.backend.dto.NoteRequest;
 import com.salem.backend.dto.NoteResponse;
+import com.salem.backend.dto.NoteSearchResponse;
+import com.salem.backend.dto.NoteSummaryResponse;
 import com.salem.backend.entity.Note;
 import com.salem.backend.entity.User;
 import com.salem.backend.exception.BusinessException;
 import com.salem.backend.exception.enErrorCode;
 import com.salem.backend.mapper.NoteMapper;
+import com.salem.backend.repository.NoteExportRepository;
 import com.salem.backend.repository.NoteRepository;
+import com.salem.backend.repository.NoteSearchRepository;
+import com.salem.backend.repository.NoteWriteRepository;
+import com.salem.backend.repository.projection.NoteBeforeWrite;
+import com.salem.backend.repository.projection.NoteImageRef;
+import com.salem.backend.repository.projection.NoteListItem;
+import com.salem.backend.repository.projection.NoteSummaryItem;
+import com.salem.backend.repository.projection.NoteSearchHit;
+import com.salem.backend.service.FileDeduplicationService.StoredImage;
+import com.salem.backend.util.CursorCodec;
 import com.salem.backend.util.SecurityUtils;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -16,17 +30,30 @@ import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.ByteArrayInputStream;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Optional;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 
 // 1. We tell JUnit to run this test with Mockito's environment (No Spring Boot, No Database)
 @ExtendWith(MockitoExtension.class)
@@ -37,11 +64,27 @@ class NoteServiceTest {
     @Mock
     private NoteRepository noteRepository;
     @Mock
+    private NoteWriteRepository noteWriteRepository;
+    @Mock
     private FileStorageService fileStorageService;
     @Mock
     private NoteMapper noteMapper;
     @Mock
     private SecurityUtils securityUtils;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    @Mock
+    private StorageDeletionOutbox storageDeletionOutbox;
+    @Mock
+    private NoteSearchRepository noteSearchRepository;
+    @Mock
+    private NoteListCache noteListCache;
+    @Mock
+    private NoteExportRepository noteExportRepository;
+    @Mock
+    private ImageDerivativeService imageDerivativeService;
+    @Mock
+    private FileDeduplicationService fileDeduplicationService;
 
     // 3. We inject all the mocks above into our real NoteService instance.
     @InjectMocks
@@ -69,10 +112,11 @@ class NoteServiceTest {
         
         Note dummySavedNote = new Note();
         dummySavedNote.setId(1L);
+        runTransactionCallbacks();
         given(noteRepository.save(any(Note.class))).willReturn(dummySavedNote);
         
-        NoteResponse expectedResponse = new NoteResponse(1L, "My Valid Title", "My Valid Content", null, null, null);
-        given(noteMapper.toResponse(dummySavedNote, null)).willReturn(expectedResponse);
+        NoteResponse expectedResponse = new NoteResponse(1L, "My Valid Title", "My Valid Content", null, Map.of(), null, null);
+        given(noteMapper.toResponse(dummySavedNote, null, Map.of())).willReturn(expectedResponse);
 
         // ------------------------------ when (Act) ------------------------
 
@@ -107,17 +151,13 @@ class NoteServiceTest {
         User hacker = new User();
         hacker.setId(999L); 
         
-        User realOwner = new User();
-        realOwner.setId(100L); 
-        
-        Note existingNote = new Note();
-        existingNote.setId(1L);
-        existingNote.setUser(realOwner);
-        
         //  ---------------(given) ------------
         given(securityUtils.getCurrentUser()).willReturn(hacker);
-        
-        given(noteRepository.findById(1L)).willReturn(Optional.of(existingNote));
+        runTransactionCallbacks();
+
+        // Note 1 exists but belongs to someone else: the owner-scoped update matches no row
+        given(noteWriteRepository.updateContent(eq(1L), eq(999L), any(), any(), isNull(), isNull(), any())).willReturn(Optional.empty());
+        given(noteRepository.existsById(1L)).willReturn(true);
 
 
         // --------- (Act & Assert) ------------
@@ -130,6 +170,9 @@ class NoteServiceTest {
 
         
         verify(noteRepository, never()).save(any());
+        verifyNoInteractions(storageDeletionOutbox);
+        verify(noteListCache, never()).noteSaved(any(), any(), anyLong());
+        verify(noteWriteRepository, never()).bumpNotesVersion(any());
     }
 
 
@@ -147,18 +190,57 @@ class NoteServiceTest {
         user.setId(5l);
         given(securityUtils.getCurrentUser()).willReturn(user);
 
-        given(noteRepository.findByUserId(5l)).willReturn( new ArrayList<>());
+        given(noteListCache.findPage(eq(5l), eq(0L), isNull(), isNull(), anyInt())).willReturn( new ArrayList<>());
 
 
         // --------- (Act) ------------
 
-        List<NoteResponse> result = underTest.getUserNotes();
+        CursorPageResponse<NoteSummaryResponse> result = underTest.getUserNotes(null, null, 0L);
 
         // --------- (Assert & Verify) ------------
 
-        assertThat(result).isEmpty();
+        assertThat(result.items()).isEmpty();
+        assertThat(result.nextCursor()).isNull();
 
-        verify(noteMapper, never()).toResponse(any(), any());
+        verify(noteMapper, never()).toSummaryResponse(any(), any(), any());
+
+    }
+
+
+    // ========================================================================
+    // TEST 3.1: Get User Notes (More rows than one page -> next cursor)
+    // ========================================================================
+
+    @Test
+    void getUserNotes_WhenMoreNotesThanPageSize_ShouldReturnNextCursorOfLastItem(){
+
+        // ------------ (Arrange & Given) -------------
+
+        ReflectionTestUtils.setField(underTest, "maxPageSize", 100);
+
+        User user = new User();
+        user.setId(5L);
+        given(securityUtils.getCurrentUser()).willReturn(user);
+
+        LocalDateTime now = LocalDateTime.of(2025, 1, 1, 10, 0, 0);
+        NoteSummaryItem first = new NoteSummaryItem(3L, "Third", "Content 3", null, null, now, now);
+        NoteSummaryItem second = new NoteSummaryItem(2L, "Second", "Content 2", null, null, now, now.minusMinutes(1));
+        NoteSummaryItem extra = new NoteSummaryItem(1L, "First", "Content 1", null, null, now, now.minusMinutes(2));
+
+        // Page size 2 -> the service asks for 3 rows to detect the next page
+        given(noteListCache.findPage(5L, 4L, null, null, 3)).willReturn(List.of(first, second, extra));
+
+
+        // --------- (Act) ------------
+
+        CursorPageResponse<NoteSummaryResponse> result = underTest.getUserNotes(null, 2, 4L);
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(result.items()).hasSize(2);
+        assertThat(result.nextCursor()).isEqualTo(CursorCodec.encode(second.updatedAt(), second.id()));
+
+        verify(noteMapper, never()).toSummaryResponse(extra, null, Map.of());
 
     }
 
@@ -176,26 +258,28 @@ class NoteServiceTest {
         User owner = new User();
         owner.setId(5L);
 
-        Note existingNote = new Note();
-        existingNote.setId(10L);
-        existingNote.setUser(owner);
+        NoteBeforeWrite deletedRow = new NoteBeforeWrite(10L, "Title", "Content", null, null, LocalDateTime.of(2025, 1, 1, 10, 0));
 
 
         given(securityUtils.getCurrentUser()).willReturn(owner);
 
-        given(noteRepository.findById(existingNote.getId())).willReturn(Optional.of(existingNote));
+        given(noteWriteRepository.delete(10L, 5L)).willReturn(Optional.of(deletedRow));
+        given(noteWriteRepository.bumpNotesVersion(5L)).willReturn(8L);
 
 
         // --------- (Act) ------------
 
-        underTest.deleteNote(existingNote.getId());
+        underTest.deleteNote(10L);
 
         // --------- (Assert & Verify) ------------
 
 
-        verify(noteRepository).delete(existingNote);
+        verify(noteWriteRepository).delete(10L, 5L);
+        verify(noteRepository, never()).existsById(any());
+        verify(noteListCache).noteDeleted(5L, 10L, 8L);
 
         verify(fileStorageService, never()).deleteFile(any());
+        verifyNoInteractions(storageDeletionOutbox);
 
 
 
@@ -206,9 +290,271 @@ class NoteServiceTest {
     }
 
 
+    // ========================================================================
+    // TEST 5: Image redirect (Lazy mode) for a note owned by someone else
+    // ========================================================================
 
-    
+    @Test
+    void getNoteImageUrl_WhenUserIsNotOwner_ShouldThrowAndNotSign(){
 
+        // ------------ (Arrange & Given) -------------
+
+        User hacker = new User();
+        hacker.setId(999L);
+
+        NoteImageRef ref = new NoteImageRef() {
+            public Long getOwnerId() { return 100L; }
+            public String getImageKey() { return "owner/image.png"; }
+            public String getImageDerivatives() { return null; }
+        };
+
+        given(securityUtils.getCurrentUser()).willReturn(hacker);
+        given(noteRepository.findImageRefById(1L)).willReturn(Optional.of(ref));
+
+        // --------- (Act & Assert) ------------
+
+        assertThatThrownBy(() -> underTest.getNoteImageUrl(1L, null))
+                .isInstanceOf(BusinessException.class)
+                .hasMessageContaining(enErrorCode.NOTE_OWNERSHIP_ERROR.getMessageKey());
+
+        verify(fileStorageService, never()).getSignedUrl(any());
+    }
+
+
+    // ========================================================================
+    // TEST 6: Create Note - DB write fails after the upload (Compensation)
+    // ========================================================================
+
+    @Test
+    void createNote_WhenSaveFailsAfterUpload_ShouldReleaseTheImageReference(){
+
+        // ------------ (Arrange & Given) -------------
+
+        User user = new User();
+        user.setId(5L);
+        user.setKeycloakId("kc-5");
+
+        MockMultipartFile file = new MockMultipartFile("file", "scan.png", "image/png", new byte[]{1, 2, 3});
+
+        given(securityUtils.getCurrentUser()).willReturn(user);
+        StoredImage stored = new StoredImage("kc-5/uploaded.png", null);
+        given(fileDeduplicationService.store(file, user)).willReturn(stored);
+        runTransactionCallbacks();
+        given(noteRepository.save(any(Note.class))).willThrow(new IllegalStateException("DB is down"));
+
+        // --------- (Act & Assert) ------------
+
+        assertThatThrownBy(() -> underTest.createNote(new NoteRequest("Title", "Some content"), file))
+                .isInstanceOf(IllegalStateException.class);
+
+        verify(fileDeduplicationService).releaseUnsaved(stored);
+        verifyNoInteractions(imageDerivativeService);
+    }
+
+
+    // ========================================================================
+    // TEST 7: Search - highlights are escaped, next cursor holds (rank, id)
+    // ========================================================================
+
+    @Test
+    void searchNotes_WhenMoreHitsThanPageSize_ShouldEscapeHighlightsAndReturnNextCursor(){
+
+        // ------------ (Arrange & Given) -------------
+
+        ReflectionTestUtils.setField(underTest, "maxPageSize", 100);
+
+        User user = new User();
+        user.setId(5L);
+        given(securityUtils.getCurrentUser()).willReturn(user);
+
+        String start = NoteSearchRepository.MATCH_START;
+        String end = NoteSearchRepository.MATCH_END;
+        LocalDateTime now = LocalDateTime.of(2025, 1, 1, 10, 0, 0);
+        NoteSearchHit best = new NoteSearchHit(7L, "<b>Budget</b>", "<b>" + start + "Budget" + end + "</b>",
+                "plan the " + start + "budget" + end, null, 0.9f, now, now);
+        NoteSearchHit extra = new NoteSearchHit(3L, "Old budget", "Old " + start + "budget" + end,
+                "", null, 0.1f, now, now);
+
+        // Page size 1 -> the service asks for 2 hits to detect the next page
+        given(noteSearchRepository.search(5L, "budget", null, null, 2)).willReturn(List.of(best, extra));
+
+        // --------- (Act) ------------
+
+        CursorPageResponse<NoteSearchResponse> result = underTest.searchNotes("  budget ", null, 1);
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(result.items()).hasSize(1);
+        NoteSearchResponse hit = result.items().get(0);
+        assertThat(hit.titleHighlight()).isEqualTo("&lt;b&gt;<mark>Budget</mark>&lt;/b&gt;");
+        assertThat(hit.snippet()).isEqualTo("plan the <mark>budget</mark>");
+        assertThat(result.nextCursor()).isEqualTo(CursorCodec.encode(best.rank(), best.id()));
+    }
 
+    @Test
+    void searchNotes_WhenQueryIsBlank_ShouldThrowAndNotSearch(){
+
+        assertThatThrownBy(() -> underTest.searchNotes("   ", null, null))
+                .isInstanceOf(BusinessException.class)
+                .hasMessageContaining(enErrorCode.INVALID_SEARCH_QUERY.getMessageKey());
+
+        verifyNoInteractions(noteSearchRepository);
+    }
+
+
+    // ========================================================================
+    // TEST 8: Batch delete - foreign/missing ids are skipped, images go to the outbox in one call
+    // ========================================================================
+
+    @Test
+    void deleteNotes_WhenSomeIdsAreNotOwned_ShouldDeleteTheRestAndReportSkipped(){
+
+        // ------------ (Arrange & Given) -------------
+
+        User owner = new User();
+        owner.setId(5L);
+        given(securityUtils.getCurrentUser()).willReturn(owner);
+
+        LocalDateTime created = LocalDateTime.of(2025, 1, 1, 10, 0);
+        given(noteWriteRepository.deleteAll(List.of(1L, 2L, 3L), 5L)).willReturn(List.of(
+                new NoteBeforeWrite(3L, "Three", "Content", "kc-5/three.png", "thumb", created),
+                new NoteBeforeWrite(1L, "One", "Content", null, null, created)));
+        given(fileDeduplicationService.release("kc-5/three.png")).willReturn(true); // Its last reference
+
+        // --------- (Act) ------------
+
+        NoteBatchDeleteResponse result = underTest.deleteNotes(List.of(1L, 2L, 3L, 2L));
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(result.deletedIds()).containsExactly(1L, 3L);
+        assertThat(result.notDeletedIds()).containsExactly(2L);
+
+        verify(storageDeletionOutbox).enqueueAll(List.of("kc-5/three-thumb.jpg", "kc-5/three.png"));
+        verify(noteWriteRepository).bumpNotesVersion(5L);
+        verify(noteListCache).notesChanged(5L);
+    }
+
+
+    // ========================================================================
+    // TEST 9: ETags follow the notes version (and the requested page), not the clock
+    // ========================================================================
+
+    @Test
+    void notesETag_ShouldOnlyChangeWithVersionOrPage(){
+
+        // ------------ (Arrange & Given) -------------
+
+        ReflectionTestUtils.setField(underTest, "imageUrlMode", ImageUrlMode.LAZY);
+        ReflectionTestUtils.setField(underTest, "maxPageSize", 100);
+
+        User user = new User();
+        user.setId(5L);
+        given(securityUtils.getCurrentUser()).willReturn(user);
+
+        // --------- (Act) ------------
+
+        String first = underTest.notesETag(3L, null, 20);
+        String again = underTest.notesETag(3L, null, 20);
+        String afterWrite = underTest.notesETag(4L, null, 20);
+        String otherPage = underTest.notesETag(3L, "cursor", 20);
+        String note = underTest.noteETag(3L, 1L);
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(first).startsWith("\"").endsWith("\"").isEqualTo(again);
+        assertThat(List.of(afterWrite, otherPage, note)).doesNotContain(first).doesNotHaveDuplicates();
+
+        verifyNoInteractions(noteListCache, noteRepository);
+    }
+
+
+    // ========================================================================
+    // TEST 10: Export - every streamed row reaches the sink as a response, in cursor order
+    // ========================================================================
+
+    @Test
+    void exportNotes_ShouldMapEveryStreamedRowInOrder(){
+
+        // ------------ (Arrange & Given) -------------
+
+        User user = new User();
+        user.setId(5L);
+        given(securityUtils.getCurrentUser()).willReturn(user);
+
+        LocalDateTime now = LocalDateTime.of(2025, 1, 1, 10, 0, 0);
+        NoteListItem newer = new NoteListItem(2L, "Two", "Content 2", null, null, now, now);
+        NoteListItem older = new NoteListItem(1L, "One", "Content 1", null, null, now, now.minusMinutes(1));
+        given(noteExportRepository.forEachNote(eq(5L), any())).willAnswer(invocation -> {
+            Consumer<NoteListItem> action = invocation.getArgument(1);
+            action.accept(newer);
+            action.accept(older);
+            return 2;
+        });
+
+        NoteResponse newerResponse = new NoteResponse(2L, "Two", "Content 2", null, Map.of(), now, now);
+        NoteResponse olderResponse = new NoteResponse(1L, "One", "Content 1", null, Map.of(), now, now.minusMinutes(1));
+        given(noteMapper.toResponse(newer, null, Map.of())).willReturn(newerResponse);
+        given(noteMapper.toResponse(older, null, Map.of())).willReturn(olderResponse);
+
+        // --------- (Act) ------------
+
+        List<NoteResponse> exported = new ArrayList<>();
+        underTest.exportNotes(exported::add);
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(exported).containsExactly(newerResponse, olderResponse);
+        verifyNoInteractions(noteListCache, noteRepository);
+    }
+
+
+    // ========================================================================
+    // TEST 11: Replacing an image drops the cached signed URLs of the old image and its variants
+    // ========================================================================
+
+    @Test
+    void replaceNoteImage_ShouldEvictTheOldImageUrls(){
+
+        // ------------ (Arrange & Given) -------------
+
+        User user = new User();
+        user.setId(5L);
+        given(securityUtils.getCurrentUser()).willReturn(user);
+
+        NoteImageRef ref = new NoteImageRef() {
+            public Long getOwnerId() { return 5L; }
+            public String getImageKey() { return "kc-5/old.png"; }
+            public String getImageDerivatives() { return "thumb"; }
+        };
+        given(noteRepository.findImageRefById(7L)).willReturn(Optional.of(ref));
+
+        ByteArrayInputStream body = new ByteArrayInputStream(new byte[]{1, 2, 3});
+        StoredImage stored = new StoredImage("kc-5/new.png", "thumb"); // A known image: variants come with it
+        given(fileDeduplicationService.storeStream(body, "image/png", 3L, user)).willReturn(stored);
+        runTransactionCallbacks();
+
+        LocalDateTime created = LocalDateTime.of(2025, 1, 1, 10, 0);
+        given(noteWriteRepository.updateImage(eq(7L), eq(5L), eq("kc-5/new.png"), eq("thumb"), any(LocalDateTime.class)))
+                .willReturn(Optional.of(new NoteBeforeWrite(7L, "Title", "Content", "kc-5/old.png", "thumb", created)));
+        given(noteWriteRepository.bumpNotesVersion(5L)).willReturn(2L);
+
+        // --------- (Act) ------------
+
+        underTest.replaceNoteImage(7L, body, "image/png", 3L);
+
+        // --------- (Assert & Verify) ------------
+
+        verify(fileStorageService).evictFileUrl("kc-5/old.png");
+        verify(fileStorageService).evictFileUrl("kc-5/old-thumb.jpg");
+        verify(fileStorageService, never()).evictFileUrl("kc-5/new.png");
+    }
+
+
+    // The TransactionTemplate mock just runs the callback, like a real transaction would
+    private void runTransactionCallbacks() {
+        given(transactionTemplate.execute(any())).willAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,258 @@
+package com.salem.backend.service;
+
+import com.salem.backend.exception.BusinessException;
+import com.salem.backend.exception.ServiceBusyException;
+import com.salem.backend.exception.enErrorCode;
+import com.salem.backend.util.BufferPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Against a mocked S3Client and a real upload executor, with the smallest part size S3 allows (5MB).
+ */
+@ExtendWith(MockitoExtension.class)
+@SuppressWarnings("unchecked")
+class S3MultipartUploaderTest {
+
+    private static final int PART = (int) DataSize.ofMegabytes(5).toBytes();
+
+    @Mock
+    private S3Client s3Client;
+
+    private ExecutorService executor;
+    private S3MultipartUploader underTest;
+
+    // Size of every uploaded part by part number
+    private final Map<Integer, Long> uploadedParts = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+        underTest = new S3MultipartUploader(s3Client, executor);
+        ReflectionTestUtils.setField(underTest, "partSize", DataSize.ofBytes(PART));
+        ReflectionTestUtils.setField(underTest, "bufferCount", 4);
+        ReflectionTestUtils.setField(underTest, "partsInFlight", 2);
+        ReflectionTestUtils.setField(underTest, "maxObjectSize", DataSize.ofMegabytes(100));
+        ReflectionTestUtils.setField(underTest, "bufferWait", Duration.ofMillis(50));
+        underTest.initBufferPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private BufferPool bufferPool() {
+        return (BufferPool) ReflectionTestUtils.getField(underTest, "bufferPool");
+    }
+
+    private static ByteArrayInputStream stream(int length) {
+        return new ByteArrayInputStream(new byte[length]);
+    }
+
+    private static int partNumber(Consumer<UploadPartRequest.Builder> request) {
+        UploadPartRequest.Builder builder = UploadPartRequest.builder();
+        request.accept(builder);
+        return builder.build().partNumber();
+    }
+
+    private void givenMultipartUpload() {
+        given(s3Client.createMultipartUpload(any(Consumer.class)))
+                .willReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+    }
+
+    private void givenPartsSucceed() {
+        given(s3Client.uploadPart(any(Consumer.class), any(RequestBody.class))).willAnswer(invocation -> {
+            int partNumber = partNumber(invocation.getArgument(0));
+            uploadedParts.put(partNumber, invocation.<RequestBody>getArgument(1).optionalContentLength().orElseThrow());
+            return UploadPartResponse.builder().eTag("etag-" + partNumber).build();
+        });
+    }
+
+    // ========================================================================
+    // TEST 1: Less than one part goes up as a single PUT, without a multipart upload
+    // ========================================================================
+
+    @Test
+    void upload_WhenSmallerThanOnePart_ShouldUseASinglePut() {
+
+        // ------------ (Arrange & Given) -------------
+
+        given(s3Client.putObject(any(Consumer.class), any(RequestBody.class)))
+                .willReturn(PutObjectResponse.builder().build());
+
+        // --------- (Act) ------------
+
+        long written = underTest.upload("bucket", "kc-1/small.png", "image/png", stream(1000));
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(written).isEqualTo(1000);
+        verify(s3Client, never()).createMultipartUpload(any(Consumer.class));
+        assertThat(bufferPool().inUse()).isZero();
+    }
+
+    // ========================================================================
+    // TEST 2: A larger stream is cut into full parts plus a short last part, then completed
+    // ========================================================================
+
+    @Test
+    void upload_WhenLargerThanOnePart_ShouldCompleteAMultipartUpload() {
+
+        // ------------ (Arrange & Given) -------------
+
+        givenMultipartUpload();
+        givenPartsSucceed();
+        given(s3Client.completeMultipartUpload(any(Consumer.class))).willAnswer(invocation -> {
+            CompleteMultipartUploadRequest.Builder builder = CompleteMultipartUploadRequest.builder();
+            invocation.<Consumer<CompleteMultipartUploadRequest.Builder>>getArgument(0).accept(builder);
+            assertThat(builder.build().multipartUpload().parts())
+                    .extracting(CompletedPart::partNumber, CompletedPart::eTag)
+                    .containsExactly(
+                            tuple(1, "etag-1"),
+                            tuple(2, "etag-2"),
+                            tuple(3, "etag-3"));
+            return CompleteMultipartUploadResponse.builder().build();
+        });
+
+        // --------- (Act) ------------
+
+        long written = underTest.upload("bucket", "kc-1/large.bin", "application/octet-stream", stream(2 * PART + 1000));
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(written).isEqualTo(2L * PART + 1000);
+        assertThat(uploadedParts).containsExactlyInAnyOrderEntriesOf(Map.of(1, (long) PART, 2, (long) PART, 3, 1000L));
+        verify(s3Client, never()).abortMultipartUpload(any(Consumer.class));
+        assertThat(bufferPool().inUse()).isZero();
+    }
+
+    // ========================================================================
+    // TEST 3: A failed part aborts the upload, only after the parts still uploading have finished
+    // ========================================================================
+
+    @Test
+    void upload_WhenAPartFails_ShouldAbortAfterOutstandingPartsFinish() {
+
+        // ------------ (Arrange & Given) -------------
+
+        givenMultipartUpload();
+        AtomicInteger finishedParts = new AtomicInteger();
+        given(s3Client.uploadPart(any(Consumer.class), any(RequestBody.class))).willAnswer(invocation -> {
+            if (partNumber(invocation.getArgument(0)) == 2) {
+                throw SdkClientException.create("connection reset");
+            }
+            Thread.sleep(200); // Parts 1 and 3 are still uploading when part 2 fails
+            finishedParts.incrementAndGet();
+            return UploadPartResponse.builder().eTag("etag").build();
+        });
+        AtomicInteger finishedAtAbort = new AtomicInteger(-1);
+        given(s3Client.abortMultipartUpload(any(Consumer.class))).willAnswer(invocation -> {
+            finishedAtAbort.set(finishedParts.get());
+            return null;
+        });
+
+        // --------- (Act & Assert) ------------
+
+        assertThatThrownBy(() -> underTest.upload("bucket", "kc-1/large.bin", null, stream(2 * PART + 1000)))
+                .isInstanceOf(RuntimeException.class)
+                .hasRootCauseInstanceOf(SdkClientException.class);
+
+        verify(s3Client, never()).completeMultipartUpload(any(Consumer.class));
+        assertThat(finishedAtAbort.get()).isEqualTo(2); // Nothing left uploading behind the abort
+        assertThat(bufferPool().inUse()).isZero();
+    }
+
+    // ========================================================================
+    // TEST 4: Past max-object-size the upload is aborted with FILE_TOO_LARGE
+    // ========================================================================
+
+    @Test
+    void upload_WhenLargerThanMaxObjectSize_ShouldAbortWithFileTooLarge() {
+
+        // ------------ (Arrange & Given) -------------
+
+        ReflectionTestUtils.setField(underTest, "maxObjectSize", DataSize.ofMegabytes(8));
+        givenMultipartUpload();
+        // Part 1 may already be skipped by the failed flag when its turn comes
+        lenient().when(s3Client.uploadPart(any(Consumer.class), any(RequestBody.class))).thenAnswer(invocation -> {
+            uploadedParts.put(partNumber(invocation.getArgument(0)), (long) PART);
+            return UploadPartResponse.builder().eTag("etag").build();
+        });
+
+        // --------- (Act & Assert) ------------
+
+        assertThatThrownBy(() -> underTest.upload("bucket", "kc-1/huge.bin", null, stream(2 * PART + 1000)))
+                .isInstanceOf(BusinessException.class)
+                .extracting(e -> ((BusinessException) e).getErrorCode())
+                .isEqualTo(enErrorCode.FILE_TOO_LARGE);
+
+        verify(s3Client).abortMultipartUpload(any(Consumer.class));
+        verify(s3Client, never()).completeMultipartUpload(any(Consumer.class));
+        assertThat(uploadedParts).doesNotContainKey(2); // The part over the limit was never sent
+        assertThat(bufferPool().inUse()).isZero();
+    }
+
+    // ========================================================================
+    // TEST 5: With every buffer taken the upload is turned away after buffer-wait instead of waiting forever
+    // ========================================================================
+
+    @Test
+    void upload_WhenNoBufferIsFreed_ShouldThrowServiceBusy() throws Exception {
+
+        // ------------ (Arrange & Given) -------------
+
+        BufferPool pool = bufferPool();
+        byte[][] taken = new byte[4][];
+        for (int i = 0; i < taken.length; i++) {
+            taken[i] = pool.acquire();
+        }
+
+        // --------- (Act & Assert) ------------
+
+        assertThatThrownBy(() -> underTest.upload("bucket", "kc-1/small.png", "image/png", stream(1000)))
+                .isInstanceOf(ServiceBusyException.class)
+                .extracting(e -> ((BusinessException) e).getErrorCode())
+                .isEqualTo(enErrorCode.UPLOADS_BUSY);
+
+        for (byte[] buffer : taken) {
+            pool.release(buffer);
+        }
+        assertThat(pool.inUse()).isZero();
+        verify(s3Client, never()).putObject(any(Consumer.class), any(RequestBody.class));
+    }
+}
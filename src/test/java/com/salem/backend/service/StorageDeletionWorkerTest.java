@@ -0,0 +1,308 @@
+package com.salem.backend.service;
+
+import com.salem.backend.entity.StorageDeletionTask;
+import com.salem.backend.repository.StorageDeletionTaskRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The worker against the outbox table (H2) and a stub StorageBackend that refuses chosen keys.
+ * Not transactional: the worker runs its own short transactions, as in production.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StorageDeletionWorkerTest {
+
+    private static final Duration LEASE = Duration.ofMinutes(5);
+    private static final Duration INITIAL_BACKOFF = Duration.ofSeconds(30);
+    private static final Duration MAX_BACKOFF = Duration.ofHours(1);
+
+    @Autowired
+    private StorageDeletionTaskRepository taskRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private StubStorageBackend storageBackend;
+    private StorageDeletionWorker underTest;
+
+    @BeforeEach
+    void setUp() {
+        taskRepository.deleteAllInBatch();
+
+        storageBackend = new StubStorageBackend();
+        FileStorageService fileStorageService = new FileStorageService(storageBackend, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(fileStorageService, "presignTtl", Duration.ofHours(1));
+        ReflectionTestUtils.setField(fileStorageService, "minRemainingValidity", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(fileStorageService, "urlCacheMaxSize", 100L);
+        fileStorageService.initUrlCache();
+
+        underTest = new StorageDeletionWorker(taskRepository, fileStorageService, new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(underTest, "batchSize", 100);
+        ReflectionTestUtils.setField(underTest, "lease", LEASE);
+        ReflectionTestUtils.setField(underTest, "initialBackoff", INITIAL_BACKOFF);
+        ReflectionTestUtils.setField(underTest, "maxBackoff", MAX_BACKOFF);
+    }
+
+    private StorageDeletionTask enqueue(String key, int attempts, LocalDateTime nextAttemptAt) {
+        return taskRepository.save(StorageDeletionTask.builder()
+                .objectKey(key)
+                .attempts(attempts)
+                .nextAttemptAt(nextAttemptAt)
+                .build());
+    }
+
+    private StorageDeletionTask reload(StorageDeletionTask task) {
+        return taskRepository.findById(task.getId()).orElseThrow();
+    }
+
+    // ========================================================================
+    // TEST 1: Deleted keys leave the outbox; refused keys are rescheduled with attempts and the error
+    // ========================================================================
+
+    @Test
+    void drain_WhenSomeKeysAreRefused_ShouldRescheduleOnlyThose() {
+
+        // ------------ (Arrange & Given) -------------
+
+        LocalDateTime due = LocalDateTime.now().minusSeconds(1);
+        enqueue("kc-1/a.png", 0, due);
+        StorageDeletionTask refused = enqueue("kc-1/b.png", 0, due);
+        enqueue("kc-1/c.png", 0, due);
+        StorageDeletionTask later = enqueue("kc-1/later.png", 0, LocalDateTime.now().plusHours(1));
+        storageBackend.refuse("kc-1/b.png", "AccessDenied: Access Denied");
+
+        // --------- (Act) ------------
+
+        LocalDateTime before = LocalDateTime.now();
+        underTest.drain();
+        LocalDateTime after = LocalDateTime.now();
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(storageBackend.batches).containsExactly(List.of("kc-1/a.png", "kc-1/b.png", "kc-1/c.png"));
+        assertThat(taskRepository.findAll())
+                .extracting(StorageDeletionTask::getObjectKey)
+                .containsExactlyInAnyOrder("kc-1/b.png", "kc-1/later.png");
+
+        StorageDeletionTask retried = reload(refused);
+        assertThat(retried.getAttempts()).isEqualTo(1);
+        assertThat(retried.getNextAttemptAt()).isBetween(before.plus(INITIAL_BACKOFF), after.plus(INITIAL_BACKOFF));
+        assertThat(retried.getLastError()).isEqualTo("AccessDenied: Access Denied");
+        assertThat(reload(later).getAttempts()).isZero(); // Not due: not claimed
+
+        // The refused key is not due again before its backoff
+        underTest.drain();
+        assertThat(storageBackend.batches).hasSize(1);
+    }
+
+    // ========================================================================
+    // TEST 2: Backoff doubles with every failed attempt and is capped at the maximum
+    // ========================================================================
+
+    @Test
+    void drain_WhenKeysKeepFailing_ShouldBackOffExponentially() {
+
+        // ------------ (Arrange & Given) -------------
+
+        LocalDateTime due = LocalDateTime.now().minusSeconds(1);
+        StorageDeletionTask fourth = enqueue("kc-1/fourth.png", 3, due);
+        StorageDeletionTask tenth = enqueue("kc-1/tenth.png", 9, due);
+        storageBackend.refuse("kc-1/fourth.png", "SlowDown: Reduce your request rate");
+        storageBackend.refuse("kc-1/tenth.png", "SlowDown: Reduce your request rate");
+
+        // --------- (Act) ------------
+
+        LocalDateTime before = LocalDateTime.now();
+        underTest.drain();
+        LocalDateTime after = LocalDateTime.now();
+
+        // --------- (Assert & Verify) ------------
+
+        Duration fourthBackoff = INITIAL_BACKOFF.multipliedBy(8); // 30s, 1m, 2m, 4m
+        assertThat(reload(fourth).getAttempts()).isEqualTo(4);
+        assertThat(reload(fourth).getNextAttemptAt()).isBetween(before.plus(fourthBackoff), after.plus(fourthBackoff));
+        assertThat(reload(tenth).getAttempts()).isEqualTo(10);
+        assertThat(reload(tenth).getNextAttemptAt()).isBetween(before.plus(MAX_BACKOFF), after.plus(MAX_BACKOFF)); // 30s x 512, capped
+    }
+
+    // ========================================================================
+    // TEST 3: Claimed rows are leased while storage is called, and rows locked elsewhere are skipped
+    // ========================================================================
+
+    @Test
+    void drain_ShouldLeaseItsBatchAndSkipRowsLockedByAnotherWorker() throws Exception {
+
+        // ------------ (Arrange & Given) -------------
+
+        LocalDateTime due = LocalDateTime.now().minusMinutes(1);
+        StorageDeletionTask lockedElsewhere = enqueue("kc-1/other-worker.png", 0, due.minusSeconds(1));
+        StorageDeletionTask mine = enqueue("kc-1/mine.png", 0, due);
+
+        // Another worker holds the oldest row in an open transaction
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TransactionTemplate otherWorker = new TransactionTemplate(transactionManager);
+        CompletableFuture<Void> other = CompletableFuture.runAsync(() -> otherWorker.executeWithoutResult(status -> {
+            jdbc.queryForList("SELECT id FROM storage_deletion_outbox WHERE id = ? FOR UPDATE", lockedElsewhere.getId());
+            locked.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+
+        // While storage is called, the claimed row must be pushed out by the lease (committed, no transaction open)
+        List<LocalDateTime> leasedUntil = new ArrayList<>();
+        storageBackend.onDelete = keys -> leasedUntil.add(reload(mine).getNextAttemptAt());
+
+        // --------- (Act) ------------
+
+        LocalDateTime before = LocalDateTime.now();
+        try {
+            underTest.drain();
+        } finally {
+            release.countDown();
+            other.get(10, TimeUnit.SECONDS);
+        }
+        LocalDateTime after = LocalDateTime.now();
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(storageBackend.batches).containsExactly(List.of("kc-1/mine.png"));
+        assertThat(leasedUntil).singleElement().satisfies(until -> assertThat(until).isBetween(before.plus(LEASE), after.plus(LEASE)));
+        assertThat(taskRepository.findById(mine.getId())).isEmpty();
+        assertThat(reload(lockedElsewhere).getAttempts()).isZero(); // Left for the worker that holds it
+    }
+
+    // ========================================================================
+    // TEST 4: A batch larger than the backend's multi-object delete is sent in chunks of maxKeysPerDelete
+    // ========================================================================
+
+    @Test
+    void drain_WhenBatchExceedsMaxKeysPerDelete_ShouldDeleteInChunks() {
+
+        // ------------ (Arrange & Given) -------------
+
+        ReflectionTestUtils.setField(underTest, "batchSize", 2500);
+        LocalDateTime due = LocalDateTime.now().minusSeconds(1);
+        List<StorageDeletionTask> tasks = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            tasks.add(StorageDeletionTask.builder().objectKey("kc-1/" + i + ".png").nextAttemptAt(due).build());
+        }
+        taskRepository.saveAll(tasks);
+        storageBackend.refuse("kc-1/1500.png", "InternalError: We encountered an internal error");
+
+        // --------- (Act) ------------
+
+        underTest.drain();
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(storageBackend.batches).extracting(List::size).containsExactly(1000, 1000, 500);
+        assertThat(taskRepository.findAll())
+                .singleElement()
+                .satisfies(task -> {
+                    assertThat(task.getObjectKey()).isEqualTo("kc-1/1500.png");
+                    assertThat(task.getAttempts()).isEqualTo(1);
+                });
+    }
+
+    /**
+     * Records every multi-object delete and refuses the keys it was told to, like S3's quiet DeleteObjects.
+     * Same 1000-key limit as S3.
+     */
+    private static final class StubStorageBackend implements StorageBackend {
+
+        private final List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        private final Map<String, String> refused = new HashMap<>();
+        private Consumer<List<String>> onDelete = keys -> { };
+
+        void refuse(String key, String error) {
+            refused.put(key, error);
+        }
+
+        @Override
+        public Map<String, String> deleteAll(List<String> keys) {
+            onDelete.accept(keys);
+            batches.add(List.copyOf(keys));
+            Map<String, String> failures = new HashMap<>();
+            for (String key : keys) {
+                if (refused.containsKey(key)) {
+                    failures.put(key, refused.get(key));
+                }
+            }
+            return failures;
+        }
+
+        @Override
+        public int maxKeysPerDelete() {
+            return 1000;
+        }
+
+        @Override
+        public void put(String key, String contentType, long size, InputStreamSource source) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long putStream(String key, String contentType, InputStream content, long maxObjectSize) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public InputStream open(String key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public InputStream open(String key, long offset, long length) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ObjectMetadata stat(String key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String signGetUrl(String key, Duration ttl) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void delete(String key) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
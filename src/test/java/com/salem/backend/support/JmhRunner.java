@@ -0,0 +1,155 @@
+package com.salem.backend.support;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the JMH benchmarks of one class from a JUnit test, entirely offline (no download, no separate jar).
+ * Results are written as JMH JSON to target/jmh/{class}.json. With -Djmh.baseline={dir} the run is compared
+ * against {dir}/{class}.json of an earlier run: any benchmark slower than the baseline by more than
+ * -Djmh.tolerance (default 0.25 = 25%) fails the test. Only meaningful for time-per-operation modes on the same machine.
+ */
+public final class JmhRunner {
+
+    private static final Path RESULTS_DIR = Path.of("target", "jmh");
+
+    private JmhRunner() {
+    }
+
+    /**
+     * Runs every benchmark of the class with the GC profiler (gc.alloc.rate.norm = bytes per operation).
+     */
+    public static Collection<RunResult> run(Class<?> benchmarkClass) throws RunnerException, IOException {
+        Files.createDirectories(RESULTS_DIR);
+        Path resultFile = RESULTS_DIR.resolve(benchmarkClass.getSimpleName() + ".json");
+
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include("^" + Pattern.quote(benchmarkClass.getName()) + "\\.")
+                .addProfiler(GCProfiler.class)
+                .result(resultFile.toString())
+                .resultFormat(ResultFormatType.JSON)
+                .build()).run();
+
+        System.out.printf("%nJMH results written to %s%n", resultFile.toAbsolutePath());
+        compareWithBaseline(benchmarkClass, results);
+        return results;
+    }
+
+    /**
+     * Benchmark method name plus its @Param values, e.g. "serializeNotes{size=50}".
+     */
+    public static String label(RunResult result) {
+        BenchmarkParams params = result.getParams();
+        String name = params.getBenchmark().substring(params.getBenchmark().lastIndexOf('.') + 1);
+        if (params.getParamsKeys().isEmpty()) {
+            return name;
+        }
+        Map<String, String> values = new TreeMap<>();
+        for (String key : params.getParamsKeys()) {
+            values.put(key, params.getParam(key));
+        }
+        return name + values;
+    }
+
+    /**
+     * Bytes allocated per operation, as measured by the GC profiler.
+     */
+    public static double bytesPerOp(RunResult result) {
+        return result.getSecondaryResults().get("gc.alloc.rate.norm").getScore();
+    }
+
+    /**
+     * Real Logback appender and pattern, but the bytes go nowhere: measures formatting and encoding, not the disk.
+     * Call from @Setup, it has to run in the forked benchmark JVM.
+     */
+    public static void discardLogOutput() {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        context.reset();
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d{yyyy-MM-dd'T'HH:mm:ss.SSSXXX} %5p %pid --- [%t] %-40.40logger{39} : %m%n");
+        encoder.start();
+
+        OutputStreamAppender<ILoggingEvent> appender = new OutputStreamAppender<>();
+        appender.setContext(context);
+        appender.setEncoder(encoder);
+        appender.setOutputStream(OutputStream.nullOutputStream());
+        appender.start();
+
+        ch.qos.logback.classic.Logger root = context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+        root.setLevel(Level.INFO);
+        root.addAppender(appender);
+    }
+
+    private static void compareWithBaseline(Class<?> benchmarkClass, Collection<RunResult> results) throws IOException {
+        String baselineDir = System.getProperty("jmh.baseline");
+        if (baselineDir == null || baselineDir.isBlank()) {
+            return;
+        }
+        Path baselineFile = Path.of(baselineDir).resolve(benchmarkClass.getSimpleName() + ".json");
+        if (!Files.exists(baselineFile)) {
+            System.out.printf("No baseline at %s, nothing to compare%n", baselineFile.toAbsolutePath());
+            return;
+        }
+        double tolerance = Double.parseDouble(System.getProperty("jmh.tolerance", "0.25"));
+
+        // JMH JSON: one entry per benchmark and parameter combination
+        Map<String, Double> baseline = new HashMap<>();
+        for (JsonNode entry : new ObjectMapper().readTree(baselineFile.toFile())) {
+            String benchmark = entry.get("benchmark").asText();
+            String name = benchmark.substring(benchmark.lastIndexOf('.') + 1);
+            Map<String, String> values = new TreeMap<>();
+            JsonNode params = entry.get("params");
+            if (params != null) {
+                params.fields().forEachRemaining(param -> values.put(param.getKey(), param.getValue().asText()));
+            }
+            baseline.put(values.isEmpty() ? name : name + values, entry.get("primaryMetric").get("score").asDouble());
+        }
+
+        List<String> regressions = new ArrayList<>();
+        System.out.printf("%n%-40s %14s %14s %8s%n", "benchmark (vs " + baselineFile.getFileName() + ")", "baseline", "now", "ratio");
+        for (RunResult result : results) {
+            String label = label(result);
+            Double before = baseline.get(label);
+            if (before == null) {
+                continue;
+            }
+            double now = result.getPrimaryResult().getScore();
+            double ratio = now / before;
+            System.out.printf("%-40s %14.1f %14.1f %8.2f%n", label, before, now, ratio);
+            if (ratio > 1 + tolerance) {
+                regressions.add(String.format("%s: %.1f -> %.1f %s", label, before, now, result.getPrimaryResult().getScoreUnit()));
+            }
+        }
+
+        if (!regressions.isEmpty()) {
+            throw new AssertionError("Slower than the baseline by more than " + Math.round(tolerance * 100) + "%: " + regressions);
+        }
+    }
+}
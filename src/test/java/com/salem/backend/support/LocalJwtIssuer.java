@@ -0,0 +1,105 @@
+package com.salem.backend.support;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stand-in for Keycloak: signs RS256 access tokens and serves the matching JWK set,
+ * so the app validates tokens exactly as in production, just against a local issuer.
+ */
+public final class LocalJwtIssuer implements AutoCloseable {
+
+    private final RSAKey signingKey;
+    private final HttpServer server;
+    // Platform threads: a stand-in must not compete with the app under test for virtual-thread carriers
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicLong jwksRequests = new AtomicLong();
+
+    private LocalJwtIssuer() throws IOException, JOSEException {
+        this.signingKey = new RSAKeyGenerator(2048).keyID("local-test-key").generate();
+        byte[] jwks = new JWKSet(signingKey.toPublicJWK()).toString().getBytes(StandardCharsets.UTF_8);
+
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 128);
+        this.server.setExecutor(executor);
+        this.server.createContext("/jwks", exchange -> {
+            try (exchange) {
+                jwksRequests.incrementAndGet();
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, jwks.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(jwks);
+                }
+            }
+        });
+        this.server.start();
+    }
+
+    public static LocalJwtIssuer start() {
+        try {
+            return new LocalJwtIssuer();
+        } catch (IOException | JOSEException e) {
+            throw new IllegalStateException("Could not start local JWT issuer", e);
+        }
+    }
+
+    public String issuerUri() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/realms/local";
+    }
+
+    public String jwkSetUri() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/jwks";
+    }
+
+    public long jwksRequests() {
+        return jwksRequests.get();
+    }
+
+    /**
+     * Access token for the given subject, valid for an hour, with the claims the app reads on JIT provisioning.
+     */
+    public String tokenFor(String subject) {
+        Instant now = Instant.now();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer(issuerUri())
+                .subject(subject)
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(Duration.ofHours(1))))
+                .claim("email", subject + "@example.test")
+                .claim("given_name", "Load")
+                .claim("family_name", subject)
+                .claim("preferred_username", subject)
+                .build();
+        try {
+            SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(signingKey.getKeyID()).build(), claims);
+            jwt.sign(new RSASSASigner(signingKey));
+            return jwt.serialize();
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Could not sign token", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,95 @@
+package com.salem.backend.support;
+
+import com.salem.backend.NotesBackendApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Boots the real application on a random port against local stand-ins: a fresh in-memory H2 database in
+ * PostgreSQL mode (schema built by the Liquibase changelog), the S3 stub and the local JWT issuer.
+ * Reads the production property files from src/main/resources (the test application.properties would shadow them),
+ * and every setting given here or via with(...) overrides those.
+ */
+public final class LocalNotesApp implements AutoCloseable {
+
+    public static final String BUCKET = "notes-local";
+
+    private final ConfigurableApplicationContext context;
+
+    private LocalNotesApp(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    public static Builder builder(S3StubServer s3, LocalJwtIssuer issuer) {
+        return new Builder(s3, issuer);
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    public ConfigurableApplicationContext context() {
+        return context;
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+
+    public static final class Builder {
+
+        private final Map<String, String> properties = new LinkedHashMap<>();
+
+        private Builder(S3StubServer s3, LocalJwtIssuer issuer) {
+            properties.put("spring.config.location", "optional:file:src/main/resources/");
+            properties.put("server.port", "0");
+
+            properties.put("spring.datasource.url", "jdbc:h2:mem:notes-" + UUID.randomUUID()
+                    + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1");
+            properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+            properties.put("spring.datasource.username", "sa");
+            properties.put("spring.datasource.password", "");
+            properties.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+            properties.put("spring.jpa.hibernate.ddl-auto", "none");
+            properties.put("spring.jpa.show-sql", "false");
+            // H2 has no tsvector: the search changeset is PostgreSQL-only, so search uses the LIKE fallback
+            properties.put("app.notes.search.engine", "like");
+
+            properties.put("spring.cloud.aws.credentials.access-key", "local");
+            properties.put("spring.cloud.aws.credentials.secret-key", "local");
+            properties.put("spring.cloud.aws.region.static", "us-east-1");
+            properties.put("spring.cloud.aws.s3.endpoint", s3.endpoint().toString());
+            properties.put("spring.cloud.aws.s3.path-style-access-enabled", "true");
+            properties.put("app.s3.bucket", BUCKET);
+
+            properties.put("spring.security.oauth2.resourceserver.jwt.issuer-uri", issuer.issuerUri());
+            properties.put("spring.security.oauth2.resourceserver.jwt.jwk-set-uri", issuer.jwkSetUri());
+
+            // No collector to push to, and per-request logging would dominate any measurement
+            properties.put("management.tracing.enabled", "false");
+            properties.put("management.otlp.metrics.export.enabled", "false");
+            properties.put("logging.level.root", "WARN");
+        }
+
+        public Builder with(String name, Object value) {
+            properties.put(name, String.valueOf(value));
+            return this;
+        }
+
+        public LocalNotesApp start() {
+            // Command-line arguments outrank every property file
+            List<String> args = new ArrayList<>();
+            properties.forEach((name, value) -> args.add("--" + name + "=" + value));
+            return new LocalNotesApp(new SpringApplicationBuilder(NotesBackendApplication.class)
+                    .run(args.toArray(String[]::new)));
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.salem.backend.support;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for S3 (path-style requests, no auth checks), good enough for the calls this app makes:
+ * PutObject, GetObject (incl. Range), HeadObject, DeleteObject, DeleteObjects and the multipart upload calls.
+ * Every request waits the configured latency first, which is what makes thread models comparable.
+ */
+public final class S3StubServer implements AutoCloseable {
+
+    private static final Pattern KEY_ELEMENT = Pattern.compile("<Key>(.*?)</Key>");
+    private static final String XML_NS = "http://s3.amazonaws.com/doc/2006-03-01/";
+
+    private record StoredObject(byte[] data, String contentType, String eTag, Instant lastModified) {
+    }
+
+    private final HttpServer server;
+    // Platform threads: a stand-in must not compete with the app under test for virtual-thread carriers
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, StoredObject> objects = new ConcurrentHashMap<>();
+    private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+    private volatile Duration latency;
+
+    private S3StubServer(Duration latency) throws IOException {
+        this.latency = latency;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    public static S3StubServer start(Duration latency) {
+        try {
+            return new S3StubServer(latency);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not start S3 stub", e);
+        }
+    }
+
+    public URI endpoint() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    public void setLatency(Duration latency) {
+        this.latency = latency;
+    }
+
+    public int objectCount() {
+        return objects.size();
+    }
+
+    public boolean contains(String bucket, String key) {
+        return objects.containsKey(bucket + "/" + key);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            sleep(latency);
+
+            String path = exchange.getRequestURI().getRawPath();
+            String[] bucketAndKey = path.substring(1).split("/", 2);
+            String bucket = bucketAndKey[0];
+            String key = bucketAndKey.length > 1 ? URLDecoder.decode(bucketAndKey[1], StandardCharsets.UTF_8) : "";
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String objectId = bucket + "/" + key;
+
+            switch (exchange.getRequestMethod()) {
+                case "PUT" -> {
+                    byte[] body = readBody(exchange);
+                    String eTag = md5(body);
+                    if (query.containsKey("uploadId")) {
+                        uploadParts(query.get("uploadId")).put(Integer.parseInt(query.get("partNumber")), body);
+                    } else {
+                        objects.put(objectId, new StoredObject(body, exchange.getRequestHeaders().getFirst("Content-Type"),
+                                eTag, Instant.now()));
+                    }
+                    exchange.getResponseHeaders().set("ETag", "\"" + eTag + "\"");
+                    exchange.sendResponseHeaders(200, -1);
+                }
+                case "POST" -> {
+                    byte[] body = readBody(exchange);
+                    if (query.containsKey("delete")) {
+                        Matcher keys = KEY_ELEMENT.matcher(new String(body, StandardCharsets.UTF_8));
+                        while (keys.find()) {
+                            objects.remove(bucket + "/" + keys.group(1));
+                        }
+                        sendXml(exchange, 200, "<DeleteResult xmlns=\"" + XML_NS + "\"></DeleteResult>");
+                    } else if (query.containsKey("uploads")) {
+                        String uploadId = UUID.randomUUID().toString();
+                        uploads.put(uploadId, new TreeMap<>());
+                        sendXml(exchange, 200, "<InitiateMultipartUploadResult xmlns=\"" + XML_NS + "\"><Bucket>" + bucket
+                                + "</Bucket><Key>" + key + "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+                    } else if (query.containsKey("uploadId")) {
+                        Map<Integer, byte[]> parts = uploads.remove(query.get("uploadId"));
+                        if (parts == null) {
+                            sendError(exchange, 404, "NoSuchUpload");
+                            return;
+                        }
+                        ByteArrayOutputStream data = new ByteArrayOutputStream();
+                        parts.values().forEach(data::writeBytes);
+                        String eTag = md5(data.toByteArray()) + "-" + parts.size();
+                        objects.put(objectId, new StoredObject(data.toByteArray(), null, eTag, Instant.now()));
+                        sendXml(exchange, 200, "<CompleteMultipartUploadResult xmlns=\"" + XML_NS + "\"><Bucket>" + bucket
+                                + "</Bucket><Key>" + key + "</Key><ETag>\"" + eTag + "\"</ETag></CompleteMultipartUploadResult>");
+                    } else {
+                        sendError(exchange, 400, "InvalidRequest");
+                    }
+                }
+                case "DELETE" -> {
+                    if (query.containsKey("uploadId")) {
+                        uploads.remove(query.get("uploadId"));
+                    } else {
+                        objects.remove(objectId);
+                    }
+                    exchange.sendResponseHeaders(204, -1);
+                }
+                case "GET", "HEAD" -> serveObject(exchange, objects.get(objectId));
+                default -> sendError(exchange, 405, "MethodNotAllowed");
+            }
+        }
+    }
+
+    private void serveObject(HttpExchange exchange, StoredObject object) throws IOException {
+        if (object == null) {
+            sendError(exchange, 404, "NoSuchKey");
+            return;
+        }
+        boolean head = "HEAD".equals(exchange.getRequestMethod());
+        byte[] data = object.data();
+        int from = 0;
+        int to = data.length - 1;
+        int status = 200;
+
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null && range.startsWith("bytes=") && data.length > 0) {
+            String[] bounds = range.substring("bytes=".length()).split("-", 2);
+            if (bounds[0].isEmpty()) {
+                from = Math.max(0, data.length - Integer.parseInt(bounds[1]));
+            } else {
+                from = Integer.parseInt(bounds[0]);
+                if (!bounds[1].isEmpty()) {
+                    to = Math.min(to, Integer.parseInt(bounds[1]));
+                }
+            }
+            if (from > to) {
+                exchange.getResponseHeaders().set("Content-Range", "bytes */" + data.length);
+                sendError(exchange, 416, "InvalidRange");
+                return;
+            }
+            status = 206;
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + from + "-" + to + "/" + data.length);
+        }
+
+        int length = to - from + 1;
+        exchange.getResponseHeaders().set("ETag", "\"" + object.eTag() + "\"");
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+        exchange.getResponseHeaders().set("Last-Modified",
+                DateTimeFormatter.RFC_1123_DATE_TIME.format(object.lastModified().atOffset(ZoneOffset.UTC)));
+        exchange.getResponseHeaders().set("Content-Type",
+                object.contentType() != null ? object.contentType() : "application/octet-stream");
+        if (head) {
+            exchange.getResponseHeaders().set("Content-Length", Integer.toString(length));
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, length == 0 ? -1 : length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(data, from, length);
+        }
+    }
+
+    private Map<Integer, byte[]> uploadParts(String uploadId) {
+        Map<Integer, byte[]> parts = uploads.get(uploadId);
+        if (parts == null) {
+            throw new IllegalStateException("Unknown upload " + uploadId);
+        }
+        return parts;
+    }
+
+    // Unwraps aws-chunked bodies (SigV4 streaming: "<hex size>;chunk-signature=...\r\n<data>\r\n" ... "0;...")
+    private byte[] readBody(HttpExchange exchange) throws IOException {
+        byte[] raw = exchange.getRequestBody().readAllBytes();
+        String sha = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        if (sha == null || !sha.startsWith("STREAMING-")) {
+            return raw;
+        }
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream(raw.length);
+        int pos = 0;
+        while (pos < raw.length) {
+            int lineEnd = indexOfCrlf(raw, pos);
+            String header = new String(raw, pos, lineEnd - pos, StandardCharsets.US_ASCII);
+            int size = Integer.parseInt(header.split(";", 2)[0].trim(), 16);
+            pos = lineEnd + 2;
+            if (size == 0) {
+                break;
+            }
+            decoded.write(raw, pos, size);
+            pos += size + 2;
+        }
+        return decoded.toByteArray();
+    }
+
+    private int indexOfCrlf(byte[] data, int from) {
+        for (int i = from; i < data.length - 1; i++) {
+            if (data[i] == '\r' && data[i + 1] == '\n') {
+                return i;
+            }
+        }
+        return data.length;
+    }
+
+    private Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            String[] nameValue = pair.split("=", 2);
+            query.put(URLDecoder.decode(nameValue[0], StandardCharsets.UTF_8),
+                    nameValue.length > 1 ? URLDecoder.decode(nameValue[1], StandardCharsets.UTF_8) : "");
+        }
+        return query;
+    }
+
+    private void sendXml(HttpExchange exchange, int status, String xml) throws IOException {
+        byte[] body = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + xml).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private void sendError(HttpExchange exchange, int status, String code) throws IOException {
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        sendXml(exchange, status, "<Error><Code>" + code + "</Code><Message>" + code + "</Message></Error>");
+    }
+
+    private static String md5(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        if (duration.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.salem.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BufferPoolTest {
+
+    // ========================================================================
+    // TEST 1: Buffers are allocated lazily up to the cap, then reused
+    // ========================================================================
+
+    @Test
+    void tryAcquire_WhenAllBuffersAreInUse_ShouldReturnNullUntilOneIsReleased() throws Exception {
+
+        // ------------ (Arrange & Given) -------------
+
+        BufferPool pool = new BufferPool(16, 2);
+
+        // --------- (Act) ------------
+
+        byte[] first = pool.tryAcquire(Duration.ZERO);
+        byte[] second = pool.tryAcquire(Duration.ZERO);
+        byte[] third = pool.tryAcquire(Duration.ofMillis(20));
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(first).hasSize(16);
+        assertThat(second).hasSize(16).isNotSameAs(first);
+        assertThat(third).isNull(); // Cap reached: no third allocation
+        assertThat(pool.inUse()).isEqualTo(2);
+
+        pool.release(first);
+        assertThat(pool.tryAcquire(Duration.ZERO)).isSameAs(first);
+
+        pool.release(first);
+        pool.release(second);
+        assertThat(pool.inUse()).isZero();
+    }
+
+    // ========================================================================
+    // TEST 2: acquire() waits for a release; buffers of another size are not taken back
+    // ========================================================================
+
+    @Test
+    void acquire_WhenPoolIsExhausted_ShouldWaitForARelease() throws Exception {
+
+        // ------------ (Arrange & Given) -------------
+
+        BufferPool pool = new BufferPool(16, 1);
+        byte[] only = pool.acquire();
+        pool.release(new byte[8]); // Not from this pool: ignored
+
+        // --------- (Act) ------------
+
+        CompletableFuture<byte[]> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.acquire();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        boolean doneBeforeRelease = waiting.isDone();
+        pool.release(only);
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(doneBeforeRelease).isFalse();
+        assertThat(waiting.get(5, TimeUnit.SECONDS)).isSameAs(only);
+    }
+}
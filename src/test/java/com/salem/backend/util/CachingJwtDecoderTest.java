@@ -0,0 +1,92 @@
+package com.salem.backend.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CachingJwtDecoderTest {
+
+    @Mock
+    private JwtDecoder delegate;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private static Jwt jwt(String token, Instant expiresAt) {
+        return Jwt.withTokenValue(token)
+                .header("alg", "RS256")
+                .subject("user-1")
+                .issuedAt(Instant.now().minusSeconds(5))
+                .expiresAt(expiresAt)
+                .build();
+    }
+
+    // ========================================================================
+    // TEST 1: A repeated token is verified once, later requests are served from the cache
+    // ========================================================================
+
+    @Test
+    void decode_WhenTokenWasAlreadyValidated_ShouldSkipTheDelegate() {
+
+        // ------------ (Arrange & Given) -------------
+
+        CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, 100, Duration.ofSeconds(30), meterRegistry);
+        Jwt valid = jwt("token-a", Instant.now().plus(Duration.ofMinutes(5)));
+        when(delegate.decode("token-a")).thenReturn(valid);
+
+        // --------- (Act) ------------
+
+        Jwt first = decoder.decode("token-a");
+        Jwt second = decoder.decode("token-a");
+        Jwt third = decoder.decode("token-a");
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(first).isSameAs(valid);
+        assertThat(second).isSameAs(valid);
+        assertThat(third).isSameAs(valid);
+        verify(delegate, times(1)).decode("token-a");
+        assertThat(meterRegistry.get("security.jwt.verifications.avoided").functionCounter().count()).isEqualTo(2);
+    }
+
+    // ========================================================================
+    // TEST 2: Rejected tokens and tokens inside the expiry margin are verified every time
+    // ========================================================================
+
+    @Test
+    void decode_WhenTokenIsRejectedOrAboutToExpire_ShouldNotCacheIt() {
+
+        // ------------ (Arrange & Given) -------------
+
+        CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, 100, Duration.ofSeconds(30), meterRegistry);
+        Jwt expiring = jwt("token-expiring", Instant.now().plus(Duration.ofSeconds(10)));
+        when(delegate.decode("token-expiring")).thenReturn(expiring);
+        when(delegate.decode("token-bad")).thenThrow(new BadJwtException("Signed JWT rejected"));
+
+        // --------- (Act) ------------
+
+        decoder.decode("token-expiring");
+        decoder.decode("token-expiring");
+
+        // --------- (Assert & Verify) ------------
+
+        verify(delegate, times(2)).decode("token-expiring");
+        assertThatThrownBy(() -> decoder.decode("token-bad")).isInstanceOf(BadJwtException.class);
+        assertThatThrownBy(() -> decoder.decode("token-bad")).isInstanceOf(BadJwtException.class);
+        verify(delegate, times(2)).decode("token-bad");
+    }
+}
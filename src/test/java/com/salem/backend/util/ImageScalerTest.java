@@ -0,0 +1,71 @@
+package com.salem.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageScalerTest {
+
+    private static byte[] png(int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB); // Fully transparent
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    // ========================================================================
+    // TEST 1: Scaling keeps the aspect ratio, never upscales, and the JPEG decodes again
+    // ========================================================================
+
+    @Test
+    void fit_WhenImageIsLarger_ShouldScaleLongerEdgeAndFlattenAlpha() throws Exception {
+
+        // ------------ (Arrange & Given) -------------
+
+        BufferedImage original = ImageScaler.decode(new ByteArrayInputStream(png(2000, 500)), 10_000_000);
+
+        // --------- (Act) ------------
+
+        BufferedImage medium = ImageScaler.fit(original, 1024);
+        BufferedImage thumb = ImageScaler.fit(medium, 256);
+        BufferedImage notUpscaled = ImageScaler.fit(thumb, 4096);
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(ImageScaler.encodeJpeg(thumb, 0.8f)));
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(medium.getWidth()).isEqualTo(1024);
+        assertThat(medium.getHeight()).isEqualTo(256);
+        assertThat(thumb.getWidth()).isEqualTo(256);
+        assertThat(thumb.getHeight()).isEqualTo(64);
+        assertThat(notUpscaled).isSameAs(thumb);
+
+        assertThat(decoded.getWidth()).isEqualTo(256);
+        assertThat(decoded.getRGB(10, 10) & 0xFFFFFF).isGreaterThan(0xF0F0F0); // Transparent became white
+    }
+
+    // ========================================================================
+    // TEST 2: Non-images are recognised, oversized images are refused before decoding
+    // ========================================================================
+
+    @Test
+    void decode_WhenNotAnImageOrTooLarge_ShouldNotDecode() throws Exception {
+
+        // ------------ (Arrange & Given) -------------
+
+        byte[] text = "definitely not an image".getBytes(StandardCharsets.UTF_8);
+        byte[] large = png(4000, 3000);
+
+        // --------- (Act & Assert) ------------
+
+        assertThat(ImageScaler.decode(new ByteArrayInputStream(text), 10_000_000)).isNull();
+        assertThatThrownBy(() -> ImageScaler.decode(new ByteArrayInputStream(large), 10_000_000))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,217 @@
+package com.salem.backend.util;
+
+import com.salem.backend.entity.User;
+import com.salem.backend.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class SecurityUtilsTest {
+
+    private static final String SUBJECT = "kc-alice";
+
+    @Mock
+    private UserRepository userRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private SecurityUtils underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new SecurityUtils(userRepository, meterRegistry);
+        ReflectionTestUtils.setField(underTest, "userCacheMaxSize", 100L);
+        ReflectionTestUtils.setField(underTest, "userCacheTtl", Duration.ofMinutes(5));
+        underTest.initUserCache();
+        authenticate();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    // The security context is per thread: every thread that resolves the user needs it
+    private static void authenticate() {
+        Jwt jwt = Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject(SUBJECT)
+                .claim("email", "alice@example.com")
+                .claim("given_name", "Alice")
+                .claim("family_name", "Example")
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(300))
+                .build();
+        SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(jwt));
+    }
+
+    private static User alice() {
+        return User.builder().id(7L).keycloakId(SUBJECT).email("alice@example.com").build();
+    }
+
+    private double lookupsAvoided() {
+        return meterRegistry.get("security.user.lookups.avoided").functionCounter().count();
+    }
+
+    // ========================================================================
+    // TEST 1: A cached user is reused without another users-table lookup
+    // ========================================================================
+
+    @Test
+    void getCurrentUser_WhenCached_ShouldNotQueryAgain() {
+
+        // ------------ (Arrange & Given) -------------
+
+        given(userRepository.findByKeycloakId(SUBJECT)).willReturn(Optional.of(alice()));
+
+        // --------- (Act) ------------
+
+        User first = underTest.getCurrentUser();
+        User second = underTest.getCurrentUser();
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(first.getId()).isEqualTo(7L);
+        assertThat(second).isSameAs(first);
+        verify(userRepository, times(1)).findByKeycloakId(SUBJECT);
+        assertThat(lookupsAvoided()).isEqualTo(1);
+    }
+
+    // ========================================================================
+    // TEST 2: Two concurrent first requests share one lookup, and the joiner counts as an avoided lookup
+    // ========================================================================
+
+    @Test
+    void getCurrentUser_WhenLookupIsInProgress_ShouldShareIt() throws Exception {
+
+        // ------------ (Arrange & Given) -------------
+
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        given(userRepository.findByKeycloakId(SUBJECT)).willAnswer(invocation -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(alice());
+        });
+        ExecutorService requests = Executors.newFixedThreadPool(2);
+
+        try {
+            // --------- (Act) ------------
+
+            CompletableFuture<User> first = CompletableFuture.supplyAsync(this::resolveAuthenticated, requests);
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+            CompletableFuture<User> second = CompletableFuture.supplyAsync(this::resolveAuthenticated, requests);
+            Thread.sleep(100); // Let the second request reach the pending lookup
+            boolean secondDoneBeforeRelease = second.isDone();
+            release.countDown();
+
+            // --------- (Assert & Verify) ------------
+
+            assertThat(secondDoneBeforeRelease).isFalse();
+            assertThat(second.get(5, TimeUnit.SECONDS)).isSameAs(first.get(5, TimeUnit.SECONDS));
+            verify(userRepository, times(1)).findByKeycloakId(SUBJECT);
+            assertThat(lookupsAvoided()).isEqualTo(1);
+        } finally {
+            requests.shutdownNow();
+        }
+    }
+
+    private User resolveAuthenticated() {
+        authenticate();
+        try {
+            return underTest.getCurrentUser();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    // ========================================================================
+    // TEST 3: First sign-in provisions the user; losing the insert race still reads the winner's row
+    // ========================================================================
+
+    @Test
+    void getCurrentUser_WhenUserIsNotProvisioned_ShouldInsertIfAbsentAndReadBack() {
+
+        // ------------ (Arrange & Given) -------------
+
+        given(userRepository.findByKeycloakId(SUBJECT))
+                .willReturn(Optional.empty())
+                .willReturn(Optional.of(alice())); // Inserted by a concurrent request (another instance)
+        given(userRepository.insertIfAbsent(SUBJECT, "alice@example.com", "Alice", "Example")).willReturn(0);
+
+        // --------- (Act) ------------
+
+        User user = underTest.getCurrentUser();
+
+        // --------- (Assert & Verify) ------------
+
+        assertThat(user.getId()).isEqualTo(7L);
+        verify(userRepository).insertIfAbsent(SUBJECT, "alice@example.com", "Alice", "Example");
+        verify(userRepository, times(2)).findByKeycloakId(SUBJECT);
+    }
+
+    // ========================================================================
+    // TEST 4: evictUser forces the next request to read the row again
+    // ========================================================================
+
+    @Test
+    void evictUser_ShouldDropTheCachedRow() {
+
+        // ------------ (Arrange & Given) -------------
+
+        given(userRepository.findByKeycloakId(SUBJECT)).willReturn(Optional.of(alice()));
+        underTest.getCurrentUser();
+
+        // --------- (Act) ------------
+
+        underTest.evictUser(SUBJECT);
+        underTest.getCurrentUser();
+
+        // --------- (Assert & Verify) ------------
+
+        verify(userRepository, times(2)).findByKeycloakId(SUBJECT);
+        assertThat(lookupsAvoided()).isZero();
+    }
+
+    // ========================================================================
+    // TEST 5: A lookup failing with an Error does not leave a pending entry behind
+    // ========================================================================
+
+    @Test
+    void getCurrentUser_WhenLookupFailsWithAnError_ShouldLetTheNextRequestRetry() {
+
+        // ------------ (Arrange & Given) -------------
+
+        given(userRepository.findByKeycloakId(SUBJECT))
+                .willThrow(new StackOverflowError())
+                .willReturn(Optional.of(alice()));
+
+        // --------- (Act & Assert) ------------
+
+        assertThatThrownBy(() -> underTest.getCurrentUser()).isInstanceOf(StackOverflowError.class);
+        assertThat(underTest.getCurrentUser().getId()).isEqualTo(7L);
+    }
+}